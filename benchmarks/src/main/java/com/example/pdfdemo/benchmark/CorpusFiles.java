@@ -0,0 +1,34 @@
+package com.example.pdfdemo.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 语料文件的本地缓存：按 profile/页数生成一次，之后各 fork 直接复用。
+ * 目录取 -Dcorpus.dir，默认 ${java.io.tmpdir}/pdfbox-demo-corpus。
+ */
+final class CorpusFiles {
+
+    private CorpusFiles() {}
+
+    static synchronized Path get(SyntheticCorpus.Profile profile, int pages) throws IOException {
+        Path dir = Paths.get(System.getProperty("corpus.dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "pdfbox-demo-corpus").toString()));
+        Path file = dir.resolve(profile.name().toLowerCase() + "-" + pages + ".pdf");
+        if (!Files.exists(file)) {
+            // 先写临时文件再原子改名，并发 fork 不会读到半成品
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "corpus", ".tmp");
+            try {
+                SyntheticCorpus.write(tmp, profile, pages);
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.PdfOutput;
+import com.example.pdfdemo.service.PdfService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编辑并保存的端到端路径（加载 → 搜索 → 绘制 → 序列化），输出写入只计数的空流。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EditBenchmark {
+
+    /** 替换文本只用 NEEDLE 中出现过的字形：原位绘制沿用页面字体，嵌入子集字体（CJK 语料）缺其他字形 */
+    private static final String REPLACEMENT = "word";
+
+    @Param({"10", "100"})
+    public int pages;
+
+    @Param({"PROSE", "TABLE", "MIXED", "CJK"})
+    public SyntheticCorpus.Profile profile;
+
+    private SampleWorkspace workspace;
+    private PdfService service;
+    private List<PdfService.ReplaceRule> rules;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = SampleWorkspace.open(profile, pages);
+        service = workspace.service;
+        rules = List.of(rule(SyntheticCorpus.NEEDLE, REPLACEMENT), rule("total", "rotl"), rule("data", "dada"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workspace.close();
+    }
+
+    @Benchmark
+    public long editInplaceFull() throws IOException {
+        return drain(service.editPdfReplaceInplace(SyntheticCorpus.NEEDLE, REPLACEMENT, false, PdfService.OutputMode.FULL));
+    }
+
+    @Benchmark
+    public long editInplaceIncremental() throws IOException {
+        return drain(service.editPdfReplaceInplace(SyntheticCorpus.NEEDLE, REPLACEMENT, false, PdfService.OutputMode.INCREMENTAL));
+    }
+
+    @Benchmark
+    public long editWholeLine() throws IOException {
+        return drain(service.editWholeLine(SyntheticCorpus.NEEDLE, REPLACEMENT, false, null, null, PdfService.OutputMode.FULL));
+    }
+
+    @Benchmark
+    public long editBatch() throws IOException {
+        return drain(service.editBatch(rules, true, false, PdfService.OutputMode.FULL));
+    }
+
+    private static long drain(PdfOutput output) throws IOException {
+        return SampleWorkspace.drain(output);
+    }
+
+    private static PdfService.ReplaceRule rule(String oldText, String newText) {
+        PdfService.ReplaceRule r = new PdfService.ReplaceRule();
+        r.oldText = oldText;
+        r.newText = newText;
+        return r;
+    }
+}
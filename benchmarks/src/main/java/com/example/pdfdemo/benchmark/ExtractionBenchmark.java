@@ -0,0 +1,78 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.DocumentLayout;
+import com.example.pdfdemo.service.LayoutExtractor;
+import com.example.pdfdemo.service.TextBoxCollector;
+import com.example.pdfdemo.service.TextMatcher;
+import com.example.pdfdemo.service.TextSearcher;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 抽取热路径：文档在 Trial 级别加载一次，每次调用完整跑一遍 PDFTextStripper。
+ * 吞吐（ops/s）与延迟分布（SampleTime 百分位）同时输出；分配率见 gc 分析器。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    @Param({"10", "100"})
+    public int pages;
+
+    @Param({"PROSE", "TABLE", "MIXED", "CJK"})
+    public SyntheticCorpus.Profile profile;
+
+    private PDDocument document;
+    private TextMatcher matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        document = PDDocument.load(CorpusFiles.get(profile, pages).toFile());
+        matcher = TextMatcher.of(List.of(SyntheticCorpus.NEEDLE, "total", "数据"), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public List<TextSearcher.Match> textSearcherFind() throws IOException {
+        return new TextSearcher(matcher).find(document);
+    }
+
+    @Benchmark
+    public List<TextBoxCollector.Box> textBoxCollectLine() throws IOException {
+        return new TextBoxCollector(TextBoxCollector.Mode.LINE).collect(document);
+    }
+
+    @Benchmark
+    public List<TextBoxCollector.Box> textBoxCollectWord() throws IOException {
+        return new TextBoxCollector(TextBoxCollector.Mode.WORD).collect(document);
+    }
+
+    @Benchmark
+    public DocumentLayout layoutExtract() throws IOException {
+        return new LayoutExtractor().extract(document);
+    }
+}
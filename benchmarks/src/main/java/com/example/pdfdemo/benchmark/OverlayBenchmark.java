@@ -0,0 +1,105 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.PdfOutput;
+import com.example.pdfdemo.service.PdfService;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 覆盖绘制（内容流无法原位改写时的退路）：DENSE 语料每页数百处命中，全部走覆盖绘制。
+ * 编辑耗时之外测量结果文件的渲染耗时；各编辑结果的字节数在 setUp 中打印（JMH 输出的 fork 日志）。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OverlayBenchmark {
+
+    /** 比原词长：原位替换还需右移重绘其后文本 */
+    private static final String REPLACEMENT = "planet";
+
+    @Param({"10"})
+    public int pages;
+
+    private SampleWorkspace workspace;
+    private PdfService service;
+    private byte[] inplaceResult;
+    private byte[] lineResult;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = SampleWorkspace.open(SyntheticCorpus.Profile.DENSE, pages);
+        service = workspace.service;
+        inplaceResult = bytes(service.editPdfReplaceInplace(SyntheticCorpus.NEEDLE, REPLACEMENT, false,
+                PdfService.OutputMode.FULL));
+        lineResult = bytes(service.editWholeLine(SyntheticCorpus.NEEDLE, REPLACEMENT, false, null, null,
+                PdfService.OutputMode.FULL));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workspace.close();
+    }
+
+    @Benchmark
+    public long editInplace() throws IOException {
+        return SampleWorkspace.drain(service.editPdfReplaceInplace(SyntheticCorpus.NEEDLE, REPLACEMENT, false,
+                PdfService.OutputMode.FULL));
+    }
+
+    @Benchmark
+    public long editWholeLine() throws IOException {
+        return SampleWorkspace.drain(service.editWholeLine(SyntheticCorpus.NEEDLE, REPLACEMENT, false, null, null,
+                PdfService.OutputMode.FULL));
+    }
+
+    @Benchmark
+    public long renderInplace() throws IOException {
+        return render(inplaceResult);
+    }
+
+    @Benchmark
+    public long renderWholeLine() throws IOException {
+        return render(lineResult);
+    }
+
+    /** 以 72 dpi 渲染全部页面，返回像素数 */
+    private static long render(byte[] pdf) throws IOException {
+        long pixels = 0;
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int i = 0; i < document.getNumberOfPages(); i++) {
+                var image = renderer.renderImage(i);
+                pixels += (long) image.getWidth() * image.getHeight();
+            }
+        }
+        return pixels;
+    }
+
+    private static byte[] bytes(PdfOutput output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (output) {
+            output.writeTo(out);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.PdfService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * editPdfReplace：抽取全文 → 替换 → 重排写入新文档。
+ * 重排固定使用 Helvetica（WinAnsi），无法编码 CJK 语料，故不含 CJK profile。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflowBenchmark {
+
+    private static final String REPLACEMENT = "word";
+
+    @Param({"10", "100"})
+    public int pages;
+
+    @Param({"PROSE", "TABLE", "MIXED"})
+    public SyntheticCorpus.Profile profile;
+
+    private SampleWorkspace workspace;
+    private PdfService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = SampleWorkspace.open(profile, pages);
+        service = workspace.service;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workspace.close();
+    }
+
+    @Benchmark
+    public long editReflow() throws IOException {
+        return SampleWorkspace.drain(service.editPdfReplace(SyntheticCorpus.NEEDLE, REPLACEMENT));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.AnnotatedPdfCache;
+import com.example.pdfdemo.service.DocumentLayoutCache;
+import com.example.pdfdemo.service.DocumentLoader;
+import com.example.pdfdemo.service.EditResultCache;
+import com.example.pdfdemo.service.ParallelTextExtractor;
+import com.example.pdfdemo.service.PdfMetrics;
+import com.example.pdfdemo.service.PdfOutput;
+import com.example.pdfdemo.service.PdfService;
+import com.example.pdfdemo.service.TextIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 编辑类基准的工作目录：PdfService 的示例文件位于 ${user.dir}/data，
+ * 这里把 user.dir 指向临时目录并放入语料，关闭时恢复并清理。
+ */
+final class SampleWorkspace implements Closeable {
+
+    final PdfService service;
+    private final ParallelTextExtractor extractor;
+    private final TextIndex textIndex;
+    private final Path workDir;
+    private final String previousUserDir;
+
+    private SampleWorkspace(Path workDir, String previousUserDir) throws IOException {
+        this.workDir = workDir;
+        this.previousUserDir = previousUserDir;
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // 与 application.yml 默认值一致：内存预算取最大堆一半，workers=CPU 核数，每块 32 页
+        DocumentLoader loader = new DocumentLoader(registry, DataSize.ofBytes(0), DataSize.ofMegabytes(2), 4.0, 1.0,
+                0.5, DataSize.ofMegabytes(4), "", Duration.ofMinutes(2), true);
+        this.extractor = new ParallelTextExtractor(loader, 0, 32);
+        // 指标按生产默认常开（不输出日志），基准结果包含其开销
+        PdfMetrics metrics = new PdfMetrics(registry, true, false, new double[]{0.5, 0.95, 0.99}, false);
+        DocumentLayoutCache layoutCache = new DocumentLayoutCache(extractor, 32, Duration.ofMinutes(10));
+        // 索引不登记示例文件（不调用 ensureSamplePdf），编辑基准始终走整本抽取
+        this.textIndex = new TextIndex(layoutCache, workDir.resolve("index").toString());
+        // 编辑结果缓存关闭（max-size 0）：编辑基准测的是每次实际编辑，而不是命中缓存的文件拷贝
+        this.service = new PdfService(layoutCache, extractor, metrics, loader,
+                new AnnotatedPdfCache(workDir.resolve("annotated").toString(), 16), textIndex,
+                new EditResultCache(registry, workDir.resolve("edits").toString(), DataSize.ofBytes(0)));
+    }
+
+    static SampleWorkspace open(SyntheticCorpus.Profile profile, int pages) throws IOException {
+        Path workDir = Files.createTempDirectory("pdfbox-demo-bench");
+        Files.createDirectories(workDir.resolve("data"));
+        Files.copy(CorpusFiles.get(profile, pages), workDir.resolve("data").resolve("example.pdf"));
+        String previous = System.getProperty("user.dir");
+        System.setProperty("user.dir", workDir.toString());
+        return new SampleWorkspace(workDir, previous);
+    }
+
+    /** 输出写入只计数的空流，返回字节数（交给 JMH，防止序列化被消除） */
+    static long drain(PdfOutput output) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (output) {
+            output.writeTo(out);
+        }
+        return out.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        extractor.shutdown();
+        textIndex.shutdown();
+        System.setProperty("user.dir", previousUserDir);
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.pdfdemo.benchmark;
+
+import com.example.pdfdemo.service.PdfService;
+import org.apache.fontbox.ttf.TrueTypeCollection;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 合成基准语料：首页为 PdfService 的示例页，之后按 Profile 生成指定页数的内容。
+ * 内容由固定种子的随机数生成，同一参数每次生成的文件完全一致；不依赖网络。
+ *  - PROSE：单一字体的长段落；
+ *  - TABLE：密集表格（每个单元格一个文本块，外加网格线）；
+ *  - MIXED：多种标准字体/字号交替的标题与正文；
+ *  - CJK：Type0（Identity-H）复合字体的中文段落；
+ *  - DENSE：每行多处 NEEDLE，逐字形自右向左绘制（内容流顺序与版式顺序相反，原位改写不可用，
+ *    替换全部退回覆盖绘制），用于覆盖绘制的输出大小与渲染耗时。
+ * CJK 字体取自 -Dcorpus.cjk-font 或系统字体目录；找不到支持中文的字体时退回 DejaVu/Liberation
+ * 等 TrueType 字体并改用希腊/西里尔文字，仍走复合字体的双字节编码路径。
+ */
+public final class SyntheticCorpus {
+
+    public enum Profile { PROSE, TABLE, MIXED, CJK, DENSE }
+
+    /** 每页都会出现的单词，供替换类基准命中 */
+    public static final String NEEDLE = "world";
+
+    private static final float MARGIN = 50f;
+    private static final long SEED = 20240601L;
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", NEEDLE, "invoice", "total", "amount", "page",
+            "layout", "baseline", "glyph", "render", "stream", "content", "the", "of", "and", "data",
+            "quarterly", "revenue", "report", "summary", "north", "region", "PDF", "text", "replace", "font"
+    };
+    private static final String CJK_SAMPLE = "中文数据报告";
+    private static final String CJK_CHARS =
+            "的一是在不了有和人这中大为上个国我以要他时来用们生到作地于出就分对成会可主发年动同工也能下过子说产种面而方后多定行学法所民得经十三之进着等部度家电力里如水化高自二理起小物现实加量都两体制机当使点从业本去把性好应开它合还因由其些然前外天政四日那社义事平形相全表间样与关各重新线内数正心反你明看原又么利比或但质气第向道命此变条只没结解问意建月公无系军很情者最立代想已通并提直题党程展五果料象员革位入常文总次品式活设及管特件长求老头基资边流路级少图山统接知较将组见计别她手角期根论运农指几九区强放决西被干做必战先回则任取据处队南给色光门即保治北造百规热领七海口东导器压志世金增争济阶油思术极交受联什认六共权收证改清己美再采转更单风切打白教速花带安场身车例真务具万每目至达走积示议声报斗完类八离华名确才科张信马节话米整空元况今集温传土许步群广石记需段研界拉林律叫且究观越织装影算低持音众书布复容儿须际商非验连断深难近矿千周委素技备半办青省列习响约支般史感劳便团往酸历市克何除消构府称太准精值号率族维划选标写存候毛亲快效斯院查江型眼王按格养易置派层片始却专状育厂京识适属圆包火住调满县局照参红细引听该铁价严";
+    private static final String FALLBACK_CHARS =
+            "αβγδεζηθικλμνξοπρστυφχψωΑΒΓΔΕΖΗΘΙΚΛΜΝΞΟΠΡΣΤΥΦΧΨΩабвгдежзийклмнопрстуфхцчшщыэюя";
+    private static final Pattern CJK_FONT_NAME = Pattern.compile(
+            "(?i).*(cjk|wqy|hei|song|ming|kai|fang|gothic|noto\\w*(sc|tc|jp|kr)|simsun|msyh|pingfang|droidsansfallback).*\\.(ttf|otf|ttc)");
+    private static final Pattern ANY_TTF = Pattern.compile("(?i).*(dejavusans|liberationsans|arial)\\.ttf");
+
+    private SyntheticCorpus() {}
+
+    /** 生成语料到 target（已存在则覆盖），返回 target */
+    public static Path write(Path target, Profile profile, int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PdfService.addSamplePage(document);
+            Random random = new Random(SEED + profile.ordinal() * 31L + pages);
+            CompositeFont composite = profile == Profile.CJK ? CompositeFont.load(document) : null;
+            for (int i = 1; i < pages; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                    switch (profile) {
+                        case TABLE: writeTable(cs, page, random); break;
+                        case MIXED: writeMixed(cs, page, random); break;
+                        case CJK: writeCjk(cs, page, random, composite); break;
+                        case DENSE: writeDense(cs, page, random); break;
+                        default: writeProse(cs, page, random, PDType1Font.HELVETICA, 11f);
+                    }
+                }
+            }
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            document.save(target.toFile());
+        }
+        return target;
+    }
+
+    /** 随机英文段落，长度约 words 个词（保证包含 NEEDLE），供 wrapText 等纯计算基准使用 */
+    public static String paragraph(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(i % 17 == 0 ? NEEDLE : WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static void writeProse(PDPageContentStream cs, PDPage page, Random random,
+                                   PDFont font, float size) throws IOException {
+        float leading = size * 1.35f;
+        float width = page.getMediaBox().getWidth() - 2 * MARGIN;
+        cs.setFont(font, size);
+        cs.setLeading(leading);
+        cs.beginText();
+        cs.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
+        int lines = (int) ((page.getMediaBox().getHeight() - 2 * MARGIN) / leading);
+        for (int l = 0; l < lines; l++) {
+            cs.showText(fill(random, font, size, width, l % 9 == 0));
+            cs.newLine();
+        }
+        cs.endText();
+    }
+
+    private static void writeTable(PDPageContentStream cs, PDPage page, Random random) throws IOException {
+        int rows = 48, cols = 8;
+        float top = page.getMediaBox().getHeight() - MARGIN;
+        float cellW = (page.getMediaBox().getWidth() - 2 * MARGIN) / cols;
+        float cellH = (page.getMediaBox().getHeight() - 2 * MARGIN) / rows;
+        cs.setLineWidth(0.3f);
+        for (int r = 0; r <= rows; r++) {
+            cs.moveTo(MARGIN, top - r * cellH);
+            cs.lineTo(MARGIN + cols * cellW, top - r * cellH);
+        }
+        for (int c = 0; c <= cols; c++) {
+            cs.moveTo(MARGIN + c * cellW, top);
+            cs.lineTo(MARGIN + c * cellW, top - rows * cellH);
+        }
+        cs.stroke();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                String cell;
+                if (r == 0) cell = "Col " + (c + 1);
+                else if (c == 0) cell = (r % 10 == 0) ? NEEDLE : WORDS[random.nextInt(WORDS.length)];
+                else cell = String.format(Locale.ROOT, "%,.2f", random.nextDouble() * 100000);
+                cs.beginText();
+                cs.setFont(r == 0 ? PDType1Font.HELVETICA_BOLD : PDType1Font.HELVETICA, 7f);
+                cs.newLineAtOffset(MARGIN + c * cellW + 2, top - (r + 1) * cellH + 3);
+                cs.showText(cell);
+                cs.endText();
+            }
+        }
+    }
+
+    private static void writeMixed(PDPageContentStream cs, PDPage page, Random random) throws IOException {
+        PDFont[] bodyFonts = {PDType1Font.TIMES_ROMAN, PDType1Font.HELVETICA, PDType1Font.COURIER,
+                PDType1Font.TIMES_ITALIC, PDType1Font.HELVETICA_OBLIQUE};
+        float width = page.getMediaBox().getWidth() - 2 * MARGIN;
+        float y = page.getMediaBox().getHeight() - MARGIN;
+        int section = 0;
+        while (y > MARGIN + 40) {
+            float headingSize = 14f + random.nextInt(5);
+            cs.beginText();
+            cs.setFont(PDType1Font.HELVETICA_BOLD, headingSize);
+            cs.newLineAtOffset(MARGIN, y);
+            cs.showText("Section " + (++section) + " " + WORDS[random.nextInt(WORDS.length)]);
+            cs.endText();
+            y -= headingSize * 1.6f;
+            int lines = 3 + random.nextInt(5);
+            for (int l = 0; l < lines && y > MARGIN; l++) {
+                PDFont font = bodyFonts[random.nextInt(bodyFonts.length)];
+                float size = 8f + random.nextInt(5);
+                cs.beginText();
+                cs.setFont(font, size);
+                cs.newLineAtOffset(MARGIN, y);
+                // 行内切换字体：前半行正文字体，后半行粗体
+                String text = fill(random, font, size, width * 0.55f, l == 0);
+                cs.showText(text);
+                cs.setFont(PDType1Font.TIMES_BOLD, size);
+                cs.showText(" " + fill(random, PDType1Font.TIMES_BOLD, size, width * 0.35f, false));
+                cs.endText();
+                y -= size * 1.4f;
+            }
+            y -= 8f;
+        }
+    }
+
+    private static void writeCjk(PDPageContentStream cs, PDPage page, Random random,
+                                 CompositeFont composite) throws IOException {
+        float size = 11f;
+        float leading = size * 1.5f;
+        float width = page.getMediaBox().getWidth() - 2 * MARGIN;
+        cs.setFont(composite.font, size);
+        cs.setLeading(leading);
+        cs.beginText();
+        cs.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN);
+        int lines = (int) ((page.getMediaBox().getHeight() - 2 * MARGIN) / leading);
+        for (int l = 0; l < lines; l++) {
+            StringBuilder sb = new StringBuilder();
+            if (l % 9 == 0) sb.append(composite.cjk ? CJK_SAMPLE : NEEDLE).append(' ');
+            float lineWidth = composite.font.getStringWidth(sb.toString()) / 1000 * size;
+            while (true) {
+                int cp = composite.alphabet.codePointAt(random.nextInt(composite.alphabet.length()));
+                float w = composite.font.getStringWidth(new String(Character.toChars(cp))) / 1000 * size;
+                if (lineWidth + w > width) break;
+                sb.appendCodePoint(cp);
+                lineWidth += w;
+                // 中文按标点断句，非中文按词加空格
+                if (random.nextInt(composite.cjk ? 14 : 7) == 0 && lineWidth + w < width) {
+                    sb.append(composite.cjk ? "，" : " ");
+                    lineWidth += composite.font.getStringWidth(composite.cjk ? "，" : " ") / 1000 * size;
+                }
+            }
+            cs.showText(sb.toString());
+            cs.newLine();
+        }
+        cs.endText();
+    }
+
+    private static void writeDense(PDPageContentStream cs, PDPage page, Random random) throws IOException {
+        PDFont font = PDType1Font.HELVETICA;
+        float size = 10f;
+        float leading = size * 1.4f;
+        float width = page.getMediaBox().getWidth() - 2 * MARGIN;
+        float top = page.getMediaBox().getHeight() - MARGIN;
+        int lines = (int) ((page.getMediaBox().getHeight() - 2 * MARGIN) / leading);
+        cs.beginText();
+        cs.setFont(font, size);
+        for (int l = 0; l < lines; l++) {
+            // 每隔一个词放一处 NEEDLE
+            StringBuilder sb = new StringBuilder(NEEDLE);
+            for (int w = 1; ; w++) {
+                String next = sb + " " + (w % 2 == 0 ? NEEDLE : WORDS[random.nextInt(WORDS.length)]);
+                if (font.getStringWidth(next) / 1000 * size > width) break;
+                sb.setLength(0);
+                sb.append(next);
+            }
+            String text = sb.toString();
+            float y = top - l * leading;
+            for (int i = text.length() - 1; i >= 0; i--) {
+                if (text.charAt(i) == ' ') continue;
+                float x = MARGIN + font.getStringWidth(text.substring(0, i)) / 1000 * size;
+                cs.setTextMatrix(Matrix.getTranslateInstance(x, y));
+                cs.showText(text.substring(i, i + 1));
+            }
+        }
+        cs.endText();
+    }
+
+    /** 用随机词填满给定宽度的一行 */
+    private static String fill(Random random, PDFont font, float size, float width, boolean withNeedle) throws IOException {
+        StringBuilder sb = new StringBuilder(withNeedle ? NEEDLE : WORDS[random.nextInt(WORDS.length)]);
+        while (true) {
+            String next = sb + " " + WORDS[random.nextInt(WORDS.length)];
+            if (font.getStringWidth(next) / 1000 * size > width) return sb.toString();
+            sb.setLength(0);
+            sb.append(next);
+        }
+    }
+
+    /** CJK 页面使用的复合字体（子集嵌入）及其可用字符集 */
+    private static final class CompositeFont {
+        final PDType0Font font;
+        final String alphabet;
+        final boolean cjk;
+
+        private CompositeFont(PDType0Font font, String alphabet, boolean cjk) {
+            this.font = font;
+            this.alphabet = alphabet;
+            this.cjk = cjk;
+        }
+
+        static CompositeFont load(PDDocument document) throws IOException {
+            for (File file : candidates(CJK_FONT_NAME)) {
+                if (encodes(file, CJK_SAMPLE + CJK_CHARS + "，")) {
+                    return new CompositeFont(open(document, file), CJK_CHARS, true);
+                }
+            }
+            for (File file : candidates(ANY_TTF)) {
+                if (encodes(file, FALLBACK_CHARS + NEEDLE + " ")) {
+                    return new CompositeFont(open(document, file), FALLBACK_CHARS, false);
+                }
+            }
+            throw new IOException("no TrueType font found for the CJK corpus; set -Dcorpus.cjk-font=/path/to/font.ttf");
+        }
+
+        /** 在临时文档中试加载，避免缺字的字体被登记到目标文档的子集列表 */
+        private static boolean encodes(File file, String text) {
+            try (PDDocument probe = new PDDocument()) {
+                open(probe, file).encode(text); // 缺字时抛出 IllegalArgumentException
+                return true;
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        private static PDType0Font open(PDDocument document, File file) throws IOException {
+            if (!file.getName().toLowerCase().endsWith(".ttc")) {
+                return PDType0Font.load(document, file);
+            }
+            TrueTypeFont[] first = new TrueTypeFont[1];
+            TrueTypeCollection collection = new TrueTypeCollection(file);
+            collection.processAllFonts(ttf -> { if (first[0] == null) first[0] = ttf; });
+            if (first[0] == null) throw new IOException("empty font collection: " + file);
+            return PDType0Font.load(document, first[0], true);
+        }
+
+        private static List<File> candidates(Pattern name) throws IOException {
+            List<File> out = new ArrayList<>();
+            String configured = System.getProperty("corpus.cjk-font");
+            if (configured != null && !configured.isBlank()) out.add(new File(configured));
+            String home = System.getProperty("user.home");
+            for (Path dir : new Path[]{Paths.get("/usr/share/fonts"), Paths.get("/usr/local/share/fonts"),
+                    Paths.get(home, ".fonts"), Paths.get(home, ".local/share/fonts"),
+                    Paths.get("/System/Library/Fonts"), Paths.get("/Library/Fonts"), Paths.get("C:/Windows/Fonts")}) {
+                if (!Files.isDirectory(dir)) continue;
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.filter(p -> name.matcher(p.getFileName().toString()).matches())
+                            .sorted()
+                            .forEach(p -> out.add(p.toFile()));
+                }
+            }
+            return out;
+        }
+    }
+}
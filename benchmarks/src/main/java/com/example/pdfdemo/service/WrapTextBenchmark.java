@@ -0,0 +1,47 @@
+package com.example.pdfdemo.service;
+
+import com.example.pdfdemo.benchmark.SyntheticCorpus;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PdfService.wrapText（包内可见，故基准放在同名包下）：按词数参数化的纯计算路径。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WrapTextBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int words;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        text = SyntheticCorpus.paragraph(new Random(words), words);
+    }
+
+    @Benchmark
+    public List<String> wrapText() throws IOException {
+        return PdfService.wrapText(text, PDType1Font.HELVETICA, 12f, 495f);
+    }
+}
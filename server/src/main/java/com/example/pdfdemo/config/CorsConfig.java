@@ -14,6 +14,13 @@ public class CorsConfig {
         config.addAllowedOriginPattern("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        config.addExposedHeader("X-Edit-Report");
+        config.addExposedHeader("X-Base-Length");
+        config.addExposedHeader("X-Base-Sha256");
+        config.addExposedHeader("Location");
+        config.addExposedHeader("X-Page-Count");
+        config.addExposedHeader("X-Page-Range");
+        config.addExposedHeader("X-Next-Cursor");
         config.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -1,10 +1,16 @@
 package com.example.pdfdemo.controller;
 
+import com.example.pdfdemo.service.PdfOutput;
 import com.example.pdfdemo.service.PdfService;
+import com.example.pdfdemo.service.TextBoxCollector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -14,15 +20,39 @@ import java.util.Map;
 @RequestMapping("/api/pdf")
 public class PdfController {
 
+    /** 批量替换返回的逐条规则报告（JSON）所在的响应头 */
+    public static final String EDIT_REPORT_HEADER = "X-Edit-Report";
+    /** output=delta 时：增量字节对应的基准文件长度与 SHA-256 */
+    public static final String BASE_LENGTH_HEADER = "X-Base-Length";
+    public static final String BASE_HASH_HEADER = "X-Base-Sha256";
+    /** 按页范围请求文本框时：文档总页数、本段实际覆盖的页（from-to）与下一段的游标（到末页时没有） */
+    public static final String PAGE_COUNT_HEADER = "X-Page-Count";
+    public static final String PAGE_RANGE_HEADER = "X-Page-Range";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    /** 逐页流式输出文本框（Accept: application/x-ndjson） */
+    public static final String NDJSON = "application/x-ndjson";
+    /** 二进制列式文本框（Accept: application/x-text-box-columns，格式见 TextBoxColumns） */
+    public static final String TEXT_BOX_COLUMNS = "application/x-text-box-columns";
+
     private final PdfService pdfService;
+    private final ObjectMapper objectMapper;
 
-    public PdfController(PdfService pdfService) {
+    public PdfController(PdfService pdfService, ObjectMapper objectMapper) {
         this.pdfService = pdfService;
+        this.objectMapper = objectMapper;
+    }
+
+    public static class BatchEditRequest {
+        public List<PdfService.ReplaceRule> rules;
+        public boolean ignoreCase;
+        public String mode; // inplace（默认）| line
+        public String output; // full（默认）| incremental | delta
     }
 
     @GetMapping("/sample")
-    public ResponseEntity<byte[]> getSample() throws IOException {
-        byte[] data = pdfService.getSamplePdf();
+    public ResponseEntity<Resource> getSample() throws IOException {
+        // 未修改的文件以 Resource 输出：分块流式拷贝，支持 Range，不整体读入堆
+        Resource data = pdfService.getSamplePdf();
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_PDF)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=example.pdf")
@@ -30,30 +60,30 @@ public class PdfController {
     }
 
     @PostMapping("/edit")
-    public ResponseEntity<byte[]> edit(@RequestBody Map<String, String> body) throws IOException {
+    public ResponseEntity<StreamingResponseBody> edit(@RequestBody Map<String, String> body) throws IOException {
         String oldText = body.getOrDefault("oldText", "");
         String newText = body.getOrDefault("newText", "");
-        byte[] data = pdfService.editPdfReplace(oldText, newText);
+        PdfOutput data = pdfService.editPdfReplace(oldText, newText);
         return ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_PDF)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=modified.pdf")
-                .body(data);
+                .body(stream(data));
     }
 
     @PostMapping("/edit-inplace")
-    public ResponseEntity<byte[]> editInplace(@RequestBody Map<String, String> body) throws IOException {
+    public ResponseEntity<StreamingResponseBody> editInplace(@RequestBody Map<String, String> body) throws IOException {
         String oldText = body.getOrDefault("oldText", "");
         String newText = body.getOrDefault("newText", "");
         boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
-        byte[] data = pdfService.editPdfReplaceInplace(oldText, newText, ignoreCase);
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.get("output"));
+        PdfOutput data = pdfService.editPdfReplaceInplace(oldText, newText, ignoreCase, output);
+        return withOutputHeaders(ResponseEntity.ok(), data)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=modified_inplace.pdf")
-                .body(data);
+                .body(stream(data));
     }
 
     @PostMapping("/edit-line")
-    public ResponseEntity<byte[]> editWholeLine(@RequestBody Map<String, String> body) throws IOException {
+    public ResponseEntity<StreamingResponseBody> editWholeLine(@RequestBody Map<String, String> body) throws IOException {
         String oldText = body.getOrDefault("oldText", "");
         String newText = body.getOrDefault("newText", "");
         boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
@@ -62,27 +92,164 @@ public class PdfController {
             try { pageIndex = Integer.parseInt(body.get("pageIndex")); } catch (Exception ignored) {}
         }
         String lineText = body.getOrDefault("lineText", null);
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.get("output"));
 
-        byte[] data = pdfService.editWholeLine(oldText, newText, ignoreCase, pageIndex, lineText);
-        return ResponseEntity.ok()
-                .contentType(MediaType.APPLICATION_PDF)
+        PdfOutput data = pdfService.editWholeLine(oldText, newText, ignoreCase, pageIndex, lineText, output);
+        return withOutputHeaders(ResponseEntity.ok(), data)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=modified_line.pdf")
-                .body(data);
+                .body(stream(data));
     }
 
+    @PostMapping("/edit-batch")
+    public ResponseEntity<StreamingResponseBody> editBatch(@RequestBody BatchEditRequest body) throws IOException {
+        List<PdfService.ReplaceRule> rules = body.rules == null ? List.of() : body.rules;
+        boolean wholeLine = "line".equalsIgnoreCase(body.mode);
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.output);
+        PdfOutput data = pdfService.editBatch(rules, body.ignoreCase, wholeLine, output);
+        String report;
+        try {
+            report = objectMapper.writeValueAsString(data.getReport());
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+        return withOutputHeaders(ResponseEntity.ok(), data)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=modified_batch.pdf")
+                .header(EDIT_REPORT_HEADER, report)
+                .body(stream(data));
+    }
+
+    private ResponseEntity.BodyBuilder withOutputHeaders(ResponseEntity.BodyBuilder builder,
+                                                        PdfOutput data) throws IOException {
+        if (data.getMode() != PdfService.OutputMode.DELTA) {
+            return builder.contentType(MediaType.APPLICATION_PDF);
+        }
+        // 增量片段本身不是完整 PDF，需拼接到基准文件之后使用
+        return builder.contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(BASE_LENGTH_HEADER, String.valueOf(data.getBaseLength()))
+                .header(BASE_HASH_HEADER, pdfService.getSampleContentHash());
+    }
+
+    /** 编辑已在请求线程完成；序列化直接写入响应流，写完关闭文档 */
+    private static StreamingResponseBody stream(PdfOutput data) {
+        return out -> {
+            try (data) {
+                data.writeTo(out);
+            }
+        };
+    }
+
+    /** 页范围参数（page、from/to、cursor、span，页号 0-based）；都不给时返回整本文档的文本框 */
     @GetMapping(value = "/text-boxes", produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<com.example.pdfdemo.service.TextBoxCollector.Box> getTextBoxes(@RequestParam(value = "mode", required = false) String mode) throws IOException {
-        return pdfService.collectTextBoxes(mode);
+    public ResponseEntity<List<TextBoxCollector.Box>> getTextBoxes(@RequestParam(value = "mode", required = false) String mode,
+                                                                   @RequestParam(value = "page", required = false) Integer page,
+                                                                   @RequestParam(value = "from", required = false) Integer from,
+                                                                   @RequestParam(value = "to", required = false) Integer to,
+                                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                                   @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        PdfService.PageRequest pages = pageRequest(page, from, to, cursor, span);
+        if (pages.isEmpty()) {
+            return ResponseEntity.ok(pdfService.collectTextBoxes(mode));
+        }
+        return textBoxPage(pdfService.collectTextBoxes(mode, pages));
+    }
+
+    /** 同 /text-boxes，但每页一行 JSON（{ pageIndex, pageCount, boxes }），抽取完一页即写出并 flush */
+    @GetMapping(value = "/text-boxes", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTextBoxes(@RequestParam(value = "mode", required = false) String mode,
+                                                                 @RequestParam(value = "page", required = false) Integer page,
+                                                                 @RequestParam(value = "from", required = false) Integer from,
+                                                                 @RequestParam(value = "to", required = false) Integer to,
+                                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                                 @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        return ndjson(pdfService.streamTextBoxes(mode, pageRequest(page, from, to, cursor, span)), objectMapper);
+    }
+
+    /** 同 /text-boxes，以二进制列式格式输出缓存文件；ETag 为文档版本 + 模式（+ 页范围），分页信息同 JSON 放在响应头 */
+    @GetMapping(value = "/text-boxes", produces = TEXT_BOX_COLUMNS)
+    public ResponseEntity<Resource> getTextBoxColumns(@RequestParam(value = "mode", required = false) String mode,
+                                                      @RequestParam(value = "page", required = false) Integer page,
+                                                      @RequestParam(value = "from", required = false) Integer from,
+                                                      @RequestParam(value = "to", required = false) Integer to,
+                                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        PdfService.PageRequest pages = pageRequest(page, from, to, cursor, span);
+        return textBoxColumns(pdfService.getTextBoxColumns(mode, pages), !pages.isEmpty());
     }
 
     @GetMapping(value = "/annotated")
-    public ResponseEntity<byte[]> getAnnotated(@RequestParam(value = "mode", required = false) String mode) throws IOException {
-        byte[] data = pdfService.renderAnnotatedTextBoxes(mode);
-        return ResponseEntity.ok()
+    public ResponseEntity<Resource> getAnnotated(@RequestParam(value = "mode", required = false) String mode,
+                                                 @RequestParam(value = "page", required = false) Integer page,
+                                                 @RequestParam(value = "from", required = false) Integer from,
+                                                 @RequestParam(value = "to", required = false) Integer to,
+                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                 @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        return annotated(pdfService.getAnnotatedPdf(mode, pageRequest(page, from, to, cursor, span)));
+    }
+
+    /**
+     * 缓存文件以 Resource 输出（支持 Range）；ETag 为文档版本 + 模式（+ 页范围），If-None-Match 命中时返回 304。
+     * 按页范围请求时分页信息同 /text-boxes 放在响应头。
+     */
+    static ResponseEntity<Resource> annotated(PdfService.AnnotatedPdf data) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
                 .contentType(MediaType.APPLICATION_PDF)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=annotated.pdf")
-                .body(data);
+                .eTag(data.version)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=annotated.pdf");
+        if (data.pageCount >= 0) {
+            builder.header(PAGE_COUNT_HEADER, String.valueOf(data.pageCount))
+                    .header(PAGE_RANGE_HEADER, data.from + "-" + data.to);
+            if (data.nextCursor != null) {
+                builder.header(NEXT_CURSOR_HEADER, data.nextCursor);
+            }
+        }
+        return builder.body(data.file);
     }
-}
 
+    static ResponseEntity<StreamingResponseBody> ndjson(PdfService.TextBoxStream boxes, ObjectMapper objectMapper) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(out -> boxes.writeTo(page -> {
+                    out.write(objectMapper.writeValueAsBytes(page));
+                    out.write('\n');
+                    out.flush();
+                }));
+    }
 
+    static ResponseEntity<Resource> textBoxColumns(PdfService.TextBoxColumnsFile data, boolean paged) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TEXT_BOX_COLUMNS))
+                .eTag(data.version)
+                .cacheControl(CacheControl.noCache())
+                .header(PAGE_COUNT_HEADER, String.valueOf(data.pageCount));
+        if (paged) {
+            builder.header(PAGE_RANGE_HEADER, data.from + "-" + data.to);
+            if (data.nextCursor != null) {
+                builder.header(NEXT_CURSOR_HEADER, data.nextCursor);
+            }
+        }
+        return builder.body(data.file);
+    }
+
+    static PdfService.PageRequest pageRequest(Integer page, Integer from, Integer to, String cursor, Integer span) {
+        PdfService.PageRequest pages = new PdfService.PageRequest();
+        pages.page = page;
+        pages.from = from;
+        pages.to = to;
+        pages.cursor = cursor == null || cursor.isEmpty() ? null : cursor;
+        pages.span = span;
+        return pages;
+    }
+
+    /** 响应体仍是 Box 数组（与整本请求相同），分页信息放在响应头 */
+    static ResponseEntity<List<TextBoxCollector.Box>> textBoxPage(PdfService.TextBoxPage page) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(PAGE_COUNT_HEADER, String.valueOf(page.pageCount))
+                .header(PAGE_RANGE_HEADER, page.from + "-" + page.to);
+        if (page.nextCursor != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.nextCursor);
+        }
+        return builder.body(page.boxes);
+    }
+}
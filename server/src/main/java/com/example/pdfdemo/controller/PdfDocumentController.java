@@ -0,0 +1,171 @@
+package com.example.pdfdemo.controller;
+
+import com.example.pdfdemo.service.DocumentStore;
+import com.example.pdfdemo.service.PdfService;
+import com.example.pdfdemo.service.TextBoxCollector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文档库接口：上传任意 PDF 后按 id 读取与编辑。请求体与同步接口（PdfController）相同，
+ * 编辑结果不直接返回文件，而是写回文档（生成新版本），响应为编辑后的文档元数据；内容经 /{id}/content 读取。
+ */
+@RestController
+@RequestMapping("/api/pdf/documents")
+public class PdfDocumentController {
+
+    private final DocumentStore store;
+    private final PdfService pdfService;
+    private final ObjectMapper objectMapper;
+
+    public PdfDocumentController(DocumentStore store, PdfService pdfService, ObjectMapper objectMapper) {
+        this.store = store;
+        this.pdfService = pdfService;
+        this.objectMapper = objectMapper;
+    }
+
+    /** 请求体即 PDF 原始字节（application/pdf 或 application/octet-stream），name 为显示用文件名 */
+    @PostMapping
+    public ResponseEntity<DocumentStore.Document> upload(@RequestParam(value = "name", required = false) String name,
+                                                         InputStream body) throws IOException {
+        DocumentStore.Document document = store.upload(name, body);
+        return ResponseEntity.created(URI.create("/api/pdf/documents/" + document.id)).body(document);
+    }
+
+    @GetMapping
+    public List<DocumentStore.Document> list() {
+        return store.list();
+    }
+
+    @GetMapping("/{id}")
+    public DocumentStore.Document get(@PathVariable String id) {
+        return store.get(id);
+    }
+
+    /** 当前内容；ETag 为内容 SHA-256，If-None-Match 命中时返回 304，支持 Range */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<Resource> content(@PathVariable String id) throws IOException {
+        DocumentStore.Document document = store.get(id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .eTag(document.sha256)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                        .filename(document.name, StandardCharsets.UTF_8).build().toString())
+                .body(store.contentResource(document));
+    }
+
+    /** 页范围参数同 /api/pdf/text-boxes */
+    @GetMapping(value = "/{id}/text-boxes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<TextBoxCollector.Box>> textBoxes(@PathVariable String id,
+                                                                @RequestParam(value = "mode", required = false) String mode,
+                                                                @RequestParam(value = "page", required = false) Integer page,
+                                                                @RequestParam(value = "from", required = false) Integer from,
+                                                                @RequestParam(value = "to", required = false) Integer to,
+                                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                                @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        Path source = store.content(store.get(id));
+        PdfService.PageRequest pages = PdfController.pageRequest(page, from, to, cursor, span);
+        if (pages.isEmpty()) {
+            return ResponseEntity.ok(pdfService.collectTextBoxes(source, mode));
+        }
+        return PdfController.textBoxPage(pdfService.collectTextBoxes(source, mode, pages));
+    }
+
+    @GetMapping(value = "/{id}/text-boxes", produces = PdfController.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTextBoxes(@PathVariable String id,
+                                                                 @RequestParam(value = "mode", required = false) String mode,
+                                                                 @RequestParam(value = "page", required = false) Integer page,
+                                                                 @RequestParam(value = "from", required = false) Integer from,
+                                                                 @RequestParam(value = "to", required = false) Integer to,
+                                                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                                                 @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        Path source = store.content(store.get(id));
+        return PdfController.ndjson(pdfService.streamTextBoxes(source, mode,
+                PdfController.pageRequest(page, from, to, cursor, span)), objectMapper);
+    }
+
+    @GetMapping(value = "/{id}/text-boxes", produces = PdfController.TEXT_BOX_COLUMNS)
+    public ResponseEntity<Resource> textBoxColumns(@PathVariable String id,
+                                                   @RequestParam(value = "mode", required = false) String mode,
+                                                   @RequestParam(value = "page", required = false) Integer page,
+                                                   @RequestParam(value = "from", required = false) Integer from,
+                                                   @RequestParam(value = "to", required = false) Integer to,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        Path source = store.content(store.get(id));
+        PdfService.PageRequest pages = PdfController.pageRequest(page, from, to, cursor, span);
+        return PdfController.textBoxColumns(pdfService.getTextBoxColumns(source, mode, pages), !pages.isEmpty());
+    }
+
+    @GetMapping("/{id}/annotated")
+    public ResponseEntity<Resource> annotated(@PathVariable String id,
+                                              @RequestParam(value = "mode", required = false) String mode,
+                                              @RequestParam(value = "page", required = false) Integer page,
+                                              @RequestParam(value = "from", required = false) Integer from,
+                                              @RequestParam(value = "to", required = false) Integer to,
+                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "span", required = false) Integer span) throws IOException {
+        return PdfController.annotated(pdfService.getAnnotatedPdf(store.content(store.get(id)), mode,
+                PdfController.pageRequest(page, from, to, cursor, span)));
+    }
+
+    /** output：incremental（默认，新版本为原文件 + 增量更新）| full（整体重写） */
+    @PostMapping("/{id}/edit-inplace")
+    public DocumentStore.Revision editInplace(@PathVariable String id,
+                                              @RequestBody Map<String, String> body) throws IOException {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        PdfService.OutputMode output = storedOutput(body.get("output"));
+        return store.edit(id, (source, document) ->
+                pdfService.editPdfReplaceInplace(source, document, oldText, newText, ignoreCase, output));
+    }
+
+    @PostMapping("/{id}/edit-line")
+    public DocumentStore.Revision editWholeLine(@PathVariable String id,
+                                                @RequestBody Map<String, String> body) throws IOException {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        Integer pageIndex = null;
+        if (body.containsKey("pageIndex")) {
+            try { pageIndex = Integer.parseInt(body.get("pageIndex")); } catch (Exception ignored) {}
+        }
+        Integer page = pageIndex;
+        String lineText = body.getOrDefault("lineText", null);
+        PdfService.OutputMode output = storedOutput(body.get("output"));
+        return store.edit(id, (source, document) ->
+                pdfService.editWholeLine(source, document, oldText, newText, ignoreCase, page, lineText, output));
+    }
+
+    @PostMapping("/{id}/edit-batch")
+    public DocumentStore.Revision editBatch(@PathVariable String id,
+                                            @RequestBody PdfController.BatchEditRequest body) throws IOException {
+        List<PdfService.ReplaceRule> rules = body.rules == null ? List.of() : body.rules;
+        boolean wholeLine = "line".equalsIgnoreCase(body.mode);
+        PdfService.OutputMode output = storedOutput(body.output);
+        return store.edit(id, (source, document) ->
+                pdfService.editBatch(source, document, rules, body.ignoreCase, wholeLine, output));
+    }
+
+    /** 写回文档库的必须是完整文件：delta 不适用，按默认的 incremental 处理 */
+    private static PdfService.OutputMode storedOutput(String output) {
+        return "full".equalsIgnoreCase(output) ? PdfService.OutputMode.FULL : PdfService.OutputMode.INCREMENTAL;
+    }
+}
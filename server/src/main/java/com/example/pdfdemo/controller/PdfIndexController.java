@@ -0,0 +1,35 @@
+package com.example.pdfdemo.controller;
+
+import com.example.pdfdemo.service.TextIndex;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 全文索引接口：查询直接读取内存映射的索引段，不打开 PDF；
+ * 文档被修改后索引在后台重建，期间该文档出现在结果的 pending 中。
+ */
+@RestController
+@RequestMapping("/api/pdf/index")
+public class PdfIndexController {
+
+    private final TextIndex textIndex;
+
+    public PdfIndexController(TextIndex textIndex) {
+        this.textIndex = textIndex;
+    }
+
+    @GetMapping
+    public List<TextIndex.DocumentStatus> status() {
+        return textIndex.status();
+    }
+
+    @GetMapping("/search")
+    public TextIndex.QueryResult search(@RequestParam("q") String query,
+                                        @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return textIndex.search(query, limit);
+    }
+}
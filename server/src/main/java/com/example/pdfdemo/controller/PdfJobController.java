@@ -0,0 +1,164 @@
+package com.example.pdfdemo.controller;
+
+import com.example.pdfdemo.service.EditJobService;
+import com.example.pdfdemo.service.JobResultStore;
+import com.example.pdfdemo.service.PdfOutput;
+import com.example.pdfdemo.service.PdfService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 异步任务接口：请求体与同步接口（PdfController）相同，提交后立即返回 202 与任务状态，
+ * 之后通过 GET /jobs/{id} 轮询进度，完成后 GET /jobs/{id}/result 下载结果（响应头与同步接口一致）。
+ */
+@RestController
+@RequestMapping("/api/pdf/jobs")
+public class PdfJobController {
+
+    private final PdfService pdfService;
+    private final EditJobService jobService;
+    private final ObjectMapper objectMapper;
+
+    public PdfJobController(PdfService pdfService, EditJobService jobService, ObjectMapper objectMapper) {
+        this.pdfService = pdfService;
+        this.jobService = jobService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping("/edit")
+    public ResponseEntity<EditJobService.Status> edit(@RequestBody Map<String, String> body) {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        return accepted(jobService.submit("edit", () ->
+                pdf(pdfService.editPdfReplace(oldText, newText), "attachment; filename=modified.pdf", null)));
+    }
+
+    @PostMapping("/edit-inplace")
+    public ResponseEntity<EditJobService.Status> editInplace(@RequestBody Map<String, String> body) {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.get("output"));
+        return accepted(jobService.submit("edit-inplace", () ->
+                pdf(pdfService.editPdfReplaceInplace(oldText, newText, ignoreCase, output),
+                        "attachment; filename=modified_inplace.pdf", null)));
+    }
+
+    @PostMapping("/edit-line")
+    public ResponseEntity<EditJobService.Status> editWholeLine(@RequestBody Map<String, String> body) {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        Integer pageIndex = null;
+        if (body.containsKey("pageIndex")) {
+            try { pageIndex = Integer.parseInt(body.get("pageIndex")); } catch (Exception ignored) {}
+        }
+        Integer page = pageIndex;
+        String lineText = body.getOrDefault("lineText", null);
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.get("output"));
+        return accepted(jobService.submit("edit-line", () ->
+                pdf(pdfService.editWholeLine(oldText, newText, ignoreCase, page, lineText, output),
+                        "attachment; filename=modified_line.pdf", null)));
+    }
+
+    @PostMapping("/edit-batch")
+    public ResponseEntity<EditJobService.Status> editBatch(@RequestBody PdfController.BatchEditRequest body) {
+        List<PdfService.ReplaceRule> rules = body.rules == null ? List.of() : body.rules;
+        boolean wholeLine = "line".equalsIgnoreCase(body.mode);
+        boolean ignoreCase = body.ignoreCase;
+        PdfService.OutputMode output = PdfService.OutputMode.parse(body.output);
+        return accepted(jobService.submit("edit-batch", () -> {
+            PdfOutput data = pdfService.editBatch(rules, ignoreCase, wholeLine, output);
+            String report;
+            try {
+                report = objectMapper.writeValueAsString(data.getReport());
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
+            return pdf(data, "attachment; filename=modified_batch.pdf", report);
+        }));
+    }
+
+    @PostMapping("/text-boxes")
+    public ResponseEntity<EditJobService.Status> textBoxes(@RequestParam(value = "mode", required = false) String mode) {
+        return accepted(jobService.submit("text-boxes", () -> EditJobService.Output.bytes(
+                MediaType.APPLICATION_JSON_VALUE, Map.of(),
+                objectMapper.writeValueAsBytes(pdfService.collectTextBoxes(mode)))));
+    }
+
+    @PostMapping("/annotated")
+    public ResponseEntity<EditJobService.Status> annotated(@RequestParam(value = "mode", required = false) String mode) {
+        return accepted(jobService.submit("annotated", () ->
+                pdf(pdfService.renderAnnotatedTextBoxes(mode), "inline; filename=annotated.pdf", null)));
+    }
+
+    @GetMapping("/{id}")
+    public EditJobService.Status status(@PathVariable String id) {
+        EditJobService.Status status = jobService.get(id);
+        if (status == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "unknown or expired job");
+        return status;
+    }
+
+    @GetMapping("/{id}/result")
+    public ResponseEntity<StreamingResponseBody> result(@PathVariable String id) {
+        EditJobService.Status status = status(id);
+        JobResultStore.Entry entry = jobService.result(id);
+        if (entry == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "job is " + status.state);
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(entry.contentType))
+                .contentLength(entry.size);
+        entry.headers.forEach(builder::header);
+        return builder.body(out -> {
+            try (InputStream in = entry.open()) {
+                in.transferTo(out);
+            }
+        });
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        if (!jobService.delete(id)) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "unknown or expired job");
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<EditJobService.Status> accepted(EditJobService.Status status) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/pdf/jobs/" + status.id))
+                .body(status);
+    }
+
+    /** 与 PdfController 相同的内容类型与响应头；在任务线程上计算 */
+    private EditJobService.Output pdf(PdfOutput data, String disposition, String report) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(HttpHeaders.CONTENT_DISPOSITION, disposition);
+        if (report != null) headers.put(PdfController.EDIT_REPORT_HEADER, report);
+        MediaType type = MediaType.APPLICATION_PDF;
+        if (data.getMode() == PdfService.OutputMode.DELTA) {
+            type = MediaType.APPLICATION_OCTET_STREAM;
+            try {
+                headers.put(PdfController.BASE_LENGTH_HEADER, String.valueOf(data.getBaseLength()));
+                headers.put(PdfController.BASE_HASH_HEADER, pdfService.getSampleContentHash());
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
+        }
+        return EditJobService.Output.pdf(type.toString(), headers, data);
+    }
+}
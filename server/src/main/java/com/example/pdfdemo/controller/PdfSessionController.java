@@ -0,0 +1,117 @@
+package com.example.pdfdemo.controller;
+
+import com.example.pdfdemo.service.EditSessionService;
+import com.example.pdfdemo.service.PdfService;
+import com.example.pdfdemo.service.TextBoxCollector;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编辑会话接口：POST /sessions 打开会话后，编辑请求作用在常驻文档上并彼此叠加，
+ * 随时可撤销、查看当前文档与文本框，最后 commit 写回存储。请求体与同步接口（PdfController）相同。
+ */
+@RestController
+@RequestMapping("/api/pdf/sessions")
+public class PdfSessionController {
+
+    private final EditSessionService sessionService;
+
+    public PdfSessionController(EditSessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<EditSessionService.Info> open() throws IOException {
+        EditSessionService.Info info = sessionService.open();
+        return ResponseEntity.created(URI.create("/api/pdf/sessions/" + info.id)).body(info);
+    }
+
+    @GetMapping("/{id}")
+    public EditSessionService.Info get(@PathVariable String id) {
+        return sessionService.get(id);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> close(@PathVariable String id) {
+        sessionService.close(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /** 会话的当前文档；output 同同步接口（full | incremental | delta，delta 以会话基准文件为准） */
+    @GetMapping("/{id}/document")
+    public ResponseEntity<StreamingResponseBody> document(@PathVariable String id,
+                                                          @RequestParam(value = "output", required = false) String output) {
+        PdfService.OutputMode mode = PdfService.OutputMode.parse(output);
+        EditSessionService.Info info = sessionService.get(id); // 未知会话在写响应头之前返回 404
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=session.pdf");
+        if (mode == PdfService.OutputMode.DELTA) {
+            builder.contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(PdfController.BASE_LENGTH_HEADER, String.valueOf(info.baseLength))
+                    .header(PdfController.BASE_HASH_HEADER, info.baseSha256);
+        } else {
+            builder.contentType(MediaType.APPLICATION_PDF);
+        }
+        return builder.body(out -> sessionService.writeDocument(id, mode, out));
+    }
+
+    @GetMapping("/{id}/text-boxes")
+    public List<TextBoxCollector.Box> textBoxes(@PathVariable String id,
+                                                @RequestParam(value = "mode", required = false) String mode) {
+        return sessionService.textBoxes(id, mode);
+    }
+
+    @PostMapping("/{id}/edit-inplace")
+    public EditSessionService.EditSummary editInplace(@PathVariable String id,
+                                                      @RequestBody Map<String, String> body) throws IOException {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        return sessionService.editInplace(id, oldText, newText, ignoreCase);
+    }
+
+    @PostMapping("/{id}/edit-line")
+    public EditSessionService.EditSummary editWholeLine(@PathVariable String id,
+                                                        @RequestBody Map<String, String> body) throws IOException {
+        String oldText = body.getOrDefault("oldText", "");
+        String newText = body.getOrDefault("newText", "");
+        boolean ignoreCase = Boolean.parseBoolean(body.getOrDefault("ignoreCase", "false"));
+        Integer pageIndex = null;
+        if (body.containsKey("pageIndex")) {
+            try { pageIndex = Integer.parseInt(body.get("pageIndex")); } catch (Exception ignored) {}
+        }
+        String lineText = body.getOrDefault("lineText", null);
+        return sessionService.editLine(id, oldText, newText, ignoreCase, pageIndex, lineText);
+    }
+
+    @PostMapping("/{id}/edit-batch")
+    public EditSessionService.EditSummary editBatch(@PathVariable String id,
+                                                    @RequestBody PdfController.BatchEditRequest body) throws IOException {
+        List<PdfService.ReplaceRule> rules = body.rules == null ? List.of() : body.rules;
+        boolean wholeLine = "line".equalsIgnoreCase(body.mode);
+        return sessionService.editBatch(id, rules, body.ignoreCase, wholeLine);
+    }
+
+    @PostMapping("/{id}/undo")
+    public EditSessionService.Info undo(@PathVariable String id) {
+        return sessionService.undo(id);
+    }
+
+    /** 写回存储：output=full 时完整重写（默认增量）；force=true 时忽略源文件已被修改的冲突 */
+    @PostMapping("/{id}/commit")
+    public EditSessionService.Info commit(@PathVariable String id,
+                                          @RequestParam(value = "output", required = false) String output,
+                                          @RequestParam(value = "force", defaultValue = "false") boolean force)
+            throws IOException {
+        boolean incremental = !"full".equalsIgnoreCase(output);
+        return sessionService.commit(id, incremental, force);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.pdfdemo.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick 多模式匹配：构造时一次性建立 trie + 失败指针，匹配复杂度 O(文本长度 + 命中数)，
+ * 与 needle 数量和长度无关。ASCII 字符走预计算的稠密转移表（每字符一次数组读取），
+ * 其余字符走有序出边二分 + 失败指针。
+ * 忽略大小写时按 char 折叠（先转大写再转小写，与 String.regionMatches 的规则一致，ς/σ、ſ/s 视为相同），
+ * needle 在构造时折叠一次，文本在扫描过程中逐字符折叠，不再为每个内容块生成小写副本，且下标与 TextPosition 一一对应。
+ * 构造完成后只读，可在多线程间共享。
+ */
+public final class AhoCorasickMatcher implements TextMatcher {
+
+    private static final int[] NO_OUTPUT = new int[0];
+    private static final int ASCII = 128;
+    // ASCII 稠密转移表上限（int 个数），超过则只用有序数组 + 失败指针
+    private static final int MAX_DENSE_CELLS = 1 << 20;
+
+    private final boolean ignoreCase;
+    private final int[] needleLengths;
+    // 节点 i 的出边：keys[i] 升序，targets[i] 为对应子节点
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    private final int[] dictLink;   // 沿失败链最近的“有输出”节点，0 表示无
+    private final int[][] outputs;  // 在该节点结束的 needle 下标
+    private final int[] asciiDelta; // 完整 DFA 的 ASCII 部分：asciiDelta[state * 128 + c]，可为 null
+    private final boolean empty;
+
+    public AhoCorasickMatcher(List<String> needles, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        this.needleLengths = new int[needles.size()];
+
+        // 1) 构建 trie（构建期用 TreeMap，完成后冻结为有序数组）
+        List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+        List<List<Integer>> out = new ArrayList<>();
+        edges.add(new TreeMap<>());
+        out.add(new ArrayList<>());
+        boolean any = false;
+        for (int k = 0; k < needles.size(); k++) {
+            String n = needles.get(k);
+            needleLengths[k] = n == null ? 0 : n.length();
+            if (n == null || n.isEmpty()) continue;
+            any = true;
+            int state = 0;
+            for (int i = 0; i < n.length(); i++) {
+                char c = fold(n.charAt(i));
+                Integer next = edges.get(state).get(c);
+                if (next == null) {
+                    next = edges.size();
+                    edges.add(new TreeMap<>());
+                    out.add(new ArrayList<>());
+                    edges.get(state).put(c, next);
+                }
+                state = next;
+            }
+            out.get(state).add(k);
+        }
+        this.empty = !any;
+
+        int size = edges.size();
+        keys = new char[size][];
+        targets = new int[size][];
+        outputs = new int[size][];
+        for (int s = 0; s < size; s++) {
+            TreeMap<Character, Integer> e = edges.get(s);
+            char[] ks = new char[e.size()];
+            int[] ts = new int[e.size()];
+            int j = 0;
+            for (var entry : e.entrySet()) {
+                ks[j] = entry.getKey();
+                ts[j] = entry.getValue();
+                j++;
+            }
+            keys[s] = ks;
+            targets[s] = ts;
+            List<Integer> o = out.get(s);
+            outputs[s] = o.isEmpty() ? NO_OUTPUT : o.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // 2) BFS 计算失败指针与输出链
+        fail = new int[size];
+        dictLink = new int[size];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] bfsOrder = new int[size];
+        int visited = 0;
+        bfsOrder[visited++] = 0;
+        for (int child : targets[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            bfsOrder[visited++] = s;
+            for (int j = 0; j < keys[s].length; j++) {
+                char c = keys[s][j];
+                int child = targets[s][j];
+                int f = fail[s];
+                int nx;
+                while ((nx = step(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = nx < 0 ? 0 : nx;
+                int fc = fail[child];
+                dictLink[child] = outputs[fc].length > 0 ? fc : dictLink[fc];
+                queue.add(child);
+            }
+        }
+
+        // 3) ASCII 稠密转移表：BFS 顺序保证 fail[s] 的行先于 s 填好
+        if ((long) size * ASCII <= MAX_DENSE_CELLS) {
+            asciiDelta = new int[size * ASCII];
+            for (int v = 0; v < visited; v++) {
+                int s = bfsOrder[v];
+                int base = s * ASCII;
+                if (s != 0) {
+                    System.arraycopy(asciiDelta, fail[s] * ASCII, asciiDelta, base, ASCII);
+                }
+                for (int j = 0; j < keys[s].length; j++) {
+                    if (keys[s][j] < ASCII) asciiDelta[base + keys[s][j]] = targets[s][j];
+                }
+            }
+        } else {
+            asciiDelta = null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public void match(CharSequence text, Listener listener) {
+        if (empty || text == null) return;
+        int state = 0;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            char c = fold(text.charAt(i));
+            if (c < ASCII && asciiDelta != null) {
+                state = asciiDelta[state * ASCII + c];
+            } else {
+                int nx;
+                while ((nx = step(state, c)) < 0 && state != 0) {
+                    state = fail[state];
+                }
+                state = nx < 0 ? 0 : nx;
+            }
+            int s = outputs[state].length > 0 ? state : dictLink[state];
+            while (s != 0) {
+                for (int k : outputs[s]) {
+                    int n = needleLengths[k];
+                    listener.onMatch(i - n + 1, n, k);
+                }
+                s = dictLink[s];
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        int j = Arrays.binarySearch(keys[state], c);
+        return j < 0 ? -1 : targets[state][j];
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? foldCase(c) : c;
+    }
+
+    /** 忽略大小写比较时的等价类代表：两个 char 在 regionMatches(true, ...) 下相等当且仅当折叠结果相同 */
+    static char foldCase(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.pdfdemo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+
+/**
+ * 标注 PDF（/annotated）与二进制列式文本框（/text-boxes）的落盘缓存：以“文档内容 SHA-256 + 变体（模式与页范围）”为键，
+ * 每个文档版本每种变体只生成一次，之后直接以文件输出（与 /sample 相同，支持 Range，不再加载/抽取/保存 PDF）。
+ * 发布、并发合并与返回句柄的语义见 DiskCache；条目数超过 max-entries 时按最近最少使用删除文件，
+ * 文档变化后旧版本的条目不再命中，随 LRU 淘汰。
+ */
+@Component
+public class AnnotatedPdfCache {
+
+    /** 生成标注 PDF 并写入 out */
+    @FunctionalInterface
+    public interface Builder {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final DiskCache cache;
+
+    public AnnotatedPdfCache(@Value("${pdf.annotated-cache.dir:}") String dir,
+                             @Value("${pdf.annotated-cache.max-entries:16}") int maxEntries) throws IOException {
+        this.cache = new DiskCache(dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "pdfbox-demo-annotated")
+                : Paths.get(dir), "*.{pdf,tbx}*", maxEntries, Long.MAX_VALUE, outcome -> { });
+    }
+
+    /** 返回 contentHash 版本、variant 变体的标注文件；未命中时用 builder 生成（同一键并发时只生成一次） */
+    public CachedFile get(String contentHash, String variant, Builder builder) throws IOException {
+        return get(contentHash, variant, ".pdf", builder);
+    }
+
+    /** 同上，文件以 suffix 结尾（不同格式的缓存文件共用条目上限与 LRU） */
+    public CachedFile get(String contentHash, String variant, String suffix, Builder builder) throws IOException {
+        return cache.open(contentHash + "-" + variant + suffix, builder::writeTo);
+    }
+
+    public void clear() throws IOException {
+        cache.clear();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.pdfdemo.service;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 落盘缓存中一个已发布文件的只读句柄：文件在缓存的锁内打开，之后即使条目被淘汰、文件被删除也能读完（POSIX 语义），
+ * 不会出现“查到路径后、输出前文件已被删”的竞争。
+ * - 第一次 getInputStream 交出锁内打开的通道，流关闭即释放；之后的调用（如多段 Range）按路径重新打开；
+ * - 一个流也没打开（如 304、HEAD）时，句柄不可达后由 Cleaner 关闭通道。
+ * 长度在打开时确定（已发布的文件不再修改）。
+ */
+public final class CachedFile extends AbstractResource {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** 锁内打开、尚未交给流的通道；与句柄分开，Cleaner 不会持有句柄本身 */
+    private static final class Opened implements Runnable {
+        private FileChannel channel;
+
+        Opened(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized FileChannel take() {
+            FileChannel c = channel;
+            channel = null;
+            return c;
+        }
+
+        /** 通道已交出时返回 -2 */
+        synchronized int read(ByteBuffer dst, long position) throws IOException {
+            return channel == null ? -2 : channel.read(dst, position);
+        }
+
+        @Override
+        public void run() {
+            FileChannel c = take();
+            if (c == null) return;
+            try {
+                c.close();
+            } catch (IOException ignored) {
+                // 只读通道，关闭失败无需处理
+            }
+        }
+    }
+
+    private final Path path;
+    private final long size;
+    private final Opened opened;
+
+    /** 由缓存在锁内调用：文件须存在 */
+    CachedFile(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.path = path;
+        try {
+            this.size = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.opened = new Opened(channel);
+        CLEANER.register(this, opened);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public String getDescription() {
+        return "cached file [" + path + "]";
+    }
+
+    @Override
+    public String getFilename() {
+        return path.getFileName().toString();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        FileChannel channel = opened.take();
+        if (channel == null) channel = FileChannel.open(path, StandardOpenOption.READ);
+        return Channels.newInputStream(channel);
+    }
+
+    /** 从 position 处读满 dst（不足时读到文件尾）；不占用交给流的通道，通道已交出时按路径临时打开 */
+    void read(ByteBuffer dst, long position) throws IOException {
+        FileChannel own = null;
+        try {
+            while (dst.hasRemaining() && position < size) {
+                int n = own != null ? own.read(dst, position) : opened.read(dst, position);
+                if (n == -2) {
+                    own = FileChannel.open(path, StandardOpenOption.READ);
+                    continue;
+                }
+                if (n < 0) return;
+                position += n;
+            }
+        } finally {
+            if (own != null) own.close();
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.DrawObject;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.state.Concatenate;
+import org.apache.pdfbox.contentstream.operator.state.Restore;
+import org.apache.pdfbox.contentstream.operator.state.Save;
+import org.apache.pdfbox.contentstream.operator.state.SetGraphicsStateParameters;
+import org.apache.pdfbox.contentstream.operator.state.SetMatrix;
+import org.apache.pdfbox.contentstream.operator.text.BeginText;
+import org.apache.pdfbox.contentstream.operator.text.EndText;
+import org.apache.pdfbox.contentstream.operator.text.MoveText;
+import org.apache.pdfbox.contentstream.operator.text.MoveTextSetLeading;
+import org.apache.pdfbox.contentstream.operator.text.NextLine;
+import org.apache.pdfbox.contentstream.operator.text.SetCharSpacing;
+import org.apache.pdfbox.contentstream.operator.text.SetFontAndSize;
+import org.apache.pdfbox.contentstream.operator.text.SetTextHorizontalScaling;
+import org.apache.pdfbox.contentstream.operator.text.SetTextLeading;
+import org.apache.pdfbox.contentstream.operator.text.SetTextRenderingMode;
+import org.apache.pdfbox.contentstream.operator.text.SetTextRise;
+import org.apache.pdfbox.contentstream.operator.text.SetWordSpacing;
+import org.apache.pdfbox.contentstream.operator.text.ShowText;
+import org.apache.pdfbox.contentstream.operator.text.ShowTextAdjusted;
+import org.apache.pdfbox.contentstream.operator.text.ShowTextLine;
+import org.apache.pdfbox.contentstream.operator.text.ShowTextLineAndSpace;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.PDVectorFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 改写页面内容流中的文本：找到版式模型中字形对应的 Tj/TJ/'/" 字符串操作数，直接替换其字节，
+ * 不再追加白底矩形与新文本。页面始终只有一个内容流，多次编辑后输出大小与渲染开销不随编辑次数增长。
+ * - 同一文本对象内随后的文字由阅读器按新宽度自然续排（被 Td/Tm 绝对定位的文字保持原位）；
+ *   TJ 中被替换范围内部的字距调整一并删除；
+ * - 只改写页面自身内容流中的文本：表单 XObject、Type3 字体、替换文本在原字体中缺字、
+ *   或版式顺序与内容流顺序不一致的命中返回 UNSUPPORTED，由调用方退回覆盖绘制；
+ * - 先用 replace 登记同一文档上的全部替换，最后 apply 一次性按页重写（每页只解析、序列化一次）。
+ * 非线程安全，随单次编辑创建。
+ */
+final class ContentStreamRewriter {
+
+    enum Outcome {
+        REWRITTEN,   // 已登记改写
+        SKIPPED,     // 与已登记的替换重叠，忽略
+        UNSUPPORTED  // 无法改写，调用方改用覆盖绘制
+    }
+
+    private static final float POSITION_EPSILON = 0.01f;
+
+    /** 内容流中一次字形显示：所在操作符、TJ 元素与字符串内字节范围，以及渲染原点 */
+    private static final class ShownGlyph {
+        int ordinal;     // 页内全部顶层字形的序号（内容流顺序）
+        int operator;    // 顶层操作符序号
+        int element;     // TJ 数组元素下标；Tj/'/" 为 -1
+        int byteStart;
+        int byteEnd;
+        float x;
+        float y;
+        PDFont font;
+    }
+
+    /** 一处登记的替换：covered 按内容流顺序，新字节插在第一个字形处 */
+    private static final class Replacement {
+        final List<ShownGlyph> covered;
+        final byte[] bytes;
+
+        Replacement(List<ShownGlyph> covered, byte[] bytes) {
+            this.covered = covered;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class PageEdit {
+        final List<ShownGlyph> glyphs;
+        final Map<Integer, List<ShownGlyph>> byBaseline = new HashMap<>();
+        final BitSet claimed = new BitSet();
+        final List<Replacement> replacements = new ArrayList<>();
+
+        PageEdit(List<ShownGlyph> glyphs) {
+            this.glyphs = glyphs;
+            for (ShownGlyph g : glyphs) {
+                byBaseline.computeIfAbsent(Math.round(g.y), k -> new ArrayList<>()).add(g);
+            }
+        }
+
+        ShownGlyph find(DocumentLayout.Glyph glyph) {
+            int key = Math.round(glyph.baseline);
+            for (int k = key - 1; k <= key + 1; k++) {
+                List<ShownGlyph> candidates = byBaseline.get(k);
+                if (candidates == null) continue;
+                for (ShownGlyph g : candidates) {
+                    if (Math.abs(g.x - glyph.tx) < POSITION_EPSILON && Math.abs(g.y - glyph.baseline) < POSITION_EPSILON
+                            && (glyph.font == null || g.font.getCOSObject() == glyph.font.getCOSObject())) {
+                        return g;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private final PDDocument document;
+    private final DocumentLayout layout;
+    private final Map<Integer, PageEdit> pages = new TreeMap<>();
+
+    /** layout 须由 document 抽取（字形字体属于 document） */
+    ContentStreamRewriter(PDDocument document, DocumentLayout layout) {
+        this.document = document;
+        this.layout = layout;
+    }
+
+    /**
+     * 登记：把第 pageIndex 页第 segment 段的字形 [from, to) 替换为 text。
+     * 版式模型或文档中没有该页说明命中与模型不一致，直接抛出，而不是退回覆盖绘制留下旧字形。
+     */
+    Outcome replace(int pageIndex, int segment, int from, int to, String text) throws IOException {
+        if (layout == null) return Outcome.UNSUPPORTED;
+        DocumentLayout.Page page = layout.page(pageIndex);
+        if (page == null || pageIndex >= document.getNumberOfPages()) {
+            throw new IllegalStateException("layout has no page " + pageIndex + " of "
+                    + document.getNumberOfPages() + " for the edited document");
+        }
+        if (segment < 0 || segment >= page.segments.size()) return Outcome.UNSUPPORTED;
+        DocumentLayout.Glyph[] glyphs = page.segments.get(segment).glyphs;
+        to = Math.min(to, glyphs.length);
+        if (from < 0 || from >= to) return Outcome.UNSUPPORTED;
+
+        PageEdit edit = pages.get(pageIndex);
+        if (edit == null) {
+            edit = new PageEdit(scan(document.getPage(pageIndex)));
+            pages.put(pageIndex, edit);
+        }
+        List<ShownGlyph> covered = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ShownGlyph g = edit.find(glyphs[i]);
+            if (g == null) return Outcome.UNSUPPORTED;
+            covered.add(g);
+        }
+        ShownGlyph anchor = covered.get(0);
+        covered.sort((a, b) -> Integer.compare(a.ordinal, b.ordinal));
+        // 新文本从版式上的第一个字形处开始：要求它也是内容流中的第一个，且覆盖的字形在内容流中连续
+        if (covered.get(0) != anchor) return Outcome.UNSUPPORTED;
+        for (int i = 1; i < covered.size(); i++) {
+            if (covered.get(i).ordinal != covered.get(i - 1).ordinal + 1) return Outcome.UNSUPPORTED;
+        }
+        for (ShownGlyph g : covered) {
+            if (edit.claimed.get(g.ordinal)) return Outcome.SKIPPED;
+        }
+        byte[] bytes = encode(anchor.font, text);
+        if (bytes == null) return Outcome.UNSUPPORTED;
+
+        for (ShownGlyph g : covered) edit.claimed.set(g.ordinal);
+        edit.replacements.add(new Replacement(covered, bytes));
+        return Outcome.REWRITTEN;
+    }
+
+    /** 按页重写已登记的替换：每页解析一次、生成单个新内容流 */
+    void apply() throws IOException {
+        for (Map.Entry<Integer, PageEdit> e : pages.entrySet()) {
+            if (!e.getValue().replacements.isEmpty()) {
+                rewrite(document.getPage(e.getKey()), e.getValue());
+            }
+        }
+        pages.clear();
+    }
+
+    // ---------------- 内部实现 ----------------
+
+    /**
+     * 用字形原字体编码新文本；不可编码或（嵌入字体）缺字时返回 null。
+     * 未嵌入的字体由阅读器自行替换，只要编码表能表示即可。
+     */
+    private static byte[] encode(PDFont font, String text) {
+        if (font instanceof PDType3Font) return null;
+        try {
+            byte[] bytes = font.encode(text);
+            if (font.isEmbedded() && font instanceof PDVectorFont) {
+                ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+                while (in.available() > 0) {
+                    if (!((PDVectorFont) font).hasGlyph(font.readCode(in))) return null;
+                }
+            }
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void rewrite(PDPage page, PageEdit edit) throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(page);
+        parser.parse();
+        List<Object> tokens = new ArrayList<>(parser.getTokens());
+        List<Integer> operatorTokens = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.get(i) instanceof Operator) operatorTokens.add(i);
+        }
+
+        // 按操作数聚合：operator -> 该操作数上的全部 (替换, 字形)
+        Map<Integer, List<Replacement>> byOperator = new TreeMap<>();
+        for (Replacement r : edit.replacements) {
+            int last = -1;
+            for (ShownGlyph g : r.covered) {
+                if (g.operator != last) {
+                    byOperator.computeIfAbsent(g.operator, k -> new ArrayList<>()).add(r);
+                    last = g.operator;
+                }
+            }
+        }
+        for (Map.Entry<Integer, List<Replacement>> e : byOperator.entrySet()) {
+            int op = e.getKey();
+            if (op >= operatorTokens.size() || operatorTokens.get(op) == 0) {
+                throw new IOException("content stream changed while rewriting page");
+            }
+            int operandIndex = operatorTokens.get(op) - 1;
+            Object operand = tokens.get(operandIndex);
+            if (operand instanceof COSString) {
+                byte[] bytes = ((COSString) operand).getBytes();
+                tokens.set(operandIndex, new COSString(rewriteString(bytes, op, -1, e.getValue())));
+            } else if (operand instanceof COSArray) {
+                tokens.set(operandIndex, rewriteArray((COSArray) operand, op, e.getValue()));
+            } else {
+                throw new IOException("unexpected text operand " + operand);
+            }
+        }
+
+        PDStream stream = new PDStream(document);
+        try (OutputStream out = stream.createOutputStream(COSName.FLATE_DECODE)) {
+            new ContentStreamWriter(out).writeTokens(tokens);
+        }
+        page.setContents(stream);
+    }
+
+    /** 字符串 bytes（TJ 的第 element 个元素，Tj 时为 -1）中删除被覆盖的字节，在各替换的首字形处插入新字节 */
+    private static byte[] rewriteString(byte[] bytes, int operator, int element, List<Replacement> replacements) {
+        // byteStart -> [byteEnd, 是否插入新字节的替换]
+        TreeMap<Integer, Object[]> cuts = new TreeMap<>();
+        for (Replacement r : replacements) {
+            int start = -1;
+            int end = -1;
+            for (ShownGlyph g : r.covered) {
+                if (g.operator != operator || g.element != element) continue;
+                if (start < 0) start = g.byteStart;
+                end = g.byteEnd;
+            }
+            if (start >= 0) {
+                cuts.put(start, new Object[]{end, r.covered.get(0).operator == operator
+                        && r.covered.get(0).element == element ? r.bytes : null});
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 16);
+        int pos = 0;
+        for (Map.Entry<Integer, Object[]> cut : cuts.entrySet()) {
+            out.write(bytes, pos, cut.getKey() - pos);
+            byte[] insert = (byte[]) cut.getValue()[1];
+            if (insert != null) out.write(insert, 0, insert.length);
+            pos = (Integer) cut.getValue()[0];
+        }
+        out.write(bytes, pos, bytes.length - pos);
+        return out.toByteArray();
+    }
+
+    private static COSArray rewriteArray(COSArray array, int operator, List<Replacement> replacements) {
+        // 每处替换在本数组内覆盖的元素范围：范围内部的字距调整属于旧文本，一并删除
+        List<int[]> spans = new ArrayList<>();
+        for (Replacement r : replacements) {
+            int first = Integer.MAX_VALUE;
+            int last = -1;
+            for (ShownGlyph g : r.covered) {
+                if (g.operator != operator) continue;
+                first = Math.min(first, g.element);
+                last = Math.max(last, g.element);
+            }
+            if (last >= 0) spans.add(new int[]{first, last});
+        }
+        COSArray out = new COSArray();
+        for (int i = 0; i < array.size(); i++) {
+            COSBase item = array.get(i);
+            boolean inside = false;
+            for (int[] span : spans) {
+                if (i > span[0] && i < span[1]) inside = true;
+            }
+            if (item instanceof COSString) {
+                byte[] bytes = rewriteString(((COSString) item).getBytes(), operator, i, replacements);
+                if (bytes.length > 0) out.add(new COSString(bytes));
+            } else if (!inside) {
+                out.add(item);
+            }
+        }
+        return out;
+    }
+
+    /** 解释页面内容流，记录每个顶层文本操作显示的字形 */
+    private static List<ShownGlyph> scan(PDPage page) throws IOException {
+        GlyphScanner scanner = new GlyphScanner(page);
+        scanner.processPage(page);
+        return scanner.glyphs;
+    }
+
+    private static final class GlyphScanner extends PDFStreamEngine {
+        final List<ShownGlyph> glyphs = new ArrayList<>();
+        private final float originX;
+        private final float originY;
+        private int operators;
+        private int operator = -1;
+        private int shown;        // 顶层字形计数（未能定位到操作数的字形也计数，使连续性检查可靠）
+        private int nesting;      // 正在处理的操作符层数（' 与 " 内部会再调用 Tj 等）
+        private int formDepth;    // 表单 XObject 内的字形不记录
+        private COSArray array;   // 当前 TJ 数组
+        private int arrayCursor;
+        private int element = -1;
+        private byte[] string;
+        private ByteArrayInputStream codes;
+
+        GlyphScanner(PDPage page) {
+            // 与 PDFTextStripper 相同：字形坐标相对 CropBox 左下角
+            PDRectangle crop = page.getCropBox();
+            originX = crop.getLowerLeftX();
+            originY = crop.getLowerLeftY();
+            addOperator(new BeginText());
+            addOperator(new Concatenate());
+            addOperator(new DrawObject());
+            addOperator(new EndText());
+            addOperator(new SetGraphicsStateParameters());
+            addOperator(new Save());
+            addOperator(new Restore());
+            addOperator(new NextLine());
+            addOperator(new SetCharSpacing());
+            addOperator(new MoveText());
+            addOperator(new MoveTextSetLeading());
+            addOperator(new SetFontAndSize());
+            addOperator(new ShowText());
+            addOperator(new ShowTextAdjusted());
+            addOperator(new SetTextLeading());
+            addOperator(new SetMatrix());
+            addOperator(new SetTextRenderingMode());
+            addOperator(new SetTextRise());
+            addOperator(new SetWordSpacing());
+            addOperator(new SetTextHorizontalScaling());
+            addOperator(new ShowTextLine());
+            addOperator(new ShowTextLineAndSpace());
+        }
+
+        @Override
+        protected void processOperator(Operator op, List<COSBase> operands) throws IOException {
+            if (nesting == 0 && formDepth == 0) operator = operators++;
+            nesting++;
+            try {
+                super.processOperator(op, operands);
+            } finally {
+                nesting--;
+            }
+        }
+
+        @Override
+        public void showForm(PDFormXObject form) throws IOException {
+            formDepth++;
+            int saved = nesting;
+            nesting = 0;
+            try {
+                super.showForm(form);
+            } finally {
+                nesting = saved;
+                formDepth--;
+            }
+        }
+
+        @Override
+        public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+            formDepth++;
+            int saved = nesting;
+            nesting = 0;
+            try {
+                super.showTransparencyGroup(form);
+            } finally {
+                nesting = saved;
+                formDepth--;
+            }
+        }
+
+        @Override
+        public void showTextStrings(COSArray array) throws IOException {
+            this.array = array;
+            this.arrayCursor = 0;
+            try {
+                super.showTextStrings(array);
+            } finally {
+                this.array = null;
+                this.element = -1;
+            }
+        }
+
+        @Override
+        protected void showText(byte[] string) throws IOException {
+            // TJ 直接对各字符串元素调用 showText：按顺序找到与 string 对应的元素
+            element = -1;
+            if (array != null) {
+                for (int i = arrayCursor; i < array.size(); i++) {
+                    COSBase item = array.get(i);
+                    if (item instanceof COSString && ((COSString) item).getBytes() == string) {
+                        element = i;
+                        arrayCursor = i + 1;
+                        break;
+                    }
+                }
+            }
+            this.string = string;
+            this.codes = new ByteArrayInputStream(string);
+            super.showText(string);
+        }
+
+        @Override
+        protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement)
+                throws IOException {
+            // 与 showText 中的解码同步推进，得到本字形的字节范围
+            int start = string.length - codes.available();
+            font.readCode(codes);
+            int end = string.length - codes.available();
+            if (formDepth == 0 && (array == null || element >= 0)) {
+                ShownGlyph g = new ShownGlyph();
+                g.ordinal = shown;
+                g.operator = operator;
+                g.element = element;
+                g.byteStart = start;
+                g.byteEnd = end;
+                g.x = textRenderingMatrix.getTranslateX() - originX;
+                g.y = textRenderingMatrix.getTranslateY() - originY;
+                g.font = font;
+                glyphs.add(g);
+            }
+            if (formDepth == 0) shown++;
+            super.showGlyph(textRenderingMatrix, font, code, displacement);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.pdfdemo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 落盘结果缓存的公共实现（AnnotatedPdfCache、EditResultCache 各按自己的键与上限使用）：
+ * - 文件写入临时文件后原子改名，已发布的文件不再修改；
+ * - 同一文件名的并发请求只构建一次，其余等待后再查（期间被淘汰或未保留时自己重新构建）；
+ * - 条目数超过 maxEntries 或文件总字节超过 maxBytes 时按最近最少使用删除；新条目自身超过 maxBytes 时照常返回但不保留；
+ * - 返回的 CachedFile 在登记表的锁内打开，之后即使条目被淘汰、文件被删除也能读完（POSIX 语义）。
+ */
+final class DiskCache {
+
+    /** 构建结果并写入 out */
+    @FunctionalInterface
+    interface Builder {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** 一次 open 的结果来源 */
+    enum Outcome {
+        HIT,       // 直接命中
+        MISS,      // 本次构建
+        COALESCED  // 等待同名的并发构建后命中
+    }
+
+    private static final class Entry {
+        final Path file;
+        final long size;
+
+        Entry(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    private final Path dir;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Consumer<Outcome> outcomes;
+    // access-order LinkedHashMap 实现 LRU；所有访问在 this 上同步
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Void>> building = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    /** staleGlob 匹配上次运行留下的文件（没有登记，启动时直接清掉） */
+    DiskCache(Path dir, String staleGlob, int maxEntries, long maxBytes, Consumer<Outcome> outcomes) throws IOException {
+        this.dir = dir;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = maxBytes;
+        this.outcomes = outcomes;
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(dir, staleGlob)) {
+            for (Path p : stale) Files.deleteIfExists(p);
+        }
+    }
+
+    /** 打开名为 name 的缓存文件；未命中时用 builder 构建（同名并发时只构建一次） */
+    CachedFile open(String name, Builder builder) throws IOException {
+        boolean waited = false;
+        while (true) {
+            CachedFile cached = lookup(name);
+            if (cached != null) {
+                outcomes.accept(waited ? Outcome.COALESCED : Outcome.HIT);
+                return cached;
+            }
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = building.putIfAbsent(name, mine);
+            if (running != null) {
+                await(running);
+                waited = true;
+                continue;
+            }
+            try {
+                // 持有构建权后再查一次：可能刚被上一个构建者发布
+                CachedFile file = lookup(name);
+                if (file == null) {
+                    outcomes.accept(Outcome.MISS);
+                    file = publish(name, build(name, builder));
+                }
+                mine.complete(null);
+                return file;
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                building.remove(name, mine);
+            }
+        }
+    }
+
+    synchronized long getSize() {
+        return totalBytes;
+    }
+
+    synchronized void clear() throws IOException {
+        for (Entry e : entries.values()) Files.deleteIfExists(e.file);
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private synchronized CachedFile lookup(String name) throws IOException {
+        Entry e = entries.get(name);
+        if (e == null) return null;
+        if (!Files.exists(e.file)) {
+            // 被外部清理（如临时目录回收）时视为未命中
+            entries.remove(name);
+            totalBytes -= e.size;
+            return null;
+        }
+        return new CachedFile(e.file);
+    }
+
+    private Path build(String name, Builder builder) throws IOException {
+        Path target = dir.resolve(name);
+        Path tmp = Files.createTempFile(dir, name, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                builder.writeTo(out);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return target;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** 先打开再登记并淘汰：新条目自身超过上限时随即删除，已打开的句柄不受影响 */
+    private synchronized CachedFile publish(String name, Path path) throws IOException {
+        CachedFile file = new CachedFile(path);
+        Entry added = new Entry(path, file.contentLength());
+        Entry replaced = entries.put(name, added);
+        if (replaced != null) totalBytes -= replaced.size;
+        totalBytes += added.size;
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            Entry evicted = it.next();
+            it.remove();
+            totalBytes -= evicted.size;
+            Files.deleteIfExists(evicted.file);
+        }
+        return file;
+    }
+
+    private static void await(CompletableFuture<Void> running) throws IOException {
+        try {
+            running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+}
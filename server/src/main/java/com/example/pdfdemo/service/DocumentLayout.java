@@ -0,0 +1,557 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单次抽取得到的分层版式模型（每页：字形 → 词 → 行 → 块），各粒度的输出都由它派生：
+ *  - Segment：PDFTextStripper.writeString 给出的一个文本段（TextSearcher 的 LineInfo、匹配都以段为单位）；
+ *  - Word：段内按空白/字间距切分的词（TextBoxCollector WORD 模式）；
+ *  - Line：同页基线相差不超过 1pt 的段聚合成的行（TextBoxCollector LINE 模式）；
+ *  - Block：上下相邻、水平重叠且行距正常的行聚合成的段落块（BLOCK 模式）。
+ * 字形上的 PDFont 只在文档打开期间有效；放入缓存前调用 detach() 丢弃。
+ */
+public class DocumentLayout {
+
+    // 行聚合：按同页且基线 y 相近（容差）聚为一行
+    static final float LINE_EPSILON = 1.0f;
+    // 块聚合：行间空隙不超过较高一行高度的该倍数视为同一段落
+    static final float BLOCK_GAP_RATIO = 0.6f;
+
+    public static class Glyph {
+        public String unicode;
+        public float x;          // XDirAdj（左）
+        public float y;          // YDirAdj
+        public float width;      // WidthDirAdj
+        public float height;     // HeightDir
+        public float tx;         // 文字矩阵 translateX
+        public float baseline;   // 文字矩阵 translateY
+        public float fontSizeInPt;
+        public float ascent;     // max(HeightDir, 字体 ascent)
+        public float descent;    // max(0.2*fontSize, |字体 descent|)
+        public PDFont font;
+    }
+
+    public static class Segment {
+        public String text;      // 可能为 null（仍参与行/词聚合）
+        public Glyph[] glyphs;
+        public float minX;       // 左边界（min XDirAdj）
+        public float maxX;       // 右边界（max XDirAdj + WidthDirAdj）
+        public float ascent;     // 段内最大 ascent
+        public float descent;    // 段内最大 descent
+        public float spaceWidth; // 分词用空白宽度估计（用户空间）
+    }
+
+    public static class Word {
+        public String text;
+        public float x;
+        public float yTop;
+        public float width;
+        public float height;
+        public int segment;      // 所属段下标
+        public int firstGlyph;   // 段内字形范围 [firstGlyph, lastGlyph]
+        public int lastGlyph;
+    }
+
+    public static class Line {
+        public float minX = Float.MAX_VALUE;
+        public float maxX = -Float.MAX_VALUE;
+        public float baselineY;  // 代表值（首段基线）
+        public float maxAscent;
+        public float maxDescent;
+        public String text;
+        public final List<Integer> segments = new ArrayList<>();
+    }
+
+    public static class Block {
+        public float x;
+        public float yTop;
+        public float width;
+        public float height;
+        public String text;
+        public final List<Integer> lines = new ArrayList<>();
+    }
+
+    public static class Page {
+        public int pageIndex;    // 0-based
+        public float width;      // MediaBox 宽
+        public float height;     // MediaBox 高
+        public final List<Segment> segments = new ArrayList<>();
+        public final List<Word> words = new ArrayList<>();
+        public final List<Line> lines = new ArrayList<>();
+        public final List<Block> blocks = new ArrayList<>();
+    }
+
+    private final List<Page> pages = new ArrayList<>();
+    // 文档总页数（抽取时记下，与模型中实际含有的页数无关）；-1 表示未记录
+    private int pageCount = -1;
+
+    public List<Page> getPages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    /** 文档总页数：由抽取记下；未记录时（如手工构建的模型）取模型中的页数 */
+    public int getPageCount() {
+        return pageCount >= 0 ? pageCount : pages.size();
+    }
+
+    void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+    }
+
+    /** 按绝对页号（0-based）取页，模型中没有该页（如只含部分页的切片）时返回 null */
+    public Page page(int pageIndex) {
+        int i = position(pageIndex);
+        return i < 0 ? null : pages.get(i);
+    }
+
+    /** 第 pageIndex 页在列表中的位置，没有时为 -1 */
+    private int position(int pageIndex) {
+        int lo = 0;
+        int hi = pages.size() - 1;
+        // 整本模型中第 i 个页即第 i 页；切片按页号有序，二分查找
+        if (pageIndex >= 0 && pageIndex <= hi && pages.get(pageIndex).pageIndex == pageIndex) return pageIndex;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = pages.get(mid).pageIndex;
+            if (at == pageIndex) return mid;
+            if (at < pageIndex) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return -1;
+    }
+
+    void addPage(Page page) {
+        pages.add(page);
+    }
+
+    void addPages(DocumentLayout other) {
+        pages.addAll(other.pages);
+        pageCount = Math.max(pageCount, other.pageCount);
+    }
+
+    /** 以 page 替换模型中页号相同的页并返回原页（编辑会话写时复制更新模型时使用）；模型中须已有该页 */
+    Page setPage(Page page) {
+        int i = position(page.pageIndex);
+        if (i < 0) throw new IllegalStateException("layout has no page " + page.pageIndex);
+        return pages.set(i, page);
+    }
+
+    /** 丢弃字形上的字体引用，使模型不再持有文档对象（可安全缓存） */
+    public DocumentLayout detach() {
+        for (Page p : pages) {
+            for (Segment s : p.segments) {
+                for (Glyph g : s.glyphs) g.font = null;
+            }
+        }
+        return this;
+    }
+
+    // ---------------- 派生视图 ----------------
+
+    public List<TextBoxCollector.Box> boxes(TextBoxCollector.Mode mode) {
+        List<TextBoxCollector.Box> out = new ArrayList<>();
+        for (Page p : pages) {
+            addBoxes(p, mode, out);
+        }
+        return out;
+    }
+
+    /** 单页的 Box（逐页输出时使用，不需要整本模型） */
+    public static List<TextBoxCollector.Box> boxes(Page page, TextBoxCollector.Mode mode) {
+        List<TextBoxCollector.Box> out = new ArrayList<>();
+        addBoxes(page, mode, out);
+        return out;
+    }
+
+    private static void addBoxes(Page p, TextBoxCollector.Mode mode, List<TextBoxCollector.Box> out) {
+        switch (mode == null ? TextBoxCollector.Mode.LINE : mode) {
+            case WORD:
+                for (Word w : p.words) {
+                    out.add(box(p, w.x, w.yTop, w.width, w.height, w.text));
+                }
+                break;
+            case BLOCK:
+                for (Block b : p.blocks) {
+                    out.add(box(p, b.x, b.yTop, b.width, b.height, b.text));
+                }
+                break;
+            default:
+                for (Line l : p.lines) {
+                    if (l.maxX <= l.minX) continue;
+                    float topY = l.baselineY + l.maxAscent;
+                    float bottomY = l.baselineY - l.maxDescent;
+                    out.add(box(p, l.minX, topY, Math.max(0.1f, l.maxX - l.minX),
+                            Math.max(0.1f, topY - bottomY), l.text));
+                }
+        }
+    }
+
+    /** 每个文本段对应一条 LineInfo（TextSearcher 的“粗略行”） */
+    public List<TextSearcher.LineInfo> lineInfos() {
+        List<TextSearcher.LineInfo> out = new ArrayList<>();
+        for (Page p : pages) {
+            for (int si = 0; si < p.segments.size(); si++) {
+                Segment s = p.segments.get(si);
+                if (s.text == null) continue;
+                Glyph first = s.glyphs[0];
+                Glyph last = s.glyphs[s.glyphs.length - 1];
+                float minX = first.x;
+                float height = 0f;
+                for (Glyph g : s.glyphs) {
+                    if (g.x < minX) minX = g.x;
+                    height = Math.max(height, g.height);
+                }
+                TextSearcher.LineInfo line = new TextSearcher.LineInfo();
+                line.pageIndex = p.pageIndex;
+                line.segment = si;
+                line.text = s.text;
+                line.xStart = first.tx;
+                line.yBaseline = first.baseline;
+                line.width = Math.max(0.1f, last.x + last.width - minX);
+                line.height = height;
+                line.font = first.font;
+                line.fontSizeInPt = first.fontSizeInPt;
+                out.add(line);
+            }
+        }
+        return out;
+    }
+
+    public List<TextSearcher.CharInfo> charInfos() {
+        List<TextSearcher.CharInfo> out = new ArrayList<>();
+        for (Page p : pages) {
+            for (Segment s : p.segments) {
+                if (s.text == null) continue;
+                for (Glyph g : s.glyphs) {
+                    TextSearcher.CharInfo c = new TextSearcher.CharInfo();
+                    c.pageIndex = p.pageIndex;
+                    c.unicode = g.unicode;
+                    c.x = g.x;
+                    c.yBaseline = g.baseline;
+                    c.width = g.width;
+                    c.height = g.height;
+                    c.fontSizeInPt = g.fontSizeInPt;
+                    out.add(c);
+                }
+            }
+        }
+        return out;
+    }
+
+    /** 在每个文本段内做匹配（不跨段），结果坐标取自字形 */
+    public List<TextSearcher.Match> match(TextMatcher matcher) {
+        List<TextSearcher.Match> out = new ArrayList<>();
+        if (matcher == null || matcher.isEmpty()) return out;
+        for (Page p : pages) {
+            for (int si = 0; si < p.segments.size(); si++) {
+                Segment s = p.segments.get(si);
+                if (s.text == null || s.text.isEmpty()) continue;
+                int segment = si;
+                matcher.match(s.text, (start, length, needleIndex) -> {
+                    TextSearcher.Match m = toMatch(p.pageIndex, s, start, length, needleIndex);
+                    if (m != null) {
+                        m.segment = segment;
+                        m.start = start;
+                        out.add(m);
+                    }
+                });
+            }
+        }
+        return out;
+    }
+
+    private static TextSearcher.Match toMatch(int pageIndex, Segment s, int i, int n, int needleIndex) {
+        // 收集 i..i+n-1 范围内的字形
+        int endIdx = Math.min(i + n - 1, s.glyphs.length - 1);
+        if (i < 0 || i >= s.glyphs.length || endIdx < 0) return null;
+        Glyph start = s.glyphs[i];
+        Glyph end = s.glyphs[endIdx];
+        // 宽度估算：以末字符的 (x + width) - x0
+        float endRight = end.x + end.width;
+
+        TextSearcher.Match m = new TextSearcher.Match();
+        m.pageIndex = pageIndex;
+        m.x = start.x;
+        m.y = start.y;
+        m.width = Math.max(0.1f, endRight - start.x);
+        m.height = Math.max(start.height, end.height);
+        m.font = start.font;
+        m.fontSizeInPt = start.fontSizeInPt;
+        m.matched = s.text.substring(i, Math.min(i + n, s.text.length()));
+        m.tx = start.tx;
+        m.ty = start.baseline;
+        m.endX = endRight;
+        m.rest = i + n <= s.text.length() ? s.text.substring(i + n) : "";
+        m.needleIndex = needleIndex;
+        return m;
+    }
+
+    private static TextBoxCollector.Box box(Page p, float x, float yTop, float width, float height, String text) {
+        TextBoxCollector.Box b = new TextBoxCollector.Box();
+        b.pageIndex = p.pageIndex;
+        b.x = x;
+        b.yTop = yTop;
+        b.width = width;
+        b.height = height;
+        b.text = text;
+        b.pageWidth = p.width;
+        b.pageHeight = p.height;
+        return b;
+    }
+
+    // ---------------- 编辑后的增量更新（编辑会话使用） ----------------
+
+    /**
+     * 返回替换了若干段之后的新页（写时复制：原页对象不变，可作为撤销快照），并重建该页的词/行/块。
+     * replacements 的键为原页中的段下标；新页的段下标可能因空段被移除而变化。
+     */
+    static Page patch(Page page, Map<Integer, Segment> replacements) {
+        Page copy = new Page();
+        copy.pageIndex = page.pageIndex;
+        copy.width = page.width;
+        copy.height = page.height;
+        for (int i = 0; i < page.segments.size(); i++) {
+            Segment replaced = replacements.get(i);
+            Segment s = replaced != null ? replaced : page.segments.get(i);
+            // 替换为空文本的段不再有字形，直接去掉
+            if (s.glyphs.length > 0) copy.segments.add(s);
+        }
+        for (int i = 0; i < copy.segments.size(); i++) {
+            buildWords(copy, i);
+        }
+        buildLines(copy);
+        buildBlocks(copy);
+        return copy;
+    }
+
+    /** 整段替换为以 (x, 基线) 为起点、用 font/fontSize 绘制的 text（与 PdfService 的整行重绘一致） */
+    static Segment retype(Segment s, String text, float x, FontMetrics font, float fontSize) {
+        return splice(s, 0, s.glyphs.length, text, x, font, fontSize, 0f);
+    }
+
+    /**
+     * 段内 [from, to) 的字形替换为从 x 起绘制的 text；其后的字形整体右移 shift（与原位替换的绘制一致）。
+     * 新字形的宽度取自 font 的度量缓存。
+     */
+    static Segment splice(Segment s, int from, int to, String text, float x, FontMetrics font, float fontSize,
+                          float shift) {
+        from = Math.max(0, Math.min(from, s.glyphs.length));
+        to = Math.max(from, Math.min(to, s.glyphs.length));
+        Glyph template = s.glyphs[Math.min(from, s.glyphs.length - 1)];
+        List<Glyph> glyphs = new ArrayList<>(s.glyphs.length + text.length());
+        for (int i = 0; i < from; i++) glyphs.add(s.glyphs[i]);
+        float cursor = x;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            String unicode = new String(Character.toChars(cp));
+            i += Character.charCount(cp);
+            Glyph g = new Glyph();
+            g.unicode = unicode;
+            g.x = cursor;
+            g.y = template.y;
+            g.width = advance(font, cp, fontSize);
+            g.height = template.height;
+            g.tx = cursor;
+            g.baseline = template.baseline;
+            g.fontSizeInPt = fontSize;
+            g.ascent = template.ascent;
+            g.descent = template.descent;
+            g.font = font.font();
+            glyphs.add(g);
+            cursor += g.width;
+        }
+        for (int i = to; i < s.glyphs.length; i++) {
+            Glyph g = s.glyphs[i];
+            if (shift != 0f) {
+                Glyph moved = copyOf(g);
+                moved.x += shift;
+                moved.tx += shift;
+                g = moved;
+            }
+            glyphs.add(g);
+        }
+
+        Segment out = new Segment();
+        String original = s.text == null ? "" : s.text;
+        int textFrom = Math.min(from, original.length());
+        int textTo = Math.min(to, original.length());
+        out.text = original.substring(0, textFrom) + text + original.substring(textTo);
+        out.glyphs = glyphs.toArray(new Glyph[0]);
+        out.minX = Float.MAX_VALUE;
+        out.maxX = -Float.MAX_VALUE;
+        for (Glyph g : out.glyphs) {
+            if (g.x < out.minX) out.minX = g.x;
+            if (g.x + g.width > out.maxX) out.maxX = g.x + g.width;
+            if (g.ascent > out.ascent) out.ascent = g.ascent;
+            if (g.descent > out.descent) out.descent = g.descent;
+        }
+        if (out.glyphs.length == 0) {
+            out.minX = out.maxX = x;
+        }
+        out.spaceWidth = s.spaceWidth;
+        return out;
+    }
+
+    private static float advance(FontMetrics font, int codePoint, float fontSize) {
+        float w = font.advance(codePoint);
+        // 字体无法编码该字符：按半个字号估计
+        if (Float.isNaN(w)) return 0.5f * fontSize;
+        return Math.abs(w) / 1000f * fontSize;
+    }
+
+    private static Glyph copyOf(Glyph g) {
+        Glyph c = new Glyph();
+        c.unicode = g.unicode;
+        c.x = g.x;
+        c.y = g.y;
+        c.width = g.width;
+        c.height = g.height;
+        c.tx = g.tx;
+        c.baseline = g.baseline;
+        c.fontSizeInPt = g.fontSizeInPt;
+        c.ascent = g.ascent;
+        c.descent = g.descent;
+        c.font = g.font;
+        return c;
+    }
+
+    // ---------------- 页内聚合（由 LayoutExtractor 在每页结束时调用） ----------------
+
+    static void buildWords(Page page, int segmentIndex) {
+        // 按字间距阈值与空白共同分词，生成更稳定的词包围框
+        Segment s = page.segments.get(segmentIndex);
+        String string = s.text == null ? "" : s.text;
+        int n = Math.min(string.length(), s.glyphs.length);
+        if (n <= 0) return;
+        final float gapThreshold = Math.max(0.5f, s.spaceWidth * 0.6f);
+
+        int runStart = 0;
+        for (int i = 1; i < n; i++) {
+            Glyph prev = s.glyphs[i - 1];
+            Glyph curr = s.glyphs[i];
+            boolean isSpace = Character.isWhitespace(string.charAt(i));
+            boolean bigGap = (curr.x - (prev.x + prev.width)) > gapThreshold;
+            boolean endRun = isSpace || bigGap || i == n - 1;
+            if (!endRun) continue;
+            int runEnd = (i == n - 1 && !isSpace && !bigGap) ? i : i - 1;
+            if (runEnd >= runStart) {
+                float wMinX = Float.MAX_VALUE, wMaxX = -Float.MAX_VALUE;
+                float wTop = -Float.MAX_VALUE, wBottom = Float.MAX_VALUE;
+                for (int k = runStart; k <= runEnd && k < s.glyphs.length; k++) {
+                    Glyph g = s.glyphs[k];
+                    if (g.x < wMinX) wMinX = g.x;
+                    if (g.x + g.width > wMaxX) wMaxX = g.x + g.width;
+                    float top = g.baseline + g.ascent;
+                    float bottom = g.baseline - g.descent;
+                    if (top > wTop) wTop = top;
+                    if (bottom < wBottom) wBottom = bottom;
+                }
+                if (wMaxX > wMinX && wTop > wBottom) {
+                    Word w = new Word();
+                    w.text = string.substring(runStart, Math.min(runEnd + 1, string.length()));
+                    w.x = wMinX;
+                    w.yTop = wTop;
+                    w.width = Math.max(0.1f, wMaxX - wMinX);
+                    w.height = Math.max(0.1f, wTop - wBottom);
+                    w.segment = segmentIndex;
+                    w.firstGlyph = runStart;
+                    w.lastGlyph = runEnd;
+                    page.words.add(w);
+                }
+            }
+            runStart = i + 1;
+        }
+    }
+
+    static void buildLines(Page page) {
+        // 基线分桶：桶宽 = 容差，查找只看相邻三个桶；同时满足多个行时取最早创建者
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+        List<StringBuilder> texts = new ArrayList<>();
+        for (int si = 0; si < page.segments.size(); si++) {
+            Segment s = page.segments.get(si);
+            float baselineY = s.glyphs[0].baseline;
+            long bucket = (long) Math.floor(baselineY / LINE_EPSILON);
+            int target = -1;
+            for (long b = bucket - 1; b <= bucket + 1; b++) {
+                List<Integer> candidates = buckets.get(b);
+                if (candidates == null) continue;
+                for (int li : candidates) {
+                    if (Math.abs(page.lines.get(li).baselineY - baselineY) <= LINE_EPSILON
+                            && (target < 0 || li < target)) {
+                        target = li;
+                    }
+                }
+            }
+            if (target < 0) {
+                Line line = new Line();
+                line.baselineY = baselineY;
+                target = page.lines.size();
+                page.lines.add(line);
+                texts.add(new StringBuilder());
+                buckets.computeIfAbsent(bucket, k -> new ArrayList<>(1)).add(target);
+            }
+            Line line = page.lines.get(target);
+            if (s.minX < line.minX) line.minX = s.minX;
+            if (s.maxX > line.maxX) line.maxX = s.maxX;
+            if (s.ascent > line.maxAscent) line.maxAscent = s.ascent;
+            if (s.descent > line.maxDescent) line.maxDescent = s.descent;
+            if (s.text != null) texts.get(target).append(s.text);
+            line.segments.add(si);
+        }
+        for (int i = 0; i < page.lines.size(); i++) {
+            page.lines.get(i).text = texts.get(i).toString();
+        }
+    }
+
+    static void buildBlocks(Page page) {
+        // 自上而下扫描有效行：与当前块水平重叠且行间空隙不大时并入，否则开新块
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < page.lines.size(); i++) {
+            if (page.lines.get(i).maxX > page.lines.get(i).minX) order.add(i);
+        }
+        order.sort((a, b) -> Float.compare(page.lines.get(b).baselineY, page.lines.get(a).baselineY));
+        Block current = null;
+        float curBottom = 0f, curMinX = 0f, curMaxX = 0f, lastHeight = 0f;
+        StringBuilder text = null;
+        for (int li : order) {
+            Line l = page.lines.get(li);
+            float top = l.baselineY + l.maxAscent;
+            float bottom = l.baselineY - l.maxDescent;
+            float height = top - bottom;
+            boolean join = current != null
+                    && l.minX < curMaxX && curMinX < l.maxX
+                    && curBottom - top <= BLOCK_GAP_RATIO * Math.max(height, lastHeight);
+            if (!join) {
+                if (current != null) finishBlock(page, current, curMinX, curMaxX, curBottom, text);
+                current = new Block();
+                current.yTop = top;
+                curMinX = l.minX;
+                curMaxX = l.maxX;
+                text = new StringBuilder(l.text);
+            } else {
+                curMinX = Math.min(curMinX, l.minX);
+                curMaxX = Math.max(curMaxX, l.maxX);
+                current.yTop = Math.max(current.yTop, top);
+                text.append('\n').append(l.text);
+            }
+            curBottom = current.lines.isEmpty() ? bottom : Math.min(curBottom, bottom);
+            lastHeight = height;
+            current.lines.add(li);
+        }
+        if (current != null) finishBlock(page, current, curMinX, curMaxX, curBottom, text);
+    }
+
+    private static void finishBlock(Page page, Block block, float minX, float maxX, float bottom, StringBuilder text) {
+        block.x = minX;
+        block.width = Math.max(0.1f, maxX - minX);
+        block.height = Math.max(0.1f, block.yTop - bottom);
+        block.text = text.toString();
+        page.blocks.add(block);
+    }
+}
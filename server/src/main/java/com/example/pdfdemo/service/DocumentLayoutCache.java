@@ -0,0 +1,297 @@
+package com.example.pdfdemo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文档版式缓存：以文件内容 SHA-256 为键，缓存一次抽取得到的 DocumentLayout，
+ * 行信息、各模式 Box、逐页字符坐标都由它按需派生并记忆（同一版本只解析一次 PDF）。
+ * - 容量上限 + TTL 双重淘汰（LRU 顺序）；
+ * - 文件大小/修改时间变化时重新计算哈希，旧条目随之失效；
+ * - 命中时完全不解析 PDF；
+ * - 只请求部分页（boxes(file, mode, from, to)）且整本模型尚未建立时，只抽取这些页并按页记忆。
+ * 缓存内容与 PDDocument 解耦（模型已 detach，不持有 PDFont 等文档对象），文档关闭后仍可安全复用。
+ */
+@Component
+public class DocumentLayoutCache {
+
+    /** 单个文档版本的版式模型及其派生视图，按需逐项填充。 */
+    public static class Layout {
+        public final String contentHash;
+        private volatile DocumentLayout model;
+        private final Map<TextBoxCollector.Mode, List<TextBoxCollector.Box>> boxes =
+                Collections.synchronizedMap(new EnumMap<>(TextBoxCollector.Mode.class));
+        private volatile List<TextSearcher.LineInfo> lines;
+        private volatile List<List<TextSearcher.CharInfo>> pageChars;
+        // 整本模型建立之前按页抽取的结果（0-based 页号 -> 页）与文档页数（未知时为 -1）
+        private final Map<Integer, DocumentLayout.Page> pages = new ConcurrentHashMap<>();
+        private volatile int pageCount = -1;
+        private volatile long lastAccess;
+
+        Layout(String contentHash) {
+            this.contentHash = contentHash;
+            this.lastAccess = System.nanoTime();
+        }
+
+        public DocumentLayout getModel() { return model; }
+        public List<TextBoxCollector.Box> getBoxes(TextBoxCollector.Mode mode) { return boxes.get(mode); }
+        public List<TextSearcher.LineInfo> getLines() { return lines; }
+        public List<List<TextSearcher.CharInfo>> getPageChars() { return pageChars; }
+    }
+
+    /** 一段页的 Box 及文档总页数 */
+    public static class PageBoxes {
+        public final int pageCount;
+        public final List<TextBoxCollector.Box> boxes;
+
+        PageBoxes(int pageCount, List<TextBoxCollector.Box> boxes) {
+            this.pageCount = pageCount;
+            this.boxes = boxes;
+        }
+    }
+
+    private static final class Stamp {
+        final long size;
+        final long modified;
+        final String hash;
+        Stamp(long size, long modified, String hash) { this.size = size; this.modified = modified; this.hash = hash; }
+    }
+
+    private final ParallelTextExtractor extractor;
+    private final int maxEntries;
+    private final long ttlNanos;
+    // access-order LinkedHashMap 实现 LRU；所有访问在 this 上同步
+    private final LinkedHashMap<String, Layout> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Stamp> stamps = new ConcurrentHashMap<>();
+
+    public DocumentLayoutCache(ParallelTextExtractor extractor,
+                               @Value("${pdf.layout-cache.max-entries:32}") int maxEntries,
+                               @Value("${pdf.layout-cache.ttl:PT10M}") Duration ttl) {
+        this.extractor = extractor;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /** 返回文件当前内容哈希（文件未变化时直接复用上次结果，不重新读取）。 */
+    public String contentHash(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long size = Files.size(key);
+        long modified = Files.getLastModifiedTime(key).toMillis();
+        Stamp s = stamps.get(key);
+        if (s != null && s.size == size && s.modified == modified) {
+            return s.hash;
+        }
+        String hash = sha256(key);
+        stamps.put(key, new Stamp(size, modified, hash));
+        if (s != null && !s.hash.equals(hash)) {
+            synchronized (this) { entries.remove(s.hash); }
+        }
+        return hash;
+    }
+
+    /** 取（或创建）文件当前版本对应的缓存条目。 */
+    public Layout get(Path file) throws IOException {
+        String hash = contentHash(file);
+        synchronized (this) {
+            evictExpired();
+            Layout layout = entries.get(hash);
+            if (layout == null) {
+                layout = new Layout(hash);
+                entries.put(hash, layout);
+                while (entries.size() > maxEntries) {
+                    Iterator<String> it = entries.keySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+            }
+            layout.lastAccess = System.nanoTime();
+            return layout;
+        }
+    }
+
+    /** 文档版本的版式模型；未命中时加载文档并抽取一次。 */
+    public DocumentLayout model(Path file) throws IOException {
+        return model(get(file), file);
+    }
+
+    /** 已缓存的整本版式模型；未缓存时返回 null（不触发抽取）。 */
+    public DocumentLayout cachedModel(Path file) throws IOException {
+        return get(file).model;
+    }
+
+    /** 指定模式的 Box 列表；由模型派生，不再单独解析 PDF。 */
+    public List<TextBoxCollector.Box> boxes(Path file, TextBoxCollector.Mode mode) throws IOException {
+        Layout layout = get(file);
+        List<TextBoxCollector.Box> cached = layout.boxes.get(mode);
+        if (cached != null) return cached;
+        List<TextBoxCollector.Box> derived = Collections.unmodifiableList(model(layout, file).boxes(mode));
+        layout.boxes.put(mode, derived);
+        return derived;
+    }
+
+    /**
+     * 第 from..to 页（0-based，含两端，超出文档的部分截掉）的 Box：整本模型已缓存时直接切出；
+     * 否则只加载文档并抽取其中尚未抽取过的页（一次加载），其余页不解析，耗时与文档页数无关。
+     */
+    public PageBoxes boxes(Path file, TextBoxCollector.Mode mode, int from, int to) throws IOException {
+        Layout layout = get(file);
+        if (layout.model != null) {
+            return sliceModel(layout, file, mode, from, to);
+        }
+        int last = layout.pageCount < 0 ? to : Math.min(to, layout.pageCount - 1);
+        int missingFrom = -1;
+        int missingTo = -1;
+        for (int p = from; p <= last; p++) {
+            if (!layout.pages.containsKey(p)) {
+                if (missingFrom < 0) missingFrom = p;
+                missingTo = p;
+            }
+        }
+        if (layout.pageCount < 0 && missingFrom < 0) {
+            missingFrom = from;
+            missingTo = to;
+        }
+        if (missingFrom >= 0) {
+            // 缺页之间已有的页一并重新抽取：一次加载、一段连续页
+            ParallelTextExtractor.PageSlice slice = extractor.extractRange(file, missingFrom, missingTo);
+            for (DocumentLayout.Page p : slice.layout.detach().getPages()) {
+                layout.pages.putIfAbsent(p.pageIndex, p);
+            }
+            layout.pageCount = slice.pageCount;
+            last = Math.min(to, slice.pageCount - 1);
+        }
+        DocumentLayout part = new DocumentLayout();
+        for (int p = from; p <= last; p++) {
+            DocumentLayout.Page page = layout.pages.get(p);
+            if (page == null) {
+                // 期间整本模型已建立，按页结果被丢弃
+                return sliceModel(layout, file, mode, from, to);
+            }
+            part.addPage(page);
+        }
+        return new PageBoxes(layout.pageCount, Collections.unmodifiableList(part.boxes(mode)));
+    }
+
+    /** 文档页数：整本模型或按页抽取时已知则直接返回，否则只解析文档结构（不抽取）并记下。 */
+    public int pageCount(Path file) throws IOException {
+        Layout layout = get(file);
+        DocumentLayout model = layout.model;
+        if (model != null) return model.getPageCount();
+        if (layout.pageCount < 0) layout.pageCount = extractor.pageCount(file);
+        return layout.pageCount;
+    }
+
+    /** 行信息（font 字段为空，仅保留几何与字号）。 */
+    public List<TextSearcher.LineInfo> lines(Path file) throws IOException {
+        Layout layout = get(file);
+        if (layout.lines == null) {
+            layout.lines = Collections.unmodifiableList(model(layout, file).lineInfos());
+        }
+        return layout.lines;
+    }
+
+    /** 逐页字符坐标（下标为 0-based 页号）。 */
+    public List<List<TextSearcher.CharInfo>> pageChars(Path file) throws IOException {
+        Layout layout = get(file);
+        if (layout.pageChars == null) {
+            DocumentLayout model = model(layout, file);
+            layout.pageChars = groupByPage(model.charInfos(), model.getPageCount());
+        }
+        return layout.pageChars;
+    }
+
+    /** 将一次已完成的搜索所用的版式模型写回缓存，供编辑路径顺带预热（模型会被 detach）。 */
+    public void remember(Layout layout, ParallelTextExtractor.SearchResult result) {
+        if (layout.model == null && result.layout != null) {
+            layout.model = result.layout.detach();
+            layout.pages.clear();
+        }
+    }
+
+    public void invalidate(Path file) {
+        Stamp s = stamps.remove(file.toAbsolutePath().normalize());
+        if (s != null) {
+            synchronized (this) { entries.remove(s.hash); }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        stamps.clear();
+    }
+
+    private DocumentLayout model(Layout layout, Path file) throws IOException {
+        DocumentLayout model = layout.model;
+        if (model == null) {
+            model = extractor.extract(file).detach();
+            layout.model = model;
+            layout.pages.clear();
+        }
+        return model;
+    }
+
+    private PageBoxes sliceModel(Layout layout, Path file, TextBoxCollector.Mode mode,
+                                 int from, int to) throws IOException {
+        List<TextBoxCollector.Box> all = boxes(file, mode);
+        // Box 按页序排列：二分找到首页的起点
+        int lo = 0;
+        int hi = all.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (all.get(mid).pageIndex < from) lo = mid + 1; else hi = mid;
+        }
+        int end = lo;
+        while (end < all.size() && all.get(end).pageIndex <= to) end++;
+        return new PageBoxes(model(layout, file).getPageCount(), all.subList(lo, end));
+    }
+
+    private void evictExpired() {
+        if (ttlNanos <= 0) return;
+        long now = System.nanoTime();
+        entries.values().removeIf(l -> now - l.lastAccess > ttlNanos);
+    }
+
+    private static List<List<TextSearcher.CharInfo>> groupByPage(List<TextSearcher.CharInfo> chars, int pageCount) {
+        List<List<TextSearcher.CharInfo>> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) pages.add(new ArrayList<>());
+        for (TextSearcher.CharInfo c : chars) {
+            if (c.pageIndex >= 0 && c.pageIndex < pageCount) pages.get(c.pageIndex).add(c);
+        }
+        for (int i = 0; i < pageCount; i++) pages.set(i, Collections.unmodifiableList(pages.get(i)));
+        return Collections.unmodifiableList(pages);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int r;
+            while ((r = in.read(buf)) > 0) {
+                md.update(buf, 0, r);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在全局内存预算内加载 PDF：按文件大小与当前余量为每次加载选择 MemoryUsageSetting。
+ * - 预计占用 = 文档固定开销 + 文件大小 × 系数；余量足够且不超过单文档上限时全内存（MAIN），
+ *   否则内存 + 临时文件混合（MIXED，内存部分取余量），再不够则流数据全部放临时文件（TEMP_FILE）；
+ * - 连最小占用都放不下时按到达顺序在准入队列中等待，直到有文档关闭释放预算（超时返回 503）；
+ *   单个文档的最小占用超过整个预算时，等到没有其他文档占用后独占加载；
+ * - 预留在文档关闭时（ScratchFile 随 COSDocument 关闭）自动归还，调用方仍按原样 close 文档；
+ * - 预算、已预留、排队数经 pdf.memory.* 指标暴露；
+ * - mapped-reads 打开时源文件以内存映射读取（见 MappedRandomAccessRead），否则用带缓冲的 RandomAccessFile。
+ */
+@Component
+public class DocumentLoader {
+
+    public enum Setting { MAIN, MIXED, TEMP_FILE }
+
+    /** 一次加载的预算预留；close 归还（可重复调用） */
+    public final class Lease implements Closeable {
+        public final Setting setting;
+        public final long reserved;
+        private final MemoryUsageSetting memoryUsage;
+        private boolean released;
+
+        private Lease(Setting setting, long reserved, MemoryUsageSetting memoryUsage) {
+            this.setting = setting;
+            this.reserved = reserved;
+            this.memoryUsage = memoryUsage;
+        }
+
+        @Override
+        public void close() {
+            synchronized (DocumentLoader.this) {
+                if (released) return;
+                released = true;
+                used -= reserved;
+                DocumentLoader.this.notifyAll();
+            }
+        }
+    }
+
+    private final long budget;
+    private final long overhead;
+    private final double heapFactor;
+    private final double parseFactor;
+    private final long maxPerDocument;
+    private final long minMixedMemory;
+    private final File scratchDir;
+    private final long admissionTimeoutNanos;
+    private final boolean mappedReads;
+    private final Timer waitTimer;
+    private final Map<Setting, Counter> admissions = new EnumMap<>(Setting.class);
+    private final List<Runnable> pressureListeners = new CopyOnWriteArrayList<>();
+
+    // 以下字段在 this 上同步
+    private long used;
+    private int waiting;
+    private long nextTicket;
+    private long serving;
+    private final Set<Long> abandoned = new HashSet<>();
+
+    public DocumentLoader(MeterRegistry registry,
+                          @Value("${pdf.memory.budget:0}") DataSize budget,
+                          @Value("${pdf.memory.document-overhead:2MB}") DataSize overhead,
+                          @Value("${pdf.memory.heap-factor:4.0}") double heapFactor,
+                          @Value("${pdf.memory.parse-factor:1.0}") double parseFactor,
+                          @Value("${pdf.memory.max-share:0.5}") double maxShare,
+                          @Value("${pdf.memory.min-mixed:4MB}") DataSize minMixedMemory,
+                          @Value("${pdf.memory.scratch-dir:}") String scratchDir,
+                          @Value("${pdf.memory.admission-timeout:PT2M}") Duration admissionTimeout,
+                          @Value("${pdf.memory.mapped-reads:true}") boolean mappedReads) {
+        // budget<=0 时取最大堆的一半
+        this.budget = budget.toBytes() > 0 ? budget.toBytes() : Runtime.getRuntime().maxMemory() / 2;
+        this.overhead = Math.max(0, overhead.toBytes());
+        this.heapFactor = Math.max(0, heapFactor);
+        this.parseFactor = Math.min(Math.max(0, parseFactor), this.heapFactor);
+        this.maxPerDocument = (long) (this.budget * Math.min(1.0, Math.max(0.0, maxShare)));
+        this.minMixedMemory = Math.max(0, minMixedMemory.toBytes());
+        this.scratchDir = scratchDir == null || scratchDir.isBlank() ? null : new File(scratchDir);
+        this.admissionTimeoutNanos = admissionTimeout.toNanos();
+        this.mappedReads = mappedReads;
+
+        Gauge.builder("pdf.memory.budget", this, l -> l.budget).baseUnit("bytes").register(registry);
+        Gauge.builder("pdf.memory.reserved", this, DocumentLoader::getUsed).baseUnit("bytes").register(registry);
+        Gauge.builder("pdf.memory.waiting", this, DocumentLoader::getWaiting).register(registry);
+        this.waitTimer = Timer.builder("pdf.memory.admission.wait").register(registry);
+        for (Setting s : Setting.values()) {
+            admissions.put(s, Counter.builder("pdf.memory.admissions")
+                    .tag("setting", s.name().toLowerCase()).register(registry));
+        }
+    }
+
+    /** 在预算内加载（必要时排队等待） */
+    public PDDocument load(Path file) throws IOException {
+        return load(file, admit(Files.size(file)));
+    }
+
+    /** 用已取得的预留加载；预留的归属随之转给文档，失败时立即归还 */
+    public PDDocument load(Path file, Lease lease) throws IOException {
+        RandomAccessRead source = null;
+        ScratchFile scratch = null;
+        try {
+            source = mappedReads
+                    ? MappedRandomAccessRead.open(file)
+                    : new RandomAccessBufferedFileInputStream(file.toFile());
+            scratch = new LeasedScratchFile(lease);
+            // 与 PDDocument.load(File, MemoryUsageSetting) 相同的解析流程，只是 ScratchFile 带预留
+            PDFParser parser = new PDFParser(source, "", null, null, scratch);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(scratch);
+            IOUtils.closeQuietly(source);
+            lease.close();
+            throw e;
+        }
+    }
+
+    /** 为 fileSize 字节的文件取得预留：按到达顺序排队，直到最小占用能放进余量 */
+    public Lease admit(long fileSize) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + admissionTimeoutNanos;
+        Lease lease;
+        synchronized (this) {
+            long ticket = nextTicket++;
+            waiting++;
+            boolean signalled = false;
+            try {
+                while ((lease = ticket == serving ? tryReserve(fileSize) : null) == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        leave(ticket);
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                                "document memory budget exhausted");
+                    }
+                    if (!signalled) {
+                        signalled = true;
+                        pressureListeners.forEach(Runnable::run);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                leave(ticket);
+            } catch (InterruptedException e) {
+                leave(ticket);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for document memory budget");
+            } finally {
+                waiting--;
+            }
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        admissions.get(lease.setting).increment();
+        return lease;
+    }
+
+    /** 不排队：余量不够时返回 null（用于并行抽取的分块加载，不够就退化为单线程） */
+    public Lease tryAdmit(long fileSize) {
+        Lease lease;
+        synchronized (this) {
+            // 有人排队时不插队
+            if (nextTicket != serving) return null;
+            lease = tryReserve(fileSize);
+        }
+        if (lease != null) admissions.get(lease.setting).increment();
+        return lease;
+    }
+
+    /**
+     * 注册预算紧张时的回调：有加载需要排队等待时调用（持有本对象锁调用，回调只能投递任务、不能阻塞）。
+     * 持有常驻文档的组件（如编辑会话）据此释放空闲文档。
+     */
+    public void onPressure(Runnable listener) {
+        pressureListeners.add(listener);
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /** 新建输出文档：内存中至多保留 min-mixed 的流数据，其余写入暂存目录（大输出不随页数占满堆） */
+    public PDDocument create() {
+        MemoryUsageSetting memoryUsage = MemoryUsageSetting.setupMixed(Math.max(1, minMixedMemory));
+        if (scratchDir != null) memoryUsage.setTempDir(scratchDir);
+        return new PDDocument(memoryUsage);
+    }
+
+    private Lease tryReserve(long fileSize) {
+        long headroom = budget - used;
+        long min = overhead + (long) (fileSize * parseFactor);
+        long full = overhead + (long) (fileSize * heapFactor);
+        if (full <= headroom && full <= maxPerDocument) {
+            return reserve(Setting.MAIN, full, MemoryUsageSetting.setupMainMemoryOnly());
+        }
+        long mixed = Math.min(Math.min(headroom, maxPerDocument) - min, full - min);
+        if (mixed >= minMixedMemory && mixed > 0) {
+            return reserve(Setting.MIXED, min + mixed, MemoryUsageSetting.setupMixed(mixed));
+        }
+        // 单个文档超过整个预算：等到没有其他占用时独占
+        if (min <= headroom || used == 0) {
+            return reserve(Setting.TEMP_FILE, min, MemoryUsageSetting.setupTempFileOnly());
+        }
+        return null;
+    }
+
+    private Lease reserve(Setting setting, long bytes, MemoryUsageSetting memoryUsage) {
+        if (scratchDir != null) memoryUsage.setTempDir(scratchDir);
+        used += bytes;
+        return new Lease(setting, bytes, memoryUsage);
+    }
+
+    /** 票号离开队列（准入、超时或中断）；未轮到就离开的票号记下，轮到时跳过 */
+    private void leave(long ticket) {
+        if (ticket == serving) {
+            serving++;
+            while (abandoned.remove(serving)) serving++;
+        } else {
+            abandoned.add(ticket);
+        }
+        notifyAll();
+    }
+
+    /** 关闭时归还预留的 ScratchFile（COSDocument.close 会关闭它） */
+    private static final class LeasedScratchFile extends ScratchFile {
+        private final Lease lease;
+
+        LeasedScratchFile(Lease lease) throws IOException {
+            super(lease.memoryUsage);
+            this.lease = lease;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                lease.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.pdfdemo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 多文档存储：内容以 SHA-256 寻址，文档是指向内容的可变引用。
+ * - blob（blobs/ab/&lt;sha256&gt;.pdf）写入临时文件、边写边算摘要，完成后原子改名；内容相同只存一份，发布后不再修改；
+ * - 文档记录（documents/&lt;id&gt;.properties）同样以临时文件 + 原子改名替换；
+ * - 读取（内容、文本框、标注）只解析一次当前引用，之后直接读不可变的 blob，不加锁；
+ * - 编辑按文档加锁：同一文档的编辑依次进行（后一次基于前一次的结果），不同文档互不阻塞；
+ * - 编辑结果写成新 blob 后切换引用；旧版本的 blob 保留（可能被其它文档或进行中的读取引用）。
+ */
+@Component
+public class DocumentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentStore.class);
+
+    private static final String BLOBS = "blobs";
+    private static final String DOCUMENTS = "documents";
+    private static final byte[] PDF_HEADER = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    /** 文档元数据；每次变化生成新对象，读取方拿到的是一致的快照 */
+    public static class Document {
+        public String id;
+        public String name;
+        public String sha256;
+        public long size;
+        public int version;       // 内容每变化一次加一，上传时为 1
+        public Instant createdAt;
+        public Instant updatedAt;
+    }
+
+    /** 一次编辑的结果：编辑后的文档、内容是否变化，以及批量替换的逐条规则报告 */
+    public static class Revision {
+        public Document document;
+        public boolean changed;
+        public List<PdfService.RuleReport> report;
+    }
+
+    /** 对文档当前内容（source）执行一次编辑；document 为其在全文索引中的文档 id */
+    @FunctionalInterface
+    public interface Editor {
+        PdfOutput edit(Path source, String document) throws IOException;
+    }
+
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Document document;
+
+        Entry(Document document) {
+            this.document = document;
+        }
+    }
+
+    private final Path blobs;
+    private final Path documentsDir;
+    private final long maxUpload;
+    private final PdfMetrics metrics;
+    private final TextIndex textIndex;
+    private final Map<String, Entry> documents = new ConcurrentHashMap<>();
+
+    public DocumentStore(PdfMetrics metrics, TextIndex textIndex,
+                         @Value("${pdf.store.dir:}") String dir,
+                         @Value("${pdf.store.max-upload:256MB}") DataSize maxUpload) throws IOException {
+        this.metrics = metrics;
+        this.textIndex = textIndex;
+        Path root = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("user.dir"), "data", "store")
+                : Paths.get(dir);
+        this.blobs = root.resolve(BLOBS);
+        this.documentsDir = root.resolve(DOCUMENTS);
+        this.maxUpload = maxUpload.toBytes();
+        Files.createDirectories(blobs);
+        Files.createDirectories(documentsDir);
+        load();
+    }
+
+    /** 上传：请求体流式写入并计算摘要，不整体读入内存；超过 max-upload 返回 413，不是 PDF 返回 400 */
+    public Document upload(String name, InputStream body) throws IOException {
+        PdfMetrics.Operation op = metrics.start("store-upload");
+        try {
+            Document d = new Document();
+            d.id = UUID.randomUUID().toString();
+            d.name = name == null || name.isBlank() ? d.id + ".pdf" : Paths.get(name).getFileName().toString();
+            d.size = op.time("write", () -> writeBlob(d, out -> copyUpload(body, out)));
+            op.bytesIn(d.size);
+            d.version = 1;
+            d.createdAt = Instant.now();
+            d.updatedAt = d.createdAt;
+            save(d);
+            documents.put(d.id, new Entry(d));
+            textIndex.register(d.id, blob(d.sha256));
+            return d;
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
+
+    public List<Document> list() {
+        List<Document> all = new ArrayList<>();
+        for (Entry e : documents.values()) all.add(e.document);
+        all.sort(Comparator.comparing((Document d) -> d.createdAt).thenComparing(d -> d.id));
+        return all;
+    }
+
+    public Document get(String id) {
+        return entry(id).document;
+    }
+
+    /** 文档当前内容所在的 blob（不可变，可在不加锁的情况下读取） */
+    public Path content(Document document) {
+        return blob(document.sha256);
+    }
+
+    /** 文档内容以 Resource 输出：由容器经文件通道分块拷贝，支持 Range，不读入堆 */
+    public Resource contentResource(Document document) throws IOException {
+        Path file = content(document);
+        metrics.start("store-content").addBytesOut(Files.size(file)).finish();
+        return new FileSystemResource(file);
+    }
+
+    /**
+     * 在文档上执行编辑：持有该文档的锁读取当前内容、编辑并写成新 blob，再切换引用。
+     * 编辑结果内容不变（如没有命中）时不产生新版本。
+     */
+    public Revision edit(String id, Editor editor) throws IOException {
+        Entry entry = entry(id);
+        try {
+            entry.lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for document " + id);
+        }
+        try {
+            Document current = entry.document;
+            Document next = copy(current);
+            Revision revision = new Revision();
+            try (PdfOutput output = editor.edit(content(current), id)) {
+                revision.report = output.getReport();
+                next.size = writeBlob(next, output::writeTo);
+            }
+            revision.changed = !next.sha256.equals(current.sha256);
+            if (revision.changed) {
+                next.version = current.version + 1;
+                next.updatedAt = Instant.now();
+                save(next);
+                entry.document = next;
+                textIndex.register(id, blob(next.sha256));
+            }
+            revision.document = entry.document;
+            return revision;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    private Entry entry(String id) {
+        Entry e = documents.get(id);
+        if (e == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no such document: " + id);
+        }
+        return e;
+    }
+
+    private Path blob(String sha256) {
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256 + ".pdf");
+    }
+
+    private interface BlobWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** 写入临时文件并计算 SHA-256，以摘要为名原子发布（已存在则丢弃临时文件）；设置 d.sha256，返回字节数 */
+    private long writeBlob(Document d, BlobWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(blobs, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            CountingOutputStream counter;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+                counter = new CountingOutputStream(out);
+                writer.writeTo(counter);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path target = blob(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                move(tmp, target);
+            }
+            d.sha256 = hash;
+            return counter.count;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void copyUpload(InputStream body, OutputStream out) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = body.readNBytes(buf, 0, buf.length)) > 0) {
+            if (total == 0 && !startsWithPdfHeader(buf, n)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "not a PDF document");
+            }
+            total += n;
+            if (total > maxUpload) {
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "document exceeds " + maxUpload + " bytes");
+            }
+            out.write(buf, 0, n);
+        }
+        if (total == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "empty upload");
+        }
+    }
+
+    private static boolean startsWithPdfHeader(byte[] buf, int n) {
+        if (n < PDF_HEADER.length) return false;
+        for (int i = 0; i < PDF_HEADER.length; i++) {
+            if (buf[i] != PDF_HEADER[i]) return false;
+        }
+        return true;
+    }
+
+    private void save(Document d) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("name", d.name);
+        p.setProperty("sha256", d.sha256);
+        p.setProperty("size", String.valueOf(d.size));
+        p.setProperty("version", String.valueOf(d.version));
+        p.setProperty("createdAt", d.createdAt.toString());
+        p.setProperty("updatedAt", d.updatedAt.toString());
+        Path tmp = Files.createTempFile(documentsDir, d.id, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "document " + d.id);
+            }
+            move(tmp, documentsDir.resolve(d.id + ".properties"));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** 启动时读入文档记录并登记到全文索引；清理中断的临时文件 */
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(documentsDir, "*.{properties,tmp}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Properties p = new Properties();
+                try (InputStream in = Files.newInputStream(file)) {
+                    p.load(in);
+                }
+                Document d = new Document();
+                d.id = name.substring(0, name.length() - ".properties".length());
+                d.name = p.getProperty("name");
+                d.sha256 = p.getProperty("sha256");
+                try {
+                    d.size = Long.parseLong(p.getProperty("size"));
+                    d.version = Integer.parseInt(p.getProperty("version"));
+                    d.createdAt = Instant.parse(p.getProperty("createdAt"));
+                    d.updatedAt = Instant.parse(p.getProperty("updatedAt"));
+                } catch (RuntimeException e) {
+                    log.warn("skipping malformed document record {}", file, e);
+                    continue;
+                }
+                if (d.sha256 == null || !Files.exists(blob(d.sha256))) {
+                    log.warn("skipping document {}: content blob missing", d.id);
+                    continue;
+                }
+                documents.put(d.id, new Entry(d));
+                textIndex.register(d.id, blob(d.sha256));
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(blobs, "*.tmp")) {
+            for (Path p : files) Files.deleteIfExists(p);
+        }
+    }
+
+    private static Document copy(Document d) {
+        Document c = new Document();
+        c.id = d.id;
+        c.name = d.name;
+        c.sha256 = d.sha256;
+        c.size = d.size;
+        c.version = d.version;
+        c.createdAt = d.createdAt;
+        c.updatedAt = d.updatedAt;
+        return c;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.pdfdemo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步编辑/抽取任务：提交后立即返回任务 id，后台执行，结果写入 JobResultStore 供之后下载。
+ * - 运行在虚拟线程上（JDK 21+ 可用时），并发执行数由信号量限制为 max-concurrent；
+ *   JDK 17 上退化为同等大小的平台线程池；
+ * - 排队数超过 max-queued 时拒绝（429）；
+ * - 进度：任务线程绑定 JobProgress，加载时得到总页数，版式抽取每完成一页计数；
+ * - 结束（成功/失败/取消）的任务及结果在 ttl 后过期清除。
+ */
+@Service
+public class EditJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(EditJobService.class);
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    /** 任务执行后的输出：内容类型、附加响应头与结果体 */
+    public static class Output {
+        public final String contentType;
+        public final Map<String, String> headers;
+        final JobResultStore.Body body;
+        final AutoCloseable resource;
+
+        private Output(String contentType, Map<String, String> headers, JobResultStore.Body body,
+                       AutoCloseable resource) {
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+            this.resource = resource;
+        }
+
+        /** PDF 结果：写入结果区后关闭（同时结束该操作的指标） */
+        public static Output pdf(String contentType, Map<String, String> headers, PdfOutput pdf) {
+            return new Output(contentType, headers, pdf::writeTo, pdf);
+        }
+
+        public static Output bytes(String contentType, Map<String, String> headers, byte[] data) {
+            return new Output(contentType, headers, out -> out.write(data), null);
+        }
+    }
+
+    /** 任务体：在后台线程上执行实际的编辑或抽取 */
+    @FunctionalInterface
+    public interface Work {
+        Output run() throws IOException;
+    }
+
+    /** 任务状态（轮询接口直接序列化为 JSON） */
+    public static class Status {
+        public String id;
+        public String type;
+        public State state;
+        public int pagesDone;
+        public int pagesTotal;
+        public String error;
+        public String contentType;
+        public Long size;
+        public Instant createdAt;
+        public Instant startedAt;
+        public Instant finishedAt;
+        public Instant expiresAt;
+    }
+
+    private static final class Job {
+        final String id;
+        final String type;
+        final Work work;
+        final JobProgress progress = new JobProgress();
+        final Instant createdAt = Instant.now();
+        volatile State state = State.QUEUED;
+        volatile String error;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile Future<?> future;
+        final AtomicBoolean dequeued = new AtomicBoolean();
+
+        Job(String id, String type, Work work) {
+            this.id = id;
+            this.type = type;
+            this.work = work;
+        }
+    }
+
+    private final JobResultStore store;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper;
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final Duration ttl;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public EditJobService(JobResultStore store,
+                          @Value("${pdf.jobs.max-concurrent:2}") int maxConcurrent,
+                          @Value("${pdf.jobs.max-queued:64}") int maxQueued,
+                          @Value("${pdf.jobs.ttl:PT15M}") Duration ttl) {
+        this.store = store;
+        int concurrency = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(concurrency, true);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.ttl = ttl;
+        this.executor = newExecutor(concurrency);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pdf-job-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(ttl.toSeconds(), 60));
+        sweeper.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /** 提交任务；排队已满时抛出 429 */
+    public Status submit(String type, Work work) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "job queue is full");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), type, work);
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> execute(job));
+        } catch (RuntimeException e) {
+            leaveQueue(job);
+            jobs.remove(job.id);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "job executor unavailable", e);
+        }
+        return status(job);
+    }
+
+    /** 查询状态；未知或已过期时返回 null */
+    public Status get(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : status(job);
+    }
+
+    /** 已完成任务的结果；未知、未完成或已过期时返回 null */
+    public JobResultStore.Entry result(String id) {
+        Job job = jobs.get(id);
+        return job == null || job.state != State.DONE ? null : store.get(id);
+    }
+
+    /** 取消（排队或运行中）并删除任务及其结果；返回是否存在 */
+    public boolean delete(String id) {
+        Job job = jobs.remove(id);
+        if (job == null) return false;
+        Future<?> future = job.future;
+        if (future != null) future.cancel(true);
+        leaveQueue(job);
+        if (job.state == State.QUEUED || job.state == State.RUNNING) job.state = State.CANCELLED;
+        store.remove(id);
+        return true;
+    }
+
+    private void execute(Job job) {
+        boolean acquired = false;
+        try {
+            permits.acquire();
+            acquired = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        leaveQueue(job);
+        if (job.state != State.QUEUED) {
+            if (acquired) permits.release();
+            return;
+        }
+        if (!acquired) {
+            finish(job, State.CANCELLED, "interrupted");
+            return;
+        }
+        job.state = State.RUNNING;
+        job.startedAt = Instant.now();
+        JobProgress previous = JobProgress.bind(job.progress);
+        try {
+            Output output = job.work.run();
+            try {
+                store.put(job.id, output.contentType, output.headers, output.body);
+            } finally {
+                if (output.resource != null) output.resource.close();
+            }
+            job.progress.complete();
+            if (!jobs.containsKey(job.id)) {
+                store.remove(job.id); // 运行期间被删除
+                return;
+            }
+            finish(job, State.DONE, null);
+        } catch (Exception e) {
+            if (job.state == State.CANCELLED) return;
+            log.warn("job {} ({}) failed", job.id, job.type, e);
+            finish(job, State.FAILED, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+        } finally {
+            JobProgress.restore(previous);
+            permits.release();
+        }
+    }
+
+    /** 离开排队（开始执行或被取消），每个任务只扣减一次 */
+    private void leaveQueue(Job job) {
+        if (job.dequeued.compareAndSet(false, true)) queued.decrementAndGet();
+    }
+
+    private void finish(Job job, State state, String error) {
+        job.error = error;
+        job.finishedAt = Instant.now();
+        job.state = state;
+    }
+
+    private void expire() {
+        Instant now = Instant.now();
+        for (Job job : jobs.values()) {
+            Instant finished = job.finishedAt;
+            if (finished != null && finished.plus(ttl).isBefore(now) && jobs.remove(job.id, job)) {
+                store.remove(job.id);
+            }
+        }
+    }
+
+    private Status status(Job job) {
+        Status s = new Status();
+        s.id = job.id;
+        s.type = job.type;
+        s.state = job.state;
+        s.pagesDone = job.progress.getPagesDone();
+        s.pagesTotal = job.progress.getPagesTotal();
+        s.error = job.error;
+        s.createdAt = job.createdAt;
+        s.startedAt = job.startedAt;
+        s.finishedAt = job.finishedAt;
+        if (s.finishedAt != null) s.expiresAt = s.finishedAt.plus(ttl);
+        if (s.state == State.DONE) {
+            JobResultStore.Entry entry = store.get(job.id);
+            if (entry != null) {
+                s.contentType = entry.contentType;
+                s.size = entry.size;
+            }
+        }
+        return s;
+    }
+
+    /** JDK 21+ 用虚拟线程（每任务一个，靠信号量限流）；否则用固定大小的守护线程池 */
+    private static ExecutorService newExecutor(int concurrency) {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger seq = new AtomicInteger();
+            return Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "pdf-job-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 编辑结果（/edit-inplace、/edit-line）的落盘缓存：键为“源文档内容哈希 + 接口 + 规范化参数”的 SHA-256，
+ * 值为上次输出的字节，命中时直接从文件输出，不加载 PDF。
+ * 发布、并发合并与淘汰的语义见 DiskCache：文件总字节超过 max-size 时按最近最少使用删除，
+ * 单个结果超过 max-size 时照常返回但不保留。max-size 为 0 时关闭缓存。
+ */
+@Component
+public class EditResultCache {
+
+    /** 计算结果并写入 out */
+    @FunctionalInterface
+    public interface Builder {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    // max-size 为 0（关闭）时为 null
+    private final DiskCache cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public EditResultCache(MeterRegistry registry,
+                           @Value("${pdf.edit-cache.dir:}") String dir,
+                           @Value("${pdf.edit-cache.max-size:256MB}") DataSize maxSize) throws IOException {
+        long maxBytes = Math.max(0, maxSize.toBytes());
+        this.hits = counter(registry, "hit");
+        this.misses = counter(registry, "miss");
+        this.coalesced = counter(registry, "coalesced");
+        this.cache = maxBytes == 0 ? null : new DiskCache(dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "pdfbox-demo-edits")
+                : Paths.get(dir), "*.out*", Integer.MAX_VALUE, maxBytes, outcome -> {
+                    switch (outcome) {
+                        case HIT: hits.increment(); break;
+                        case MISS: misses.increment(); break;
+                        default: coalesced.increment(); break;
+                    }
+                });
+        Gauge.builder("pdf.edit-cache.bytes", this, EditResultCache::getSize).register(registry);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /** 由各部分拼成缓存键：逐项带长度前缀（避免拼接歧义）后取 SHA-256；null 与空串不同 */
+    public static String key(Object... parts) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object part : parts) {
+            if (part == null) {
+                md.update((byte) 0);
+                continue;
+            }
+            byte[] bytes = part.toString().getBytes(StandardCharsets.UTF_8);
+            md.update((byte) 1);
+            md.update(Long.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+            md.update((byte) ':');
+            md.update(bytes);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** 打开 key 对应的结果；未命中时用 builder 计算（同一键并发时只计算一次）。调用方负责关闭返回的流 */
+    public InputStream open(String key, Builder builder) throws IOException {
+        return cache.open(key + ".out", builder::writeTo).getInputStream();
+    }
+
+    public long getSize() {
+        return cache == null ? 0 : cache.getSize();
+    }
+
+    public void clear() throws IOException {
+        if (cache != null) cache.clear();
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("pdf.edit-cache.requests").tag("result", result).register(registry);
+    }
+}
@@ -0,0 +1,633 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 编辑会话：文档在多次编辑之间常驻内存，编辑彼此叠加。
+ * - 打开时加载一次文档（计入 DocumentLoader 预算）并抽取版式模型；之后每次编辑只在常驻文档上绘制，
+ *   版式模型按实际绘制的文本增量更新被修改的页（写时复制），不再重新加载或解析；
+ * - 每次编辑前记录被涉及页面的 /Contents 与字体资源、以及版式模型中的原页对象，撤销时原样恢复（最多 max-undo 步）；
+ * - 提交时把当前修订写回存储（默认增量更新，源文件在会话打开后被他人修改时返回 409），随后以新文件为基准继续；
+ * - 空闲超过 ttl、会话数超过 max-sessions、或内存预算出现排队时按最近最少使用淘汰（未提交的修改随之丢弃）。
+ */
+@Service
+public class EditSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(EditSessionService.class);
+
+    /** 会话状态（JSON） */
+    public static class Info {
+        public String id;
+        public int revision;      // 当前修订号（每次编辑 +1，撤销 -1，提交后归零）
+        public int undoDepth;     // 还可撤销的步数
+        public int pages;
+        public boolean dirty;     // 有未提交的修改
+        public String baseSha256; // 会话基准文件的内容哈希（DELTA 输出的拼接基准）
+        public long baseLength;
+        public Instant createdAt;
+        public Instant lastAccess;
+        public Instant expiresAt;
+    }
+
+    /** 一次会话内编辑的结果 */
+    public static class EditSummary {
+        public Info session;
+        public int matches;
+        public List<Integer> touchedPages;
+        public List<PdfService.RuleReport> report;
+    }
+
+    /** 编辑前的页面内容流与字体资源（恢复时原样放回） */
+    private static final class PageState {
+        final int pageIndex;
+        final COSBase contents;
+        final List<COSBase> contentItems; // /Contents 为数组时的元素副本（PDPageContentStream 会原地追加）
+        final COSDictionary resources;
+        final Set<COSName> fontNames;     // null 表示原来没有 /Font 子字典
+
+        private PageState(int pageIndex, COSBase contents, List<COSBase> contentItems,
+                          COSDictionary resources, Set<COSName> fontNames) {
+            this.pageIndex = pageIndex;
+            this.contents = contents;
+            this.contentItems = contentItems;
+            this.resources = resources;
+            this.fontNames = fontNames;
+        }
+
+        static PageState capture(PDDocument document, int pageIndex) {
+            PDPage page = document.getPage(pageIndex);
+            COSDictionary dict = page.getCOSObject();
+            COSBase contents = dict.getItem(COSName.CONTENTS);
+            COSBase resolved = dict.getDictionaryObject(COSName.CONTENTS);
+            List<COSBase> items = null;
+            if (resolved instanceof COSArray) {
+                items = new ArrayList<>(((COSArray) resolved).toList());
+            }
+            COSDictionary resources = page.getResources().getCOSObject();
+            COSDictionary fonts = resources.getCOSDictionary(COSName.FONT);
+            Set<COSName> fontNames = fonts == null ? null : new HashSet<>(fonts.keySet());
+            return new PageState(pageIndex, contents, items, resources, fontNames);
+        }
+
+        void restore(PDDocument document) {
+            COSDictionary dict = document.getPage(pageIndex).getCOSObject();
+            if (contents == null) {
+                dict.removeItem(COSName.CONTENTS);
+            } else {
+                if (contentItems != null) {
+                    COSBase resolved = contents instanceof COSObject ? ((COSObject) contents).getObject() : contents;
+                    COSArray array = (COSArray) resolved;
+                    array.clear();
+                    for (COSBase item : contentItems) array.add(item);
+                }
+                dict.setItem(COSName.CONTENTS, contents);
+            }
+            COSDictionary fonts = resources.getCOSDictionary(COSName.FONT);
+            if (fontNames == null) {
+                resources.removeItem(COSName.FONT);
+            } else if (fonts != null) {
+                for (COSName name : new ArrayList<>(fonts.keySet())) {
+                    if (!fontNames.contains(name)) fonts.removeItem(name);
+                }
+            }
+            dict.setNeedToBeUpdated(true);
+        }
+    }
+
+    /** 一次编辑的撤销记录 */
+    private static final class Revision {
+        final List<PageState> pdfPages = new ArrayList<>();
+        final Map<Integer, DocumentLayout.Page> layoutPages = new HashMap<>();
+        final Set<Integer> touched = new TreeSet<>();
+    }
+
+    private static final class Session {
+        final String id;
+        final Path target;                // 提交写回的文件
+        final ReentrantLock lock = new ReentrantLock();
+        final Instant createdAt = Instant.now();
+        final Deque<Revision> undo = new ArrayDeque<>();
+        final Set<Integer> pinned = new TreeSet<>(); // 已超出撤销深度、无法撤销的修改页
+        Path base;                        // 会话私有的基准文件（硬链接或副本）
+        String baseHash;
+        long baseLength;
+        PDDocument document;
+        FontMetrics.Cache fonts;          // document 的字体度量，随文档重新加载与关闭
+        DocumentLayout layout;
+        int revision;
+        int generation;
+        volatile long lastAccessNanos = System.nanoTime();
+        volatile Instant lastAccess = Instant.now();
+        boolean closed;
+
+        Session(String id, Path target) {
+            this.id = id;
+            this.target = target;
+        }
+
+        Set<Integer> touched() {
+            Set<Integer> all = new TreeSet<>(pinned);
+            for (Revision r : undo) all.addAll(r.touched);
+            return all;
+        }
+
+        boolean dirty() {
+            return !pinned.isEmpty() || !undo.isEmpty();
+        }
+    }
+
+    private final PdfService pdfService;
+    private final DocumentLoader loader;
+    private final DocumentLayoutCache layoutCache;
+    private final ParallelTextExtractor extractor;
+    private final PdfMetrics metrics;
+    private final TextIndex textIndex;
+    private final Path dir;
+    private final Duration ttl;
+    private final int maxSessions;
+    private final int maxUndo;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+    private final Counter evictedTtl;
+    private final Counter evictedCapacity;
+    private final Counter evictedPressure;
+
+    public EditSessionService(PdfService pdfService, DocumentLoader loader, DocumentLayoutCache layoutCache,
+                              ParallelTextExtractor extractor, PdfMetrics metrics, TextIndex textIndex,
+                              MeterRegistry registry,
+                              @Value("${pdf.sessions.dir:}") String dir,
+                              @Value("${pdf.sessions.ttl:PT30M}") Duration ttl,
+                              @Value("${pdf.sessions.max-sessions:16}") int maxSessions,
+                              @Value("${pdf.sessions.max-undo:50}") int maxUndo) throws IOException {
+        this.pdfService = pdfService;
+        this.loader = loader;
+        this.layoutCache = layoutCache;
+        this.extractor = extractor;
+        this.metrics = metrics;
+        this.textIndex = textIndex;
+        this.dir = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "pdfbox-demo-sessions")
+                : Paths.get(dir);
+        this.ttl = ttl;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxUndo = Math.max(0, maxUndo);
+        Files.createDirectories(this.dir);
+
+        Gauge.builder("pdf.sessions.active", sessions, Map::size).register(registry);
+        this.evictedTtl = evictions(registry, "ttl");
+        this.evictedCapacity = evictions(registry, "capacity");
+        this.evictedPressure = evictions(registry, "pressure");
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pdf-session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(ttl.toSeconds(), 60));
+        sweeper.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.SECONDS);
+        // 有加载在预算前排队时，释放最久未用的空闲会话
+        loader.onPressure(() -> sweeper.execute(this::relievePressure));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        for (Session s : new ArrayList<>(sessions.values())) {
+            evict(s, null, true);
+        }
+    }
+
+    /** 在示例文档上打开会话 */
+    public Info open() throws IOException {
+        Path target = pdfService.getExamplePdfPath();
+        Session session = new Session(UUID.randomUUID().toString(), target);
+        PdfMetrics.Operation op = metrics.start("session-open");
+        try {
+            rebase(op, session);
+            op.pages(session.document.getNumberOfPages());
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            closeQuietly(session);
+            throw e;
+        } finally {
+            op.finish();
+        }
+        sessions.put(session.id, session);
+        while (sessions.size() > maxSessions) {
+            if (!evictLeastRecent(session, evictedCapacity, true)) break;
+        }
+        return info(session);
+    }
+
+    public Info get(String id) {
+        Session s = acquire(id);
+        try {
+            return info(s);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    public void close(String id) {
+        Session s = sessions.get(id);
+        if (s == null) throw notFound();
+        evict(s, null, true);
+    }
+
+    /** 会话当前版式的文本框（反映已应用的编辑） */
+    public List<TextBoxCollector.Box> textBoxes(String id, String mode) {
+        Session s = acquire(id);
+        try {
+            return s.layout.boxes(PdfService.parseMode(mode));
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /** 把会话当前修订写到 out；写出期间持有会话锁 */
+    public void writeDocument(String id, PdfService.OutputMode mode, OutputStream out) throws IOException {
+        Session s = acquire(id);
+        PdfMetrics.Operation op = metrics.start("session-document");
+        try (PdfOutput output = PdfOutput.borrowed(s.document, s.base, s.baseLength, s.touched(), mode)
+                .withMetrics(op)) {
+            output.writeTo(out);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    public EditSummary editInplace(String id, String oldText, String newText, boolean ignoreCase) throws IOException {
+        return edit(id, "session-edit-inplace", List.of(oldText == null ? "" : oldText), ignoreCase,
+                (document, fonts, found) -> pdfService.applyInplace(document, fonts, found, newText == null ? "" : newText));
+    }
+
+    public EditSummary editLine(String id, String oldText, String newText, boolean ignoreCase,
+                                Integer pageIndexOpt, String lineTextOpt) throws IOException {
+        return edit(id, "session-edit-line", List.of(oldText == null ? "" : oldText), ignoreCase,
+                (document, fonts, found) -> pdfService.applyLine(document, fonts, found, oldText, newText == null ? "" : newText,
+                        ignoreCase, pageIndexOpt, lineTextOpt));
+    }
+
+    public EditSummary editBatch(String id, List<PdfService.ReplaceRule> rules, boolean ignoreCase,
+                                 boolean wholeLine) throws IOException {
+        return edit(id, "session-edit-batch", PdfService.needles(rules), ignoreCase,
+                (document, fonts, found) -> pdfService.applyBatch(document, fonts, found, rules, ignoreCase, wholeLine));
+    }
+
+    /** 撤销最近一次编辑；没有可撤销的编辑时返回 409 */
+    public Info undo(String id) {
+        Session s = acquire(id);
+        try {
+            Revision r = s.undo.pollLast();
+            if (r == null) throw new ResponseStatusException(HttpStatus.CONFLICT, "nothing to undo");
+            restore(s, r);
+            s.revision--;
+            return info(s);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * 把当前修订写回存储。incremental 时保留原文件字节、只追加修改（否则完整重写）；
+     * 源文件在会话打开后已被修改时返回 409，force 时覆盖。提交后撤销历史清空。
+     */
+    public Info commit(String id, boolean incremental, boolean force) throws IOException {
+        Session s = acquire(id);
+        PdfMetrics.Operation op = metrics.start("session-commit");
+        try {
+            if (!force && Files.exists(s.target) && !layoutCache.contentHash(s.target).equals(s.baseHash)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "document changed since the session was opened");
+            }
+            boolean written = s.dirty();
+            if (written) {
+                Path tmp = Files.createTempFile(s.target.toAbsolutePath().getParent(), ".commit-", ".pdf");
+                try {
+                    keepPermissions(s.target, tmp);
+                    PdfService.OutputMode mode = incremental ? PdfService.OutputMode.INCREMENTAL : PdfService.OutputMode.FULL;
+                    // 不挂 op：PdfOutput 关闭时会结束指标，而提交之后还要重新加载
+                    try (OutputStream out = Files.newOutputStream(tmp);
+                         PdfOutput output = PdfOutput.borrowed(s.document, s.base, s.baseLength, s.touched(), mode)) {
+                        op.time("save", () -> output.writeTo(out));
+                    }
+                    Files.move(tmp, s.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                layoutCache.invalidate(s.target);
+            }
+            try {
+                rebase(op, s);
+            } catch (IOException | RuntimeException e) {
+                // 已写回存储但无法重新加载：会话作废
+                sessions.remove(s.id, s);
+                closeQuietly(s);
+                throw e;
+            }
+            if (written) {
+                // 重新加载后的版式就是新文件的版式：直接据此更新全文索引，不必等后台重新抽取
+                try {
+                    op.time("index", () -> textIndex.update(PdfService.SAMPLE_DOCUMENT, s.baseHash, s.layout));
+                } catch (IOException e) {
+                    // 索引保持旧版本，下次查询时发现落后并在后台重建
+                    log.warn("failed to index committed document of session {}", s.id, e);
+                }
+            }
+            return info(s);
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+            s.lock.unlock();
+        }
+    }
+
+    // ---------------- 内部实现 ----------------
+
+    private interface Apply {
+        PdfService.EditResult run(PDDocument document, FontMetrics.Cache fonts,
+                                  ParallelTextExtractor.SearchResult found) throws IOException;
+    }
+
+    private EditSummary edit(String id, String endpoint, List<String> needles, boolean ignoreCase, Apply apply)
+            throws IOException {
+        Session s = acquire(id);
+        PdfMetrics.Operation op = metrics.start(endpoint);
+        try {
+            ParallelTextExtractor.SearchResult found = op.time("search",
+                    () -> ParallelTextExtractor.search(s.layout, TextMatcher.of(needles, ignoreCase)));
+            op.pages(s.document.getNumberOfPages()).matches(found.matches.size());
+            int matches = found.matches.size();
+
+            Revision r = new Revision();
+            Set<Integer> candidates = new TreeSet<>();
+            for (TextSearcher.Match m : found.matches) {
+                if (m.pageIndex >= 0 && m.pageIndex < s.document.getNumberOfPages()) candidates.add(m.pageIndex);
+            }
+            for (int p : candidates) r.pdfPages.add(PageState.capture(s.document, p));
+
+            PdfService.EditResult result;
+            try {
+                result = op.time("draw", () -> apply.run(s.document, s.fonts, found));
+            } catch (IOException | RuntimeException e) {
+                // 编辑中途失败：已绘制的部分随快照撤回
+                restorePdf(s, r);
+                throw e;
+            }
+            r.pdfPages.removeIf(ps -> !result.touched.contains(ps.pageIndex));
+            r.touched.addAll(result.touched);
+            op.time("layout", () -> updateLayout(s, r, result));
+            if (!r.touched.isEmpty()) {
+                s.undo.addLast(r);
+                s.revision++;
+                while (s.undo.size() > maxUndo) {
+                    s.pinned.addAll(s.undo.pollFirst().touched);
+                }
+            }
+
+            EditSummary summary = new EditSummary();
+            summary.session = info(s);
+            summary.matches = matches;
+            summary.touchedPages = new ArrayList<>(result.touched);
+            summary.report = result.report;
+            return summary;
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * 更新被修改页的版式模型，原页对象放入撤销记录：内容流被改写的页重新抽取该页（文字续排后的位置以阅读器为准），
+     * 只有覆盖绘制的页按绘制的文本增量修补。
+     */
+    private static void updateLayout(Session s, Revision r, PdfService.EditResult result) throws IOException {
+        for (int pageIndex : result.rewritten) {
+            LayoutExtractor extractor = new LayoutExtractor();
+            extractor.setStartPage(pageIndex + 1);
+            extractor.setEndPage(pageIndex + 1);
+            DocumentLayout.Page extracted = extractor.extract(s.document).page(pageIndex);
+            if (extracted == null || s.layout.page(pageIndex) == null) continue;
+            r.layoutPages.put(pageIndex, s.layout.setPage(extracted));
+        }
+        Map<Integer, Map<Integer, DocumentLayout.Segment>> byPage = new HashMap<>();
+        // 原位替换：同一段内从后往前拼接，前面的下标不受影响
+        List<PdfService.Drawn> drawn = new ArrayList<>(result.drawn);
+        drawn.sort(Comparator.comparingInt((PdfService.Drawn d) -> d.match == null ? 0 : -d.match.start));
+        for (PdfService.Drawn d : drawn) {
+            int pageIndex = d.match != null ? d.match.pageIndex : d.line.pageIndex;
+            int segment = d.match != null ? d.match.segment : d.line.segment;
+            if (result.rewritten.contains(pageIndex)) continue;
+            DocumentLayout.Page page = s.layout.page(pageIndex);
+            if (page == null || segment < 0 || segment >= page.segments.size()) continue;
+            Map<Integer, DocumentLayout.Segment> replacements = byPage.computeIfAbsent(pageIndex, k -> new HashMap<>());
+            DocumentLayout.Segment current = replacements.getOrDefault(segment, page.segments.get(segment));
+            if (d.match != null) {
+                TextSearcher.Match m = d.match;
+                FontMetrics font = s.fonts.of(PdfService.drawingFont(m.font));
+                float fontSize = PdfService.drawingSize(m.fontSizeInPt);
+                replacements.put(segment, DocumentLayout.splice(current, m.start, m.start + m.matched.length(),
+                        d.text, m.tx, font, fontSize, d.shift));
+            } else {
+                TextSearcher.LineInfo line = d.line;
+                replacements.put(segment, DocumentLayout.retype(current, d.text, line.xStart,
+                        s.fonts.of(PdfService.drawingFont(line.font)), PdfService.drawingSize(line.fontSizeInPt)));
+            }
+        }
+        for (Map.Entry<Integer, Map<Integer, DocumentLayout.Segment>> e : byPage.entrySet()) {
+            DocumentLayout.Page old = s.layout.page(e.getKey());
+            r.layoutPages.put(e.getKey(), s.layout.setPage(DocumentLayout.patch(old, e.getValue())));
+        }
+    }
+
+    private static void restore(Session s, Revision r) {
+        restorePdf(s, r);
+        for (DocumentLayout.Page page : r.layoutPages.values()) {
+            s.layout.setPage(page);
+        }
+    }
+
+    private static void restorePdf(Session s, Revision r) {
+        for (PageState ps : r.pdfPages) ps.restore(s.document);
+    }
+
+    /** 以 target 的当前内容为基准（重新）加载会话文档，清空撤销历史 */
+    private void rebase(PdfMetrics.Operation op, Session s) throws IOException {
+        Path base = dir.resolve(s.id + "-" + (s.generation++) + ".pdf");
+        try {
+            Files.createLink(base, s.target);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 不支持硬链接（如跨文件系统）时复制一份
+            Files.copy(s.target, base, StandardCopyOption.REPLACE_EXISTING);
+        }
+        closeDocument(s);
+        Path previous = s.base;
+        s.base = base;
+        s.baseHash = layoutCache.contentHash(s.target);
+        s.baseLength = Files.size(base);
+        s.document = op.time("load", () -> loader.load(base));
+        s.fonts = new FontMetrics.Cache();
+        s.layout = op.time("layout", () -> extractor.extractBound(s.document, base));
+        s.undo.clear();
+        s.pinned.clear();
+        s.revision = 0;
+        if (previous != null) Files.deleteIfExists(previous);
+    }
+
+    /** 取得会话并加锁；未知或已淘汰时 404 */
+    private Session acquire(String id) {
+        Session s = sessions.get(id);
+        if (s == null) throw notFound();
+        s.lock.lock();
+        if (s.closed) {
+            s.lock.unlock();
+            throw notFound();
+        }
+        s.lastAccessNanos = System.nanoTime();
+        s.lastAccess = Instant.now();
+        return s;
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        for (Session s : new ArrayList<>(sessions.values())) {
+            if (now - s.lastAccessNanos > ttl.toNanos()) evict(s, evictedTtl, false);
+        }
+    }
+
+    /** 预算紧张：每次淘汰一个最久未用的空闲会话，仍有排队时稍后再看 */
+    private void relievePressure() {
+        if (loader.getWaiting() == 0) return;
+        if (evictLeastRecent(null, evictedPressure, false) && loader.getWaiting() > 0) {
+            sweeper.schedule(this::relievePressure, 100, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean evictLeastRecent(Session keep, Counter reason, boolean wait) {
+        List<Session> candidates = new ArrayList<>(sessions.values());
+        candidates.sort(Comparator.comparingLong(x -> x.lastAccessNanos));
+        for (Session s : candidates) {
+            if (s == keep) continue;
+            if (evict(s, reason, wait)) return true;
+        }
+        return false;
+    }
+
+    /** 关闭并移除会话；wait=false 时跳过正在使用的会话 */
+    private boolean evict(Session s, Counter reason, boolean wait) {
+        if (wait) s.lock.lock();
+        else if (!s.lock.tryLock()) return false;
+        try {
+            if (s.closed) return false;
+            sessions.remove(s.id, s);
+            if (reason != null) {
+                reason.increment();
+                if (s.dirty()) log.info("evicted session {} with uncommitted edits", s.id);
+            }
+            closeQuietly(s);
+            return true;
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Session s) {
+        s.closed = true;
+        closeDocument(s);
+        try {
+            if (s.base != null) Files.deleteIfExists(s.base);
+        } catch (IOException ignored) {
+            // 临时目录中的残留文件不影响正确性
+        }
+    }
+
+    private static void closeDocument(Session s) {
+        if (s.document == null) return;
+        try {
+            s.document.close();
+        } catch (IOException e) {
+            log.warn("failed to close session document {}", s.id, e);
+        }
+        s.document = null;
+        s.fonts = null;
+        s.layout = null;
+    }
+
+    private Info info(Session s) {
+        Info i = new Info();
+        i.id = s.id;
+        i.revision = s.revision;
+        i.undoDepth = s.undo.size();
+        i.pages = s.document == null ? 0 : s.document.getNumberOfPages();
+        i.dirty = s.dirty();
+        i.baseSha256 = s.baseHash;
+        i.baseLength = s.baseLength;
+        i.createdAt = s.createdAt;
+        i.lastAccess = s.lastAccess;
+        i.expiresAt = s.lastAccess.plus(ttl);
+        return i;
+    }
+
+    /** 临时文件默认仅属主可读写，替换前沿用原文件的权限 */
+    private static void keepPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from)) return;
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException ignored) {
+            // 非 POSIX 文件系统
+        }
+    }
+
+    private static ResponseStatusException notFound() {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "unknown or expired session");
+    }
+
+    private static Counter evictions(MeterRegistry registry, String reason) {
+        return Counter.builder("pdf.sessions.evicted").tag("reason", reason).register(registry);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.pdfdemo.service;
+
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 一个字体的度量缓存（单位均为字形空间的 1/1000 字号，与 PDFont 一致）：
+ * - 描述符/包围盒的上升、下降距与空白宽度在构造时读取一次；
+ * - 逐码位的前进宽度按 256 个码位一组懒加载到数组，之后的查询只是数组读取；
+ *   stringWidth 为逐码位宽度之和（从左到右累加，与 PDFont.getStringWidth 的结果一致）。
+ * PDFont 内部的宽度缓存不是线程安全的，未命中时在本对象上加锁计算；命中的读取不加锁。
+ * 通过 Cache 按文档持有：Cache 随文档（或一次编辑）创建与丢弃，不会比文档活得更久。
+ */
+final class FontMetrics {
+
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    /** 尚未计算；不可编码的码位记为 NaN */
+    private static final float UNKNOWN = Float.NEGATIVE_INFINITY;
+
+    /** 一个文档内各字体的度量；可在线程间共享 */
+    static final class Cache {
+        private final Map<PDFont, FontMetrics> fonts = new ConcurrentHashMap<>();
+
+        FontMetrics of(PDFont font) {
+            return fonts.computeIfAbsent(font, FontMetrics::new);
+        }
+    }
+
+    private final PDFont font;
+    final boolean hasDescriptor;
+    final float ascent;
+    final float descent;
+    final boolean hasBoundingBox;
+    final float boxTop;
+    final float boxBottom;
+    /** font.getSpaceWidth()；读取失败时为 0 */
+    final float spaceWidth;
+    // 基本多文种平面按 256 码位分组；数组填好后才发布，元素的写入是单个 float（不会读到半个值）
+    private final AtomicReferenceArray<float[]> blocks = new AtomicReferenceArray<>(0x10000 >> BLOCK_BITS);
+
+    FontMetrics(PDFont font) {
+        this.font = font;
+        PDFontDescriptor descriptor = font.getFontDescriptor();
+        hasDescriptor = descriptor != null;
+        ascent = hasDescriptor ? descriptor.getAscent() : 0f;
+        descent = hasDescriptor ? descriptor.getDescent() : 0f;
+        BoundingBox box = null;
+        try {
+            box = font.getBoundingBox();
+        } catch (IOException | RuntimeException ignored) {}
+        hasBoundingBox = box != null;
+        boxTop = hasBoundingBox ? box.getUpperRightY() : 0f;
+        boxBottom = hasBoundingBox ? box.getLowerLeftY() : 0f;
+        float sw = 0f;
+        try {
+            sw = font.getSpaceWidth();
+        } catch (RuntimeException ignored) {}
+        spaceWidth = sw;
+    }
+
+    PDFont font() {
+        return font;
+    }
+
+    /** 单个码位的前进宽度；字体无法编码时为 NaN */
+    float advance(int codePoint) {
+        if (codePoint >= 0x10000) {
+            synchronized (this) {
+                return measure(codePoint);
+            }
+        }
+        float[] block = blocks.get(codePoint >> BLOCK_BITS);
+        if (block != null) {
+            float w = block[codePoint & (BLOCK_SIZE - 1)];
+            if (w != UNKNOWN) return w;
+        }
+        synchronized (this) {
+            block = blocks.get(codePoint >> BLOCK_BITS);
+            if (block == null) {
+                block = new float[BLOCK_SIZE];
+                Arrays.fill(block, UNKNOWN);
+                blocks.set(codePoint >> BLOCK_BITS, block);
+            }
+            float w = block[codePoint & (BLOCK_SIZE - 1)];
+            if (w == UNKNOWN) {
+                w = measure(codePoint);
+                block[codePoint & (BLOCK_SIZE - 1)] = w;
+            }
+            return w;
+        }
+    }
+
+    /** text 的宽度；含不可编码字符时为 NaN */
+    float width(String text) {
+        float width = 0f;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            width += advance(cp);
+        }
+        return width;
+    }
+
+    /** 同 PDFont.getStringWidth：不可编码时抛出与其相同的异常 */
+    float stringWidth(String text) throws IOException {
+        float width = width(text);
+        if (Float.isNaN(width)) {
+            synchronized (this) {
+                return font.getStringWidth(text);
+            }
+        }
+        return width;
+    }
+
+    private float measure(int codePoint) {
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) return Float.NaN;
+        try {
+            return font.getStringWidth(new String(Character.toChars(codePoint)));
+        } catch (IOException | RuntimeException e) {
+            return Float.NaN;
+        }
+    }
+}
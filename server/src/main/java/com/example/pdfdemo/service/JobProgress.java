@@ -0,0 +1,55 @@
+package com.example.pdfdemo.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步任务的进度（已处理页数 / 总页数）。任务线程通过 bind 绑定到当前线程，
+ * 文档加载时设置总页数，版式抽取每完成一页计数一次；并行抽取的工作线程由 ParallelTextExtractor 转绑。
+ * 未绑定时所有调用都是空操作，同步接口不受影响。
+ */
+public final class JobProgress {
+
+    private static final ThreadLocal<JobProgress> CURRENT = new ThreadLocal<>();
+
+    private final AtomicInteger pagesDone = new AtomicInteger();
+    private final AtomicInteger pagesTotal = new AtomicInteger();
+
+    public int getPagesDone() {
+        return Math.min(pagesDone.get(), pagesTotal.get());
+    }
+
+    public int getPagesTotal() {
+        return pagesTotal.get();
+    }
+
+    /** 任务结束时把进度补满（部分路径如缓存命中不会逐页计数） */
+    public void complete() {
+        pagesDone.set(pagesTotal.get());
+    }
+
+    public static JobProgress current() {
+        return CURRENT.get();
+    }
+
+    /** 绑定到当前线程，返回之前的绑定（用于 restore） */
+    public static JobProgress bind(JobProgress progress) {
+        JobProgress previous = CURRENT.get();
+        if (progress == null) CURRENT.remove(); else CURRENT.set(progress);
+        return previous;
+    }
+
+    public static void restore(JobProgress previous) {
+        bind(previous);
+    }
+
+    /** 当前任务开始处理一个 pages 页的文档（多次加载时取最大值） */
+    static void pagesTotal(int pages) {
+        JobProgress p = CURRENT.get();
+        if (p != null) p.pagesTotal.accumulateAndGet(pages, Math::max);
+    }
+
+    static void pageDone() {
+        JobProgress p = CURRENT.get();
+        if (p != null) p.pagesDone.incrementAndGet();
+    }
+}
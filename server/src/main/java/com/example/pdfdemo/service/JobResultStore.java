@@ -0,0 +1,194 @@
+package com.example.pdfdemo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步任务结果的暂存区：小结果留在内存，超过单条阈值或内存总额度时落盘到临时目录。
+ * - 写入时先缓冲到内存，超过 spill-threshold 即切换为文件，不会把大 PDF 整体留在堆上；
+ * - 读取返回独立的 InputStream，可并发下载；
+ * - 过期由 EditJobService 统一调度 remove，这里只负责存储与释放。
+ */
+@Component
+public class JobResultStore {
+
+    /** 一条已保存的结果 */
+    public static class Entry {
+        public final String contentType;
+        public final Map<String, String> headers;
+        public final long size;
+        private final byte[] data;
+        private final Path file;
+
+        Entry(String contentType, Map<String, String> headers, long size, byte[] data, Path file) {
+            this.contentType = contentType;
+            this.headers = headers;
+            this.size = size;
+            this.data = data;
+            this.file = file;
+        }
+
+        public boolean isSpilled() {
+            return file != null;
+        }
+
+        public InputStream open() throws IOException {
+            return data != null ? new ByteArrayInputStream(data) : Files.newInputStream(file);
+        }
+    }
+
+    /** 结果体写出方式（如 PdfOutput::writeTo） */
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final Path dir;
+    private final long spillThreshold;
+    private final long memoryLimit;
+    private final AtomicLong memoryUsed = new AtomicLong();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public JobResultStore(@Value("${pdf.jobs.dir:}") String dir,
+                          @Value("${pdf.jobs.spill-threshold:1MB}") DataSize spillThreshold,
+                          @Value("${pdf.jobs.memory-limit:32MB}") DataSize memoryLimit) throws IOException {
+        this.dir = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "pdfbox-demo-jobs")
+                : Paths.get(dir);
+        this.spillThreshold = Math.max(0, spillThreshold.toBytes());
+        this.memoryLimit = Math.max(0, memoryLimit.toBytes());
+        Files.createDirectories(this.dir);
+    }
+
+    /** 写入结果；同一 id 重复写入会替换并释放旧结果 */
+    public Entry put(String id, String contentType, Map<String, String> headers, Body body) throws IOException {
+        SpillingOutputStream out = new SpillingOutputStream(dir.resolve(id + ".bin"));
+        try (out) {
+            body.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        Map<String, String> copy = headers == null || headers.isEmpty()
+                ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        Entry entry = new Entry(contentType, copy, out.size, out.memory(), out.file());
+        release(entries.put(id, entry));
+        return entry;
+    }
+
+    public Entry get(String id) {
+        return entries.get(id);
+    }
+
+    public void remove(String id) {
+        release(entries.remove(id));
+    }
+
+    /** 当前留在内存中的结果字节数 */
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    @PreDestroy
+    public void clear() {
+        for (String id : entries.keySet()) remove(id);
+    }
+
+    private void release(Entry entry) {
+        if (entry == null) return;
+        if (entry.data != null) {
+            memoryUsed.addAndGet(-entry.data.length);
+        } else {
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException ignored) {
+                // 临时目录中的残留文件不影响正确性
+            }
+        }
+    }
+
+    /** 先写内存，超过单条阈值或总额度时把已写内容转存到文件并继续写文件 */
+    private final class SpillingOutputStream extends OutputStream {
+        private final Path target;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        private OutputStream fileOut;
+        private long reserved;
+        long size;
+
+        SpillingOutputStream(Path target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fileOut == null && !reserve(len)) spill();
+            if (fileOut != null) fileOut.write(b, off, len); else buffer.write(b, off, len);
+            size += len;
+        }
+
+        private boolean reserve(int len) {
+            if (size + len > spillThreshold) return false;
+            long used = memoryUsed.addAndGet(len);
+            if (used > memoryLimit) {
+                memoryUsed.addAndGet(-len);
+                return false;
+            }
+            reserved += len;
+            return true;
+        }
+
+        private void spill() throws IOException {
+            fileOut = new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024);
+            buffer.writeTo(fileOut);
+            buffer = null;
+            memoryUsed.addAndGet(-reserved);
+            reserved = 0;
+        }
+
+        byte[] memory() {
+            return buffer == null ? null : buffer.toByteArray();
+        }
+
+        Path file() {
+            return buffer == null ? target : null;
+        }
+
+        void discard() {
+            memoryUsed.addAndGet(-reserved);
+            reserved = 0;
+            buffer = null;
+            try {
+                Files.deleteIfExists(target);
+            } catch (IOException ignored) {
+                // 同上
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) fileOut.close();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 一次遍历内容流，构建 DocumentLayout（字形/词/行/块）。
+ * 每页在 endPage 时完成词、行、块的聚合；支持 setStartPage/setEndPage 只处理部分页面，
+ * 此时只访问范围内的页（不遍历整棵页树），耗时与范围大小相关而与文档页数无关。
+ * 设置 PageListener 后每页完成即交给它，不累积到模型中（内存只保留当前页）。
+ */
+public class LayoutExtractor extends PDFTextStripper {
+
+    /** 一页聚合完成（字形仍持有文档的字体） */
+    @FunctionalInterface
+    public interface PageListener {
+        void page(DocumentLayout.Page page) throws IOException;
+    }
+
+    private DocumentLayout layout;
+    private DocumentLayout.Page current;
+    // 只处理部分页面时，getCurrentPageNo() 相对于范围首页
+    private int pageOffset;
+    private PageListener pageListener;
+    // 本次抽取的文档的字体度量，随 extract 结束丢弃
+    private FontMetrics.Cache fontMetrics;
+
+    public LayoutExtractor() throws IOException {
+        // 确保逐页按位置排序处理
+        setSortByPosition(true);
+    }
+
+    public void setPageListener(PageListener pageListener) {
+        this.pageListener = pageListener;
+    }
+
+    public DocumentLayout extract(PDDocument document) throws IOException {
+        layout = new DocumentLayout();
+        layout.setPageCount(document.getNumberOfPages());
+        current = null;
+        fontMetrics = new FontMetrics.Cache();
+        try {
+            super.writeText(document, new java.io.OutputStreamWriter(java.io.OutputStream.nullOutputStream()));
+        } finally {
+            fontMetrics = null;
+        }
+        DocumentLayout result = layout;
+        layout = null;
+        return result;
+    }
+
+    /**
+     * PDFTextStripper 会迭代整棵页树（迭代器先枚举全部页），再逐页判断是否在范围内；
+     * 这里按下标只取范围内的页交给它处理，页号以 pageOffset 还原为绝对页号。
+     * 没有 /Contents 的页它不调用 processPage，这里在迭代到该页时补一个无文本的空页，
+     * 使模型中第 i 个页仍是第 i 页。
+     */
+    @Override
+    protected void processPages(PDPageTree pages) throws IOException {
+        int count = pages.getCount();
+        int first = Math.max(1, getStartPage());
+        int last = Math.min(count, getEndPage());
+        if (first > last) return;
+        Iterator<PDPage> source;
+        if (first == 1 && last == count) {
+            source = pages.iterator();
+        } else {
+            List<PDPage> range = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) range.add(pages.get(i - 1));
+            source = range.iterator();
+        }
+        int startPage = getStartPage();
+        int endPage = getEndPage();
+        setStartPage(1);
+        setEndPage(last - first + 1);
+        pageOffset = first - 1;
+        try {
+            super.processPages(new PDPageTree() {
+                @Override
+                public Iterator<PDPage> iterator() {
+                    return new Iterator<>() {
+                        private int pageIndex = pageOffset;
+
+                        @Override
+                        public boolean hasNext() {
+                            return source.hasNext();
+                        }
+
+                        @Override
+                        public PDPage next() {
+                            PDPage page = source.next();
+                            if (!page.hasContents()) {
+                                try {
+                                    finish(newPage(page, pageIndex));
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }
+                            pageIndex++;
+                            return page;
+                        }
+                    };
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            setStartPage(startPage);
+            setEndPage(endPage);
+            pageOffset = 0;
+        }
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        super.startPage(page);
+        current = newPage(page, pageOffset + getCurrentPageNo() - 1);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        if (current != null) {
+            for (int i = 0; i < current.segments.size(); i++) {
+                DocumentLayout.buildWords(current, i);
+            }
+            DocumentLayout.buildLines(current);
+            DocumentLayout.buildBlocks(current);
+            DocumentLayout.Page done = current;
+            current = null;
+            finish(done);
+        }
+        super.endPage(page);
+    }
+
+    private static DocumentLayout.Page newPage(PDPage page, int pageIndex) {
+        PDRectangle mediaBox = page.getMediaBox();
+        DocumentLayout.Page p = new DocumentLayout.Page();
+        p.pageIndex = pageIndex;
+        p.width = mediaBox.getWidth();
+        p.height = mediaBox.getHeight();
+        return p;
+    }
+
+    /** 一页完成：交给监听器或加入模型 */
+    private void finish(DocumentLayout.Page done) throws IOException {
+        if (pageListener != null) {
+            pageListener.page(done);
+        } else {
+            layout.addPage(done);
+        }
+        JobProgress.pageDone();
+    }
+
+    @Override
+    protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
+        if (current == null || textPositions == null || textPositions.isEmpty()) return;
+
+        DocumentLayout.Segment s = new DocumentLayout.Segment();
+        s.text = string;
+        s.glyphs = new DocumentLayout.Glyph[textPositions.size()];
+        s.minX = Float.MAX_VALUE;
+        s.maxX = -Float.MAX_VALUE;
+        FontMetrics metrics = null;
+        for (int i = 0; i < s.glyphs.length; i++) {
+            TextPosition tp = textPositions.get(i);
+            DocumentLayout.Glyph g = new DocumentLayout.Glyph();
+            g.unicode = tp.getUnicode();
+            g.x = tp.getXDirAdj();
+            g.y = tp.getYDirAdj();
+            g.width = tp.getWidthDirAdj();
+            g.height = tp.getHeightDir();
+            g.tx = tp.getTextMatrix().getTranslateX();
+            g.baseline = tp.getTextMatrix().getTranslateY();
+            g.fontSizeInPt = tp.getFontSizeInPt();
+            g.font = tp.getFont();
+            // 上升/下降距：优先字体描述符，其次字高 / 0.2*字号兜底
+            float fs = g.fontSizeInPt;
+            g.ascent = g.height;
+            g.descent = 0.2f * fs;
+            if (g.font != null) {
+                // 一段内通常只有一种字体，沿用上一个字形的度量
+                if (metrics == null || metrics.font() != g.font) metrics = fontMetrics.of(g.font);
+                if (metrics.hasDescriptor) {
+                    g.ascent = Math.max(g.ascent, metrics.ascent / 1000f * fs);
+                    g.descent = Math.max(g.descent, Math.abs(metrics.descent / 1000f * fs));
+                }
+            }
+            if (g.x < s.minX) s.minX = g.x;
+            if (g.x + g.width > s.maxX) s.maxX = g.x + g.width;
+            if (g.ascent > s.ascent) s.ascent = g.ascent;
+            if (g.descent > s.descent) s.descent = g.descent;
+            s.glyphs[i] = g;
+        }
+        s.spaceWidth = spaceWidth(s.glyphs[0], s.glyphs[0].font == null ? null : fontMetrics.of(s.glyphs[0].font));
+        current.segments.add(s);
+    }
+
+    /** 估计空白宽度（优先字体的 spaceWidth，其次 0.5*fontSize） */
+    private static float spaceWidth(DocumentLayout.Glyph g, FontMetrics metrics) {
+        float spaceWidth = 0.5f * g.fontSizeInPt;
+        if (metrics != null && metrics.spaceWidth > 0) {
+            spaceWidth = Math.max(spaceWidth, metrics.spaceWidth / 1000f * g.fontSizeInPt);
+        }
+        return spaceWidth;
+    }
+}
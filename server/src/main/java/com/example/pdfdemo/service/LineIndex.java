@@ -0,0 +1,101 @@
+package com.example.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按页的行基线索引：回答“某页上基线与 y 相差小于 tolerance 的第一行（按原顺序）”。
+ * - 每页行按基线升序排列，二分定位候选区间；
+ * - 区间内取原顺序最小者用稀疏表做区间最小值查询，
+ * 单次查询 O(log n)，与线性扫描 lines 的结果完全一致（同一基线上有大量内容块时也不退化）。
+ * 构建后只读，可在线程间共享。
+ */
+public final class LineIndex {
+
+    private static final class PageIndex {
+        final float[] baselines;   // 升序
+        final int[][] minOrder;    // 稀疏表：minOrder[k][i] = order[i .. i + 2^k) 的最小值
+
+        PageIndex(float[] baselines, int[] order) {
+            this.baselines = baselines;
+            int n = order.length;
+            int levels = 1;
+            while ((1 << levels) <= n) levels++;
+            minOrder = new int[levels][];
+            minOrder[0] = order;
+            for (int k = 1; k < levels; k++) {
+                int len = n - (1 << k) + 1;
+                int[] prev = minOrder[k - 1];
+                int[] cur = new int[Math.max(0, len)];
+                int half = 1 << (k - 1);
+                for (int i = 0; i < len; i++) {
+                    cur[i] = Math.min(prev[i], prev[i + half]);
+                }
+                minOrder[k] = cur;
+            }
+        }
+
+        /** [from, to) 内 order 的最小值 */
+        int rangeMin(int from, int to) {
+            int k = 31 - Integer.numberOfLeadingZeros(to - from);
+            return Math.min(minOrder[k][from], minOrder[k][to - (1 << k)]);
+        }
+    }
+
+    private final List<TextSearcher.LineInfo> lines;
+    private final Map<Integer, PageIndex> pages = new HashMap<>();
+
+    public LineIndex(List<TextSearcher.LineInfo> lines) {
+        this.lines = lines;
+        Map<Integer, List<Integer>> byPage = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (Float.isNaN(lines.get(i).yBaseline)) continue; // 永远不满足基线判定
+            byPage.computeIfAbsent(lines.get(i).pageIndex, k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> e : byPage.entrySet()) {
+            List<Integer> idx = e.getValue();
+            idx.sort((a, b) -> Float.compare(lines.get(a).yBaseline, lines.get(b).yBaseline));
+            float[] baselines = new float[idx.size()];
+            int[] order = new int[idx.size()];
+            for (int i = 0; i < idx.size(); i++) {
+                order[i] = idx.get(i);
+                baselines[i] = lines.get(order[i]).yBaseline;
+            }
+            pages.put(e.getKey(), new PageIndex(baselines, order));
+        }
+    }
+
+    /** 同页且 |yBaseline - y| < tolerance 的第一行（原顺序），没有则返回 null */
+    public TextSearcher.LineInfo findByBaseline(int pageIndex, float y, float tolerance) {
+        PageIndex page = pages.get(pageIndex);
+        if (page == null || Float.isNaN(y)) return null;
+        // 与线性扫描使用同一判定 |b - y| < tolerance；基线有序时满足条件的位置连续
+        float[] b = page.baselines;
+        int from = firstNotBelow(b, y, tolerance);
+        int to = firstAbove(b, y, tolerance);
+        if (from >= to) return null;
+        return lines.get(page.rangeMin(from, to));
+    }
+
+    /** 第一个不在“下方超出容差”区域的位置 */
+    private static int firstNotBelow(float[] a, float y, float tolerance) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < y && Math.abs(a[mid] - y) >= tolerance) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** 第一个处于“上方超出容差”区域的位置 */
+    private static int firstAbove(float[] a, float y, float tolerance) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] > y && Math.abs(a[mid] - y) >= tolerance) hi = mid; else lo = mid + 1;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 以内存映射读取文件的 PDFBox 输入源：解析器的随机访问直接落在页缓存上，
+ * 不经过 RandomAccessFile 的 read 系统调用与 Java 侧的页缓冲。
+ * - 文件按 1GB 分段映射（单个 MappedByteBuffer 最大 2GB）；
+ * - 映射在 GC 回收缓冲区时才解除，因此只能用于不会被原地截断/改写的文件
+ *   （示例文件与文档库的 blob 都以“写临时文件再改名”替换，已打开的旧文件保持不变）。
+ */
+final class MappedRandomAccessRead implements RandomAccessRead {
+
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final ByteBuffer[] chunks;
+    private final long length;
+    private long position;
+    private boolean closed;
+
+    private MappedRandomAccessRead(ByteBuffer[] chunks, long length) {
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+    static MappedRandomAccessRead open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, length - offset));
+            }
+            // 映射建立后即可关闭通道，映射本身保持有效
+            return new MappedRandomAccessRead(chunks, length);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length) return -1;
+        byte b = chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+        position++;
+        return b & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (len == 0) return 0;
+        if (position >= length) return -1;
+        int total = (int) Math.min(len, length - position);
+        int done = 0;
+        while (done < total) {
+            ByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+            int index = (int) (position & CHUNK_MASK);
+            int n = Math.min(total - done, chunk.limit() - index);
+            chunk.get(index, b, off + done, n);
+            done += n;
+            position += n;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        checkClosed();
+        if (pos < 0) throw new IOException("Invalid position " + pos);
+        position = pos;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int b = read();
+        if (b != -1) position--;
+        return b;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int count) throws IOException {
+        byte[] b = new byte[count];
+        int off = 0;
+        while (off < count) {
+            int n = read(b, off, count - off);
+            if (n < 0) throw new EOFException();
+            off += n;
+        }
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(Math.max(0, length - position), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) throw new IOException("RandomAccessRead already closed");
+    }
+}
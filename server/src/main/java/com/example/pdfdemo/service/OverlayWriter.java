@@ -0,0 +1,139 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.util.Matrix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 覆盖绘制的按页批量写出：先登记每页的白底遮盖矩形与重绘文本，write 时每页只追加一个内容流
+ * （PDPageContentStream 以 APPEND + resetContext 打开，每打开一次就给页面多包一层 q/Q 并多一个流对象）。
+ * - 同一行带（底边与高度相同）上相交或相接的矩形合并为一个，全部矩形一次填充；
+ * - 文本在同一个 BT/ET 内以文字矩阵定位，字体或字号不变时不重复设置；
+ * - 所有遮盖先于文本绘制：后登记的遮盖不会盖住先前写入的新文本。
+ * 非线程安全，一次编辑一个实例。
+ */
+final class OverlayWriter {
+
+    /** 视为同一行带、可以合并的坐标误差（pt） */
+    private static final float EPSILON = 0.01f;
+
+    static final class Rect {
+        float x, y, width, height;
+
+        Rect(float x, float y, float width, float height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final class Text {
+        final PDFont font;
+        final float fontSize;
+        final float x, y;
+        final String text;
+
+        Text(PDFont font, float fontSize, float x, float y, String text) {
+            this.font = font;
+            this.fontSize = fontSize;
+            this.x = x;
+            this.y = y;
+            this.text = text;
+        }
+    }
+
+    private static final class PageOverlay {
+        final List<Rect> covers = new ArrayList<>();
+        final List<Text> texts = new ArrayList<>();
+    }
+
+    private final Map<Integer, PageOverlay> pages = new TreeMap<>();
+
+    /** 登记一块白底遮盖（左下角 x, y） */
+    void cover(int pageIndex, float x, float y, float width, float height) {
+        page(pageIndex).covers.add(new Rect(x, y, width, height));
+    }
+
+    /** 登记一段文本，基线起点为 (x, y) */
+    void text(int pageIndex, PDFont font, float fontSize, float x, float y, String text) {
+        page(pageIndex).texts.add(new Text(font, fontSize, x, y, text));
+    }
+
+    Set<Integer> pages() {
+        return pages.keySet();
+    }
+
+    /** 每页一个追加内容流写出已登记的遮盖与文本，之后清空 */
+    void write(PDDocument document) throws IOException {
+        for (Map.Entry<Integer, PageOverlay> e : pages.entrySet()) {
+            PageOverlay overlay = e.getValue();
+            try (PDPageContentStream cs = new PDPageContentStream(document, document.getPage(e.getKey()),
+                    PDPageContentStream.AppendMode.APPEND, true, true)) {
+                List<Rect> covers = merge(overlay.covers);
+                if (!covers.isEmpty()) {
+                    for (Rect r : covers) {
+                        cs.addRect(r.x, r.y, r.width, r.height);
+                    }
+                    cs.setNonStrokingColor(java.awt.Color.WHITE);
+                    cs.fill();
+                }
+                if (!overlay.texts.isEmpty()) {
+                    cs.beginText();
+                    cs.setNonStrokingColor(java.awt.Color.BLACK);
+                    PDFont font = null;
+                    float fontSize = Float.NaN;
+                    for (Text t : overlay.texts) {
+                        if (t.font != font || t.fontSize != fontSize) {
+                            font = t.font;
+                            fontSize = t.fontSize;
+                            cs.setFont(font, fontSize);
+                        }
+                        cs.setTextMatrix(Matrix.getTranslateInstance(t.x, t.y));
+                        cs.showText(t.text);
+                    }
+                    cs.endText();
+                }
+            }
+        }
+        pages.clear();
+    }
+
+    /**
+     * 合并同一行带上相交或相接的矩形（行带内按 x 排序后一次扫描）；
+     * 不同行带的矩形即使相交也保持原样，避免合并成的外包矩形遮住两行之间的其他内容。
+     */
+    static List<Rect> merge(List<Rect> covers) {
+        List<Rect> sorted = new ArrayList<>(covers);
+        sorted.sort(Comparator.<Rect>comparingDouble(r -> r.y)
+                .thenComparingDouble(r -> r.height)
+                .thenComparingDouble(r -> r.x));
+        List<Rect> merged = new ArrayList<>(sorted.size());
+        Rect current = null;
+        for (Rect r : sorted) {
+            if (current != null
+                    && Math.abs(r.y - current.y) <= EPSILON
+                    && Math.abs(r.height - current.height) <= EPSILON
+                    && r.x <= current.x + current.width + EPSILON) {
+                current.width = Math.max(current.width, r.x + r.width - current.x);
+                continue;
+            }
+            current = new Rect(r.x, r.y, r.width, r.height);
+            merged.add(current);
+        }
+        return merged;
+    }
+
+    private PageOverlay page(int pageIndex) {
+        return pages.computeIfAbsent(pageIndex, k -> new PageOverlay());
+    }
+}
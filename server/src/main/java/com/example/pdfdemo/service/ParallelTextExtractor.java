@@ -0,0 +1,319 @@
+package com.example.pdfdemo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按页分块的并行文本抽取：
+ * - 页范围按 chunkPages 切块，每块由独立线程加载自己的 PDDocument（PDFBox 对象非线程安全），
+ *   通过 setStartPage/setEndPage 只处理本块页面；
+ * - 各块的 DocumentLayout 按页序拼接，与单线程整本抽取结果一致（抽取不跨页保存状态）；
+ * - 页数不超过一个块或 workers<=1 时直接在调用方文档上顺序执行；
+ *   各块文档的加载计入 DocumentLoader 的内存预算，预算余量不足以同时加载全部块时同样退化为顺序执行。
+ */
+@Component
+public class ParallelTextExtractor {
+
+    /** 一次搜索的完整结果：匹配与行（字体已绑定到调用方文档）以及底层版式模型 */
+    public static class SearchResult {
+        public final List<TextSearcher.Match> matches = new ArrayList<>();
+        public final List<TextSearcher.LineInfo> lines = new ArrayList<>();
+        public DocumentLayout layout;
+    }
+
+    private final DocumentLoader loader;
+    private final int workers;
+    private final int chunkPages;
+    private final ExecutorService executor;
+
+    public ParallelTextExtractor(DocumentLoader loader,
+                                 @Value("${pdf.extract.workers:0}") int workers,
+                                 @Value("${pdf.extract.chunk-pages:32}") int chunkPages) {
+        this.loader = loader;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.chunkPages = Math.max(1, chunkPages);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "pdf-extract-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 在 document 上搜索；并行时由 source 重新加载各块文档，结果中的字体会重新绑定到 document 的页面资源，
+     * 可直接用于在 document 上绘制。
+     */
+    public SearchResult search(PDDocument document, Path source, TextMatcher matcher) throws IOException {
+        return search(extractBound(document, source), matcher);
+    }
+
+    /** 在已有的版式模型上搜索（字体是否可用于绘制取决于模型来源） */
+    public static SearchResult search(DocumentLayout layout, TextMatcher matcher) {
+        SearchResult result = new SearchResult();
+        result.layout = layout;
+        result.matches.addAll(layout.match(matcher));
+        result.lines.addAll(layout.lineInfos());
+        return result;
+    }
+
+    /** 抽取 document 的版式模型，字形上的字体都属于 document（并行抽取时按同页同名字体重新绑定）。 */
+    public DocumentLayout extractBound(PDDocument document, Path source) throws IOException {
+        DocumentLayout layout = extractChunks(source, document.getNumberOfPages());
+        if (layout == null) return new LayoutExtractor().extract(document);
+        rebindFonts(document, layout);
+        return layout;
+    }
+
+    /**
+     * 只抽取 pages（0-based）中的页，其余页以无文本的空页占位，页序与下标同整本抽取；字体属于 document。
+     * 用于索引已排除其它页可能命中的场景（连续页合并为一次抽取）。
+     */
+    public DocumentLayout extractPages(PDDocument document, BitSet pages) throws IOException {
+        DocumentLayout layout = new DocumentLayout();
+        int pageCount = document.getNumberOfPages();
+        layout.setPageCount(pageCount);
+        JobProgress.pagesTotal(Math.min(pages.cardinality(), pageCount));
+        int p = 0;
+        while (p < pageCount) {
+            if (!pages.get(p)) {
+                DocumentLayout.Page empty = new DocumentLayout.Page();
+                PDRectangle mediaBox = document.getPage(p).getMediaBox();
+                empty.pageIndex = p;
+                empty.width = mediaBox.getWidth();
+                empty.height = mediaBox.getHeight();
+                layout.addPage(empty);
+                p++;
+                continue;
+            }
+            int end = Math.min(pages.nextClearBit(p), pageCount);
+            layout.addPages(extractRange(document, p + 1, end));
+            p = end;
+        }
+        return layout;
+    }
+
+    /** 文档一段连续页的版式模型（pageIndex 为绝对页号）及文档总页数 */
+    public static class PageSlice {
+        public final int pageCount;
+        public final DocumentLayout layout;
+
+        PageSlice(int pageCount, DocumentLayout layout) {
+            this.pageCount = pageCount;
+            this.layout = layout;
+        }
+    }
+
+    /**
+     * 只抽取 source 的第 from..to 页（0-based，含两端，超出文档的部分截掉），其余页不解析内容流；
+     * 调用方负责 detach。
+     */
+    public PageSlice extractRange(Path source, int from, int to) throws IOException {
+        try (PDDocument document = loader.load(source)) {
+            int pageCount = document.getNumberOfPages();
+            int last = Math.min(to, pageCount - 1);
+            if (from > last) return new PageSlice(pageCount, new DocumentLayout());
+            JobProgress.pagesTotal(last - from + 1);
+            return new PageSlice(pageCount, extractRange(document, from + 1, last + 1));
+        }
+    }
+
+    /** 文档页数：只解析文档结构，不抽取文字 */
+    public int pageCount(Path source) throws IOException {
+        try (PDDocument document = loader.load(source)) {
+            return document.getNumberOfPages();
+        }
+    }
+
+    /** 抽取 document 的版式模型；并行时由 source 重新加载各块文档，按页序拼接。 */
+    public DocumentLayout extract(PDDocument document, Path source) throws IOException {
+        DocumentLayout layout = extractChunks(source, document.getNumberOfPages());
+        return layout != null ? layout : new LayoutExtractor().extract(document);
+    }
+
+    /** 在文件上抽取版式模型（供缓存使用，调用方负责 detach）。 */
+    public DocumentLayout extract(Path source) throws IOException {
+        int pageCount;
+        List<DocumentLoader.Lease> leases;
+        try (PDDocument document = loader.load(source)) {
+            pageCount = document.getNumberOfPages();
+            JobProgress.pagesTotal(pageCount);
+            // 分块预留在整本文档仍打开时取得，之后整本文档关闭归还自己的预留
+            leases = isParallel(pageCount) ? admitChunks(source, pageCount) : null;
+            if (leases == null) {
+                return new LayoutExtractor().extract(document);
+            }
+        }
+        return merge(runChunks(source, pageCount, leases, ParallelTextExtractor::extractRange));
+    }
+
+    private boolean isParallel(int pageCount) {
+        return workers > 1 && pageCount > chunkPages;
+    }
+
+    /** 并行抽取；不适合并行或内存预算不足以同时加载各块时返回 null，由调用方在已有文档上顺序抽取 */
+    private DocumentLayout extractChunks(Path source, int pageCount) throws IOException {
+        if (source == null || !isParallel(pageCount)) return null;
+        List<DocumentLoader.Lease> leases = admitChunks(source, pageCount);
+        if (leases == null) return null;
+        return merge(runChunks(source, pageCount, leases, ParallelTextExtractor::extractRange));
+    }
+
+    /** 为每个块的文档取得预算预留（不排队）；任一块取不到则全部归还并返回 null */
+    private List<DocumentLoader.Lease> admitChunks(Path source, int pageCount) throws IOException {
+        long size = Files.size(source);
+        List<DocumentLoader.Lease> leases = new ArrayList<>();
+        for (int from = 1; from <= pageCount; from += chunkPages) {
+            DocumentLoader.Lease lease = loader.tryAdmit(size);
+            if (lease == null) {
+                leases.forEach(DocumentLoader.Lease::close);
+                return null;
+            }
+            leases.add(lease);
+        }
+        return leases;
+    }
+
+    private static DocumentLayout extractRange(PDDocument document, int from, int to) throws IOException {
+        LayoutExtractor extractor = new LayoutExtractor();
+        extractor.setStartPage(from);
+        extractor.setEndPage(to);
+        return extractor.extract(document);
+    }
+
+    private static DocumentLayout merge(List<DocumentLayout> parts) {
+        DocumentLayout merged = new DocumentLayout();
+        for (DocumentLayout part : parts) {
+            merged.addPages(part);
+        }
+        return merged;
+    }
+
+    private interface ChunkTask<T> {
+        T run(PDDocument document, int fromPage, int toPage) throws IOException;
+    }
+
+    private <T> List<T> runChunks(Path source, int pageCount, List<DocumentLoader.Lease> leases,
+                                  ChunkTask<T> task) throws IOException {
+        List<Future<T>> futures = new ArrayList<>();
+        // 工作线程上的分配计入发起方当前的指标阶段，逐页进度计入发起方的任务
+        PdfMetrics.Phase phase = PdfMetrics.currentPhase();
+        JobProgress progress = JobProgress.current();
+        try {
+            int chunk = 0;
+            for (int from = 1; from <= pageCount; from += chunkPages) {
+                final int start = from;
+                final int end = Math.min(pageCount, from + chunkPages - 1);
+                final DocumentLoader.Lease lease = leases.get(chunk++);
+                futures.add(executor.submit(() -> {
+                    long allocated = PdfMetrics.threadAllocatedBytes();
+                    JobProgress previous = JobProgress.bind(progress);
+                    try (PDDocument doc = loader.load(source, lease)) {
+                        return task.run(doc, start, end);
+                    } finally {
+                        JobProgress.restore(previous);
+                        if (phase != null) phase.addAllocated(PdfMetrics.threadAllocatedBytes() - allocated);
+                    }
+                }));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            try {
+                for (Future<T> f : futures) {
+                    results.add(f.get());
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("text extraction interrupted", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException("text extraction failed", cause);
+            }
+            return results;
+        } finally {
+            // 正常情况下预留已随各块文档关闭归还；被取消未执行的块在这里归还
+            leases.forEach(DocumentLoader.Lease::close);
+        }
+    }
+
+    /** 将各块文档中的 PDFont 替换为 document 同页资源中同名的字体（找不到则置空，由绘制端回退）。 */
+    private static void rebindFonts(PDDocument document, DocumentLayout layout) throws IOException {
+        Map<Integer, Map<String, PDFont>> byPage = new HashMap<>();
+        for (DocumentLayout.Page page : layout.getPages()) {
+            // 同页字形大多共用少数几个字体对象
+            Map<PDFont, PDFont> bound = new IdentityHashMap<>();
+            for (DocumentLayout.Segment s : page.segments) {
+                for (DocumentLayout.Glyph g : s.glyphs) {
+                    if (g.font == null) continue;
+                    PDFont foreign = g.font;
+                    PDFont local = bound.get(foreign);
+                    if (local == null && !bound.containsKey(foreign)) {
+                        local = resolve(document, byPage, page.pageIndex, foreign);
+                        bound.put(foreign, local);
+                    }
+                    g.font = local;
+                }
+            }
+        }
+    }
+
+    private static PDFont resolve(PDDocument document, Map<Integer, Map<String, PDFont>> byPage,
+                                  int pageIndex, PDFont foreign) throws IOException {
+        if (foreign == null || pageIndex < 0 || pageIndex >= document.getNumberOfPages()) return null;
+        Map<String, PDFont> fonts = byPage.get(pageIndex);
+        if (fonts == null) {
+            fonts = new HashMap<>();
+            PDResources res = document.getPage(pageIndex).getResources();
+            collectFonts(res, fonts);
+            if (res != null) {
+                // 表单 XObject 内的文字使用其自身资源中的字体
+                for (COSName name : res.getXObjectNames()) {
+                    PDXObject xobj = res.getXObject(name);
+                    if (xobj instanceof PDFormXObject) {
+                        collectFonts(((PDFormXObject) xobj).getResources(), fonts);
+                    }
+                }
+            }
+            byPage.put(pageIndex, fonts);
+        }
+        return foreign.getName() == null ? null : fonts.get(foreign.getName());
+    }
+
+    private static void collectFonts(PDResources res, Map<String, PDFont> fonts) throws IOException {
+        if (res == null) return;
+        for (COSName name : res.getFontNames()) {
+            PDFont f = res.getFont(name);
+            if (f != null && f.getName() != null) fonts.putIfAbsent(f.getName(), f);
+        }
+    }
+}
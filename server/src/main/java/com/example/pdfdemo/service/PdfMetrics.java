@@ -0,0 +1,265 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PDF 操作的分阶段指标：每个接口调用对应一个 Operation，内部按阶段（load/search/draw/save 等）计时，
+ * 阶段以 op.time("load", () -> ...) 包住要计时的代码。
+ * - Micrometer：pdf.operation / pdf.phase 计时器（按 endpoint、phase、outcome 打标签，带百分位），
+ *   pdf.pages / pdf.matches / pdf.bytes.in / pdf.bytes.out / pdf.allocated 分布统计，经 /actuator/metrics 暴露；
+ * - 结构化日志：每个操作结束时在 pdf.metrics logger 输出一行 key=value；
+ * - 分配量取各阶段所在线程的已分配字节差值（HotSpot ThreadMXBean），并行抽取的工作线程分配会计入发起阶段。
+ * 每阶段只有两次 nanoTime 与两次线程分配计数读取，开销可常开。
+ */
+@Component
+public class PdfMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger("pdf.metrics");
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+    // 当前线程正在计时的阶段，供工作线程把分配量归到发起方
+    private static final ThreadLocal<Phase> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final boolean logEnabled;
+    private final double[] percentiles;
+    private final boolean histogram;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public PdfMetrics(MeterRegistry registry,
+                      @Value("${pdf.metrics.enabled:true}") boolean enabled,
+                      @Value("${pdf.metrics.log:true}") boolean logEnabled,
+                      @Value("${pdf.metrics.percentiles:0.5,0.95,0.99}") double[] percentiles,
+                      @Value("${pdf.metrics.histogram:false}") boolean histogram) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.logEnabled = logEnabled;
+        this.percentiles = percentiles == null ? new double[0] : percentiles;
+        this.histogram = histogram;
+    }
+
+    /** 开始记录一次操作；endpoint 取接口名（如 edit-line） */
+    public Operation start(String endpoint) {
+        return enabled ? new Operation(this, endpoint) : Operation.NOOP;
+    }
+
+    /** 当前线程累计分配字节数（不支持时为 0） */
+    public static long threadAllocatedBytes() {
+        return THREADS == null ? 0L : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /** 当前线程上正在计时的阶段（没有时为 null）；跨线程任务提交前取出，在工作线程上 addAllocated。 */
+    public static Phase currentPhase() {
+        return CURRENT.get();
+    }
+
+    /** 阶段内执行并返回结果的代码 */
+    @FunctionalInterface
+    public interface TimedCall<T> {
+        T call() throws IOException;
+    }
+
+    /** 阶段内执行、没有结果的代码 */
+    @FunctionalInterface
+    public interface TimedRun {
+        void run() throws IOException;
+    }
+
+    public static class Operation {
+
+        static final Operation NOOP = new Operation(null, "noop");
+
+        private final PdfMetrics owner;
+        private final String endpoint;
+        private final long startNanos = System.nanoTime();
+        // 阶段名 → {耗时纳秒, 分配字节}；阶段可能在不同线程先后执行（如 save 在响应写出线程）
+        private final Map<String, long[]> phases = new LinkedHashMap<>();
+        private long pages = -1;
+        private long matches = -1;
+        private long bytesIn = -1;
+        private long bytesOut = -1;
+        private String outcome = "ok";
+        private boolean finished;
+
+        Operation(PdfMetrics owner, String endpoint) {
+            this.owner = owner;
+            this.endpoint = endpoint;
+        }
+
+        /** 执行 body，耗时与分配量计入 name 阶段（body 抛出异常时同样计入） */
+        public <T> T time(String name, TimedCall<T> body) throws IOException {
+            Phase phase = owner == null ? Phase.NOOP : new Phase(this, name);
+            try {
+                return body.call();
+            } finally {
+                phase.end();
+            }
+        }
+
+        public void time(String name, TimedRun body) throws IOException {
+            time(name, () -> {
+                body.run();
+                return null;
+            });
+        }
+
+        public Operation pages(long n) { if (owner != null) pages = n; return this; }
+        public Operation matches(long n) { if (owner != null) matches = n; return this; }
+        public Operation bytesIn(long n) { if (owner != null) bytesIn = n; return this; }
+
+        public synchronized Operation addBytesOut(long n) {
+            if (owner != null) bytesOut = Math.max(0, bytesOut) + n;
+            return this;
+        }
+
+        public synchronized void fail(Throwable e) {
+            outcome = "error";
+        }
+
+        /** 结束并上报；重复调用无效 */
+        public void finish() {
+            if (owner == null) return;
+            Map<String, long[]> snapshot;
+            synchronized (this) {
+                if (finished) return;
+                finished = true;
+                snapshot = new LinkedHashMap<>(phases);
+            }
+            owner.report(this, System.nanoTime() - startNanos, snapshot);
+        }
+
+        synchronized void record(String phase, long nanos, long allocated) {
+            long[] acc = phases.computeIfAbsent(phase, k -> new long[2]);
+            acc[0] += nanos;
+            acc[1] += allocated;
+        }
+    }
+
+    /** 一个阶段的计时范围（由 Operation.time 开始与结束） */
+    public static class Phase {
+
+        static final Phase NOOP = new Phase(null, null);
+
+        private final Operation operation;
+        private final String name;
+        private final Phase previous;
+        private final long startNanos;
+        private final long startAllocated;
+        private final AtomicLong foreignAllocated = new AtomicLong();
+
+        Phase(Operation operation, String name) {
+            this.operation = operation;
+            this.name = name;
+            if (operation == null) {
+                this.previous = null;
+                this.startNanos = 0;
+                this.startAllocated = 0;
+                return;
+            }
+            this.previous = CURRENT.get();
+            CURRENT.set(this);
+            this.startNanos = System.nanoTime();
+            this.startAllocated = threadAllocatedBytes();
+        }
+
+        /** 其他线程为本阶段完成的工作所分配的字节 */
+        public void addAllocated(long bytes) {
+            if (operation != null && bytes > 0) foreignAllocated.addAndGet(bytes);
+        }
+
+        void end() {
+            if (operation == null) return;
+            long nanos = System.nanoTime() - startNanos;
+            long allocated = threadAllocatedBytes() - startAllocated + foreignAllocated.get();
+            if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+            operation.record(name, nanos, allocated);
+            operation.owner.timer("pdf.phase", operation.endpoint, name).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void report(Operation op, long totalNanos, Map<String, long[]> phases) {
+        long allocated = 0;
+        for (long[] p : phases.values()) allocated += p[1];
+        timer("pdf.operation", op.endpoint, op.outcome).record(totalNanos, TimeUnit.NANOSECONDS);
+        summary("pdf.pages", op.endpoint, null, op.pages);
+        summary("pdf.matches", op.endpoint, null, op.matches);
+        summary("pdf.bytes.in", op.endpoint, "bytes", op.bytesIn);
+        summary("pdf.bytes.out", op.endpoint, "bytes", op.bytesOut);
+        summary("pdf.allocated", op.endpoint, "bytes", THREADS == null || phases.isEmpty() ? -1 : allocated);
+
+        if (!logEnabled || !log.isInfoEnabled()) return;
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("op=").append(op.endpoint)
+                .append(" outcome=").append(op.outcome)
+                .append(" durationMs=").append(millis(totalNanos));
+        for (Map.Entry<String, long[]> e : phases.entrySet()) {
+            sb.append(' ').append(e.getKey()).append("Ms=").append(millis(e.getValue()[0]));
+        }
+        appendIfKnown(sb, "pages", op.pages);
+        appendIfKnown(sb, "matches", op.matches);
+        appendIfKnown(sb, "bytesIn", op.bytesIn);
+        appendIfKnown(sb, "bytesOut", op.bytesOut);
+        if (THREADS != null && !phases.isEmpty()) sb.append(" allocBytes=").append(allocated);
+        log.info(sb.toString());
+    }
+
+    private Timer timer(String name, String endpoint, String tagValue) {
+        String tagKey = "pdf.operation".equals(name) ? "outcome" : "phase";
+        return timers.computeIfAbsent(name + '|' + endpoint + '|' + tagValue, k -> Timer.builder(name)
+                .tag("endpoint", endpoint)
+                .tag(tagKey, tagValue)
+                .publishPercentiles(percentiles)
+                .publishPercentileHistogram(histogram)
+                .register(registry));
+    }
+
+    private void summary(String name, String endpoint, String unit, long value) {
+        if (value < 0) return; // 该操作不涉及此项
+        summaries.computeIfAbsent(name + '|' + endpoint, k -> DistributionSummary.builder(name)
+                .tag("endpoint", endpoint)
+                .baseUnit(unit)
+                .publishPercentiles(percentiles)
+                .publishPercentileHistogram(histogram)
+                .register(registry)).record(value);
+    }
+
+    private static void appendIfKnown(StringBuilder sb, String key, long value) {
+        if (value >= 0) sb.append(' ').append(key).append('=').append(value);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) bean;
+                if (hs.isThreadAllocatedMemorySupported()) {
+                    if (!hs.isThreadAllocatedMemoryEnabled()) hs.setThreadAllocatedMemoryEnabled(true);
+                    return hs;
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // 非 HotSpot 或被安全策略禁止：不统计分配量
+        }
+        return null;
+    }
+}
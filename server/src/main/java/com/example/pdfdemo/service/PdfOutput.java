@@ -0,0 +1,246 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编辑完成、尚未序列化的结果：由调用方 writeTo 直接写到目标流（如 servlet 输出流）后 close，
+ * 整个过程不在堆上缓存完整输出。
+ * - document 为 null 表示无修改，按输出方式原样输出源文件（或空增量）；
+ * - stored 不为 null 时为已保存的输出字节（编辑结果缓存），原样写出；
+ * - FULL 走 document.save，INCREMENTAL/DELTA 走 saveIncremental（只写被编辑页面相关对象）。
+ */
+public class PdfOutput implements Closeable {
+
+    private final PDDocument document;
+    private final Path source;
+    private final long baseLength;
+    private final Set<Integer> touchedPages;
+    private final PdfService.OutputMode mode;
+    private final List<PdfService.RuleReport> report;
+    private final boolean ownsDocument;
+    private final InputStream stored;
+    private PdfMetrics.Operation metrics = PdfMetrics.Operation.NOOP;
+
+    private PdfOutput(PDDocument document, Path source, long baseLength, Set<Integer> touchedPages,
+                      PdfService.OutputMode mode, List<PdfService.RuleReport> report) {
+        this(document, source, baseLength, touchedPages, mode, report, true);
+    }
+
+    private PdfOutput(PDDocument document, Path source, long baseLength, Set<Integer> touchedPages,
+                      PdfService.OutputMode mode, List<PdfService.RuleReport> report, boolean ownsDocument) {
+        this(document, source, baseLength, touchedPages, mode, report, ownsDocument, null);
+    }
+
+    private PdfOutput(PDDocument document, Path source, long baseLength, Set<Integer> touchedPages,
+                      PdfService.OutputMode mode, List<PdfService.RuleReport> report, boolean ownsDocument,
+                      InputStream stored) {
+        this.ownsDocument = ownsDocument;
+        this.stored = stored;
+        this.document = document;
+        this.source = source;
+        this.baseLength = baseLength;
+        this.touchedPages = touchedPages;
+        this.mode = mode;
+        this.report = report;
+    }
+
+    /** 未修改：输出源文件本身 */
+    public static PdfOutput unchanged(Path source, PdfService.OutputMode mode) throws IOException {
+        return new PdfOutput(null, source, Files.size(source), Collections.emptySet(), mode, Collections.emptyList());
+    }
+
+    /** 新建文档（无源文件），只能完整输出 */
+    public static PdfOutput created(PDDocument document) {
+        return new PdfOutput(document, null, 0, Collections.emptySet(), PdfService.OutputMode.FULL,
+                Collections.emptyList());
+    }
+
+    /**
+     * 从 source 加载并编辑过的文档；baseLength 为加载时的源文件长度（增量片段的起点）。
+     * 无任何修改时直接关闭文档，退化为 unchanged。
+     */
+    public static PdfOutput edited(PDDocument document, Path source, long baseLength, Set<Integer> touchedPages,
+                                   PdfService.OutputMode mode, List<PdfService.RuleReport> report) throws IOException {
+        if (touchedPages.isEmpty() && mode != PdfService.OutputMode.FULL) {
+            document.close();
+            return new PdfOutput(null, source, baseLength, touchedPages, mode, report);
+        }
+        return new PdfOutput(document, source, baseLength, touchedPages, mode, report);
+    }
+
+    /**
+     * 借用仍在使用中的文档（如编辑会话），close 时不关闭文档；调用方负责在写出期间不并发修改它。
+     * 没有被修改的页面时等同于 unchanged。
+     */
+    public static PdfOutput borrowed(PDDocument document, Path source, long baseLength, Set<Integer> touchedPages,
+                                     PdfService.OutputMode mode) {
+        if (touchedPages.isEmpty()) {
+            return new PdfOutput(null, source, baseLength, touchedPages, mode, Collections.emptyList());
+        }
+        return new PdfOutput(document, source, baseLength, touchedPages, mode, Collections.emptyList(), false);
+    }
+
+    /** 已保存的输出（按 mode 输出过的完整字节）：原样写出，close 时关闭流；baseLength 同原输出 */
+    public static PdfOutput stored(InputStream bytes, PdfService.OutputMode mode, long baseLength) {
+        return new PdfOutput(null, null, baseLength, Collections.emptySet(), mode, Collections.emptyList(), false,
+                bytes);
+    }
+
+    /** 关联的操作指标：writeTo 计入 save 阶段与输出字节，close 时结束该操作 */
+    public PdfOutput withMetrics(PdfMetrics.Operation metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /** 源文件长度（DELTA 片段应拼接在该长度的基准文件之后） */
+    public long getBaseLength() {
+        return baseLength;
+    }
+
+    public PdfService.OutputMode getMode() {
+        return mode;
+    }
+
+    /** 批量替换的逐条规则报告（非批量时为空） */
+    public List<PdfService.RuleReport> getReport() {
+        return report;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        RevisionOutputStream target = new RevisionOutputStream(out);
+        try {
+            metrics.time("save", () -> writeRevision(target));
+        } catch (IOException | RuntimeException e) {
+            metrics.fail(e);
+            throw e;
+        } finally {
+            metrics.addBytesOut(target.written);
+        }
+    }
+
+    private void writeRevision(RevisionOutputStream out) throws IOException {
+        // PDFBox 的 COSWriter 结束时会关闭传入的流，这里屏蔽 close，由容器负责关闭响应流
+        if (stored != null) {
+            stored.transferTo(out);
+            return;
+        }
+        if (document == null) {
+            if (mode != PdfService.OutputMode.DELTA) {
+                Files.copy(source, out);
+            }
+            return;
+        }
+        if (mode == PdfService.OutputMode.FULL) {
+            document.save(out);
+            return;
+        }
+        // 增量输出的前 baseLength 字节即原文件，DELTA 模式跳过它们
+        if (mode == PdfService.OutputMode.DELTA) {
+            out.skip(baseLength);
+        }
+        document.saveIncremental(out, markTouched());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (document != null && ownsDocument) {
+                document.close();
+            }
+        } finally {
+            try {
+                if (stored != null) stored.close();
+            } finally {
+                metrics.finish();
+            }
+        }
+    }
+
+    /** 只标记被编辑的页面及其资源；新建的内容流没有对象号，会随页面一起写出 */
+    private Set<COSDictionary> markTouched() throws IOException {
+        Set<COSDictionary> objectsToWrite = new HashSet<>();
+        for (int p : touchedPages) {
+            PDPage page = document.getPage(p);
+            COSDictionary pageDict = page.getCOSObject();
+            pageDict.setNeedToBeUpdated(true);
+            objectsToWrite.add(pageDict);
+            COSBase contents = pageDict.getDictionaryObject(COSName.CONTENTS);
+            if (contents instanceof COSArray) {
+                ((COSArray) contents).setNeedToBeUpdated(true);
+            }
+            if (page.getResources() != null) {
+                COSDictionary res = page.getResources().getCOSObject();
+                res.setNeedToBeUpdated(true);
+                objectsToWrite.add(res);
+                for (COSName key : res.keySet()) {
+                    COSBase sub = res.getDictionaryObject(key);
+                    if (sub instanceof COSDictionary) {
+                        ((COSDictionary) sub).setNeedToBeUpdated(true);
+                        objectsToWrite.add((COSDictionary) sub);
+                    }
+                }
+            }
+        }
+        return objectsToWrite;
+    }
+
+    /** 丢弃前 skip 个字节、统计实际写出字节数、close 时只 flush 的包装流 */
+    private static final class RevisionOutputStream extends FilterOutputStream {
+        private long remainingSkip;
+        long written;
+
+        RevisionOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void skip(long bytes) {
+            remainingSkip += bytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (remainingSkip > 0) {
+                remainingSkip--;
+                return;
+            }
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (remainingSkip > 0) {
+                int skipped = (int) Math.min(remainingSkip, len);
+                remainingSkip -= skipped;
+                off += skipped;
+                len -= skipped;
+            }
+            if (len > 0) {
+                out.write(b, off, len);
+                written += len;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -5,30 +5,70 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 public class PdfService {
 
     private static final String EXAMPLE_FILE_NAME = "example.pdf";
+    /** 示例文件在全文索引中的文档 id */
+    public static final String SAMPLE_DOCUMENT = "example";
     private static final float DEFAULT_FONT_SIZE = 12f;
     private static final float MARGIN = 50f;
+    /** /edit 重排的行距 */
+    private static final float LEADING = 16f;
+    /** 分页请求未给出 to 时每段的页数 */
+    private static final int DEFAULT_PAGE_SPAN = 10;
+
+    private final DocumentLayoutCache layoutCache;
+    private final ParallelTextExtractor extractor;
+    private final PdfMetrics metrics;
+    private final DocumentLoader loader;
+    private final AnnotatedPdfCache annotatedCache;
+    private final TextIndex textIndex;
+    private final EditResultCache editCache;
+
+    public PdfService(DocumentLayoutCache layoutCache, ParallelTextExtractor extractor, PdfMetrics metrics,
+                      DocumentLoader loader, AnnotatedPdfCache annotatedCache, TextIndex textIndex,
+                      EditResultCache editCache) {
+        this.layoutCache = layoutCache;
+        this.extractor = extractor;
+        this.metrics = metrics;
+        this.loader = loader;
+        this.annotatedCache = annotatedCache;
+        this.textIndex = textIndex;
+        this.editCache = editCache;
+    }
 
     private Path getStorageDir() {
         return Paths.get(System.getProperty("user.dir"), "data");
     }
 
-    private Path getExamplePdfPath() {
+    Path getExamplePdfPath() {
         return getStorageDir().resolve(EXAMPLE_FILE_NAME);
     }
 
@@ -41,338 +81,1015 @@ public class PdfService {
         Path example = getExamplePdfPath();
         if (!Files.exists(example)) {
             createSamplePdf(example);
+            layoutCache.invalidate(example);
         }
+        textIndex.register(SAMPLE_DOCUMENT, example);
     }
 
     private void createSamplePdf(Path target) throws IOException {
         try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage(PDRectangle.A4);
-            document.addPage(page);
-
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.setFont(PDType1Font.HELVETICA, 16);
-                contentStream.beginText();
-                contentStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN - 20);
-                contentStream.showText("Hello world - PDFBox sample");
-                contentStream.endText();
-
-                contentStream.setFont(PDType1Font.HELVETICA, DEFAULT_FONT_SIZE);
-                contentStream.beginText();
-                contentStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN - 60);
-                contentStream.setLeading(16);
-                contentStream.showText("This is a demo PDF used for text replace.");
-                contentStream.newLine();
-                contentStream.showText("Try replacing 'world' with another word.");
-                contentStream.newLine();
-                contentStream.showText("Note: This sample uses simple reflow after replacement.");
-                contentStream.endText();
+            addSamplePage(document);
+            document.save(target.toFile());
+        }
+    }
+
+    /** 向文档追加一页示例内容（example.pdf 即由此生成；基准测试的合成语料也以此页开头） */
+    public static PDPage addSamplePage(PDDocument document) throws IOException {
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+            contentStream.setFont(PDType1Font.HELVETICA, 16);
+            contentStream.beginText();
+            contentStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN - 20);
+            contentStream.showText("Hello world - PDFBox sample");
+            contentStream.endText();
+
+            contentStream.setFont(PDType1Font.HELVETICA, DEFAULT_FONT_SIZE);
+            contentStream.beginText();
+            contentStream.newLineAtOffset(MARGIN, page.getMediaBox().getHeight() - MARGIN - 60);
+            contentStream.setLeading(16);
+            contentStream.showText("This is a demo PDF used for text replace.");
+            contentStream.newLine();
+            contentStream.showText("Try replacing 'world' with another word.");
+            contentStream.newLine();
+            contentStream.showText("Note: This sample uses simple reflow after replacement.");
+            contentStream.endText();
+        }
+        return page;
+    }
+
+    /** 示例文件本身（未修改的文件直接以资源形式输出，不读入内存） */
+    public Resource getSamplePdf() throws IOException {
+        Path example = getExamplePdfPath();
+        // 文件由容器流式输出，这里只记录输出字节
+        metrics.start("sample").addBytesOut(Files.size(example)).finish();
+        return new FileSystemResource(example);
+    }
+
+    public PdfOutput editPdfReplace(String oldText, String newText) throws IOException {
+        return instrumented("edit", op -> {
+            // 逐页抽取→流式替换→断行→排版，排满一页即开新页；全文不进内存
+            PDDocument newDoc = loader.create();
+            try (PDDocument document = load(op, getExamplePdfPath())) {
+                op.time("reflow", () -> {
+                    TextReflow reflow = new TextReflow(newDoc, PDType1Font.HELVETICA, DEFAULT_FONT_SIZE, LEADING,
+                            MARGIN, PDRectangle.A4, oldText, newText);
+                    reflow.append(document);
+                    reflow.finish();
+                });
+            } catch (IOException | RuntimeException e) {
+                newDoc.close();
+                throw e;
             }
+            return PdfOutput.created(newDoc);
+        });
+    }
 
-            document.save(target.toFile());
+    public PdfOutput editPdfReplaceInplace(String oldText, String newText, boolean ignoreCase,
+                                           OutputMode output) throws IOException {
+        return editPdfReplaceInplace(getExamplePdfPath(), SAMPLE_DOCUMENT, oldText, newText, ignoreCase, output);
+    }
+
+    /** 在 source（全文索引中的文档 id 为 document）上原位替换；示例文件与文档库共用 */
+    public PdfOutput editPdfReplaceInplace(Path source, String document, String oldText, String newText,
+                                           boolean ignoreCase, OutputMode output) throws IOException {
+        if (oldText == null || oldText.isEmpty()) {
+            return instrumented("edit-inplace", op -> PdfOutput.unchanged(source, output));
         }
+        return memoized("edit-inplace", source, output, new Object[]{oldText, newText, ignoreCase}, op -> {
+            long baseLength = Files.size(source);
+            PDDocument pdf = load(op, source);
+            try {
+                ParallelTextExtractor.SearchResult found = search(op, source, document, pdf, List.of(oldText), ignoreCase);
+                EditResult result = op.time("draw", () -> applyInplace(pdf, new FontMetrics.Cache(), found, newText));
+                return PdfOutput.edited(pdf, source, baseLength, result.touched, output, List.of());
+            } catch (IOException | RuntimeException e) {
+                pdf.close();
+                throw e;
+            }
+        });
     }
 
-    public byte[] getSamplePdf() throws IOException {
-        return Files.readAllBytes(getExamplePdfPath());
+    public PdfOutput editWholeLine(String oldText, String newText, boolean ignoreCase,
+                                   Integer pageIndexOpt, String lineTextOpt, OutputMode output) throws IOException {
+        return editWholeLine(getExamplePdfPath(), SAMPLE_DOCUMENT, oldText, newText, ignoreCase,
+                pageIndexOpt, lineTextOpt, output);
     }
 
-    public byte[] editPdfReplace(String oldText, String newText) throws IOException {
-        // 读取原文
-        String allText;
-        try (PDDocument document = PDDocument.load(getExamplePdfPath().toFile())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            allText = stripper.getText(document);
+    public PdfOutput editWholeLine(Path source, String document, String oldText, String newText, boolean ignoreCase,
+                                   Integer pageIndexOpt, String lineTextOpt, OutputMode output) throws IOException {
+        if (oldText == null || oldText.isEmpty()) {
+            return instrumented("edit-line", op -> PdfOutput.unchanged(source, output));
         }
+        // 空的 lineText 与未给出相同（都不限定行）
+        String lineText = lineTextOpt == null || lineTextOpt.isEmpty() ? null : lineTextOpt;
+        return memoized("edit-line", source, output,
+                new Object[]{oldText, newText, ignoreCase, pageIndexOpt, lineText}, op -> {
+            long baseLength = Files.size(source);
+            PDDocument pdf = load(op, source);
+            try {
+                ParallelTextExtractor.SearchResult found = search(op, source, document, pdf, List.of(oldText), ignoreCase);
+                EditResult result = op.time("draw", () -> applyLine(pdf, new FontMetrics.Cache(), found, oldText, newText,
+                        ignoreCase, pageIndexOpt, lineTextOpt));
+                return PdfOutput.edited(pdf, source, baseLength, result.touched, output, List.of());
+            } catch (IOException | RuntimeException e) {
+                pdf.close();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * 批量替换：一次加载、一次多 needle 搜索、一次保存，按规则顺序应用。
+     * - inplace 模式：同一位置被多条规则命中时，先出现的规则优先，后续重叠命中跳过；
+     * - line 模式：同一行命中的全部规则按顺序依次作用于行文本，整行只重绘一次。
+     */
+    public PdfOutput editBatch(List<ReplaceRule> rules, boolean ignoreCase, boolean wholeLine,
+                               OutputMode output) throws IOException {
+        return editBatch(getExamplePdfPath(), SAMPLE_DOCUMENT, rules, ignoreCase, wholeLine, output);
+    }
 
-        if (oldText != null && newText != null && !oldText.isEmpty()) {
-            allText = allText.replace(oldText, newText);
+    public PdfOutput editBatch(Path source, String document, List<ReplaceRule> rules, boolean ignoreCase,
+                               boolean wholeLine, OutputMode output) throws IOException {
+        return instrumented("edit-batch", op -> {
+            long baseLength = Files.size(source);
+            PDDocument pdf = load(op, source);
+            try {
+                ParallelTextExtractor.SearchResult found = search(op, source, document, pdf, needles(rules), ignoreCase);
+                EditResult result = op.time("draw", () -> applyBatch(pdf, new FontMetrics.Cache(), found, rules,
+                        ignoreCase, wholeLine));
+                return PdfOutput.edited(pdf, source, baseLength, result.touched, output, result.report);
+            } catch (IOException | RuntimeException e) {
+                pdf.close();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * 一次编辑在文档上的实际改动：被修改的页、批量报告、内容流被改写的页，
+     * 以及以覆盖方式绘制的每处新文本（编辑会话据此更新版式模型）
+     */
+    static final class EditResult {
+        final Set<Integer> touched = new TreeSet<>();
+        final Set<Integer> rewritten = new TreeSet<>();
+        final List<RuleReport> report = new ArrayList<>();
+        final List<Drawn> drawn = new ArrayList<>();
+
+        void rewrote(int pageIndex) {
+            touched.add(pageIndex);
+            rewritten.add(pageIndex);
         }
+    }
 
-        // 重新写入到新 PDF（简单重排，单页渲染）
-        try (PDDocument newDoc = new PDDocument()) {
-            PDPage page = new PDPage(PDRectangle.A4);
-            newDoc.addPage(page);
+    /** 一处覆盖重绘：原位替换时 match 非空（其后文本右移 shift），整行替换时 line 非空 */
+    static final class Drawn {
+        final TextSearcher.Match match;
+        final TextSearcher.LineInfo line;
+        final String text;
+        final float shift;
 
-            try (PDPageContentStream content = new PDPageContentStream(newDoc, page)) {
-                content.setFont(PDType1Font.HELVETICA, DEFAULT_FONT_SIZE);
-                content.beginText();
-                float startX = MARGIN;
-                float startY = page.getMediaBox().getHeight() - MARGIN;
-                content.newLineAtOffset(startX, startY);
-                content.setLeading(16);
+        Drawn(TextSearcher.Match match, TextSearcher.LineInfo line, String text, float shift) {
+            this.match = match;
+            this.line = line;
+            this.text = text;
+            this.shift = shift;
+        }
+    }
 
-                List<String> lines = wrapText(allText, PDType1Font.HELVETICA, DEFAULT_FONT_SIZE,
-                        page.getMediaBox().getWidth() - 2 * MARGIN);
-                for (String line : lines) {
-                    content.showText(line);
-                    content.newLine();
-                }
-                content.endText();
-            }
+    static List<String> needles(List<ReplaceRule> rules) {
+        List<String> needles = new ArrayList<>(rules.size());
+        for (ReplaceRule r : rules) {
+            needles.add(r.oldText == null ? "" : r.oldText);
+        }
+        return needles;
+    }
 
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                newDoc.save(baos);
-                return baos.toByteArray();
+    /**
+     * 在 document 上逐个原位替换命中（found 的版式与字体须属于 document）：
+     * 优先改写内容流中的字符串，无法改写的命中退回白底覆盖绘制；fonts 为 document 的字体度量缓存。
+     */
+    EditResult applyInplace(PDDocument document, FontMetrics.Cache fonts, ParallelTextExtractor.SearchResult found,
+                            String newText) throws IOException {
+        EditResult result = new EditResult();
+        ContentStreamRewriter rewriter = new ContentStreamRewriter(document, found.layout);
+        List<TextSearcher.Match> overlays = new ArrayList<>();
+        for (TextSearcher.Match m : found.matches) {
+            if (m.pageIndex < 0 || m.pageIndex >= document.getNumberOfPages()) continue;
+            switch (rewriteMatch(rewriter, m, newText)) {
+                case REWRITTEN: result.rewrote(m.pageIndex); break;
+                case UNSUPPORTED: overlays.add(m); break;
+                default: break;
             }
         }
+        // 先改写内容流，再追加覆盖绘制（追加会改变内容流，登记的位置随之失效）
+        rewriter.apply();
+        OverlayWriter overlay = new OverlayWriter();
+        for (TextSearcher.Match m : overlays) {
+            float shift = addInplaceOverlay(overlay, fonts, m, newText);
+            result.touched.add(m.pageIndex);
+            result.drawn.add(new Drawn(m, null, newText, shift));
+        }
+        overlay.write(document);
+        return result;
     }
 
-    public byte[] editPdfReplaceInplace(String oldText, String newText, boolean ignoreCase) throws IOException {
-        if (oldText == null || oldText.isEmpty()) {
-            return getSamplePdf();
+    /** 整行替换：对包含命中的行（可按页号、行文本过滤）做字符串替换后整行重绘 */
+    EditResult applyLine(PDDocument document, FontMetrics.Cache fonts, ParallelTextExtractor.SearchResult found,
+                         String oldText, String newText, boolean ignoreCase, Integer pageIndexOpt,
+                         String lineTextOpt) throws IOException {
+        EditResult result = new EditResult();
+        ContentStreamRewriter rewriter = new ContentStreamRewriter(document, found.layout);
+        Map<TextSearcher.LineInfo, String> overlays = new LinkedHashMap<>();
+        LineIndex lines = new LineIndex(found.lines);
+        for (TextSearcher.Match m : found.matches) {
+            // 找到包含该 match 的行（同页且 y 基线接近）
+            TextSearcher.LineInfo line = findLine(lines, m);
+            if (line == null) continue;
+            if (pageIndexOpt != null && !pageIndexOpt.equals(line.pageIndex)) continue;
+            if (lineTextOpt != null && !line.text.contains(lineTextOpt)) continue;
+
+            // 生成新行文本：用字符串替换（忽略/不忽略大小写），整行重写
+            String replaced = replaceText(line.text, oldText, newText, ignoreCase);
+            switch (rewriteLine(rewriter, line, replaced)) {
+                case REWRITTEN: result.rewrote(line.pageIndex); break;
+                case UNSUPPORTED: overlays.put(line, replaced); break;
+                default: break;
+            }
         }
+        rewriter.apply();
+        drawLineOverlays(document, fonts, overlays, result);
+        return result;
+    }
 
-        try (PDDocument document = PDDocument.load(getExamplePdfPath().toFile())) {
-            TextSearcher searcher = new TextSearcher(oldText, ignoreCase);
-            List<TextSearcher.Match> positions = searcher.find(document);
+    /** 批量替换的绘制部分；found 须是以 needles(rules) 搜索得到的结果（不修改其匹配列表） */
+    EditResult applyBatch(PDDocument document, FontMetrics.Cache fonts, ParallelTextExtractor.SearchResult found,
+                          List<ReplaceRule> rules, boolean ignoreCase, boolean wholeLine) throws IOException {
+        EditResult result = new EditResult();
+        List<RuleReport> report = result.report;
+        for (int i = 0; i < rules.size(); i++) {
+            RuleReport rr = new RuleReport();
+            rr.rule = i;
+            report.add(rr);
+        }
+        // 规则顺序优先，其次保持文档顺序（稳定排序）；排的是副本，found 仍按文档顺序
+        List<TextSearcher.Match> matches = new ArrayList<>(found.matches);
+        matches.sort(Comparator.comparingInt(m -> m.needleIndex));
+        for (TextSearcher.Match m : matches) {
+            report.get(m.needleIndex).matches++;
+        }
 
-            for (TextSearcher.Match m : positions) {
+        ContentStreamRewriter rewriter = new ContentStreamRewriter(document, found.layout);
+        if (wholeLine) {
+            Map<TextSearcher.LineInfo, String> overlays = new LinkedHashMap<>();
+            LineIndex lines = new LineIndex(found.lines);
+            // 按行聚合命中的规则（保持行首次出现顺序）
+            Map<TextSearcher.LineInfo, BitSet> hitsByLine = new LinkedHashMap<>();
+            for (TextSearcher.Match m : matches) {
+                TextSearcher.LineInfo line = findLine(lines, m);
+                if (line == null) continue;
+                hitsByLine.computeIfAbsent(line, k -> new BitSet()).set(m.needleIndex);
+            }
+            for (Map.Entry<TextSearcher.LineInfo, BitSet> e : hitsByLine.entrySet()) {
+                TextSearcher.LineInfo line = e.getKey();
+                String replaced = line.text;
+                BitSet hit = e.getValue();
+                for (int i = hit.nextSetBit(0); i >= 0; i = hit.nextSetBit(i + 1)) {
+                    ReplaceRule r = rules.get(i);
+                    String next = replaceText(replaced, r.oldText, r.newText == null ? "" : r.newText, ignoreCase);
+                    if (!next.equals(replaced)) report.get(i).applied++;
+                    replaced = next;
+                }
+                if (rewriteLine(rewriter, line, replaced) == ContentStreamRewriter.Outcome.REWRITTEN) {
+                    result.rewrote(line.pageIndex);
+                } else {
+                    overlays.put(line, replaced);
+                }
+            }
+            rewriter.apply();
+            drawLineOverlays(document, fonts, overlays, result);
+        } else {
+            List<TextSearcher.Match> applied = new ArrayList<>();
+            List<TextSearcher.Match> overlays = new ArrayList<>();
+            for (TextSearcher.Match m : matches) {
                 if (m.pageIndex < 0 || m.pageIndex >= document.getNumberOfPages()) continue;
-                var page = document.getPage(m.pageIndex);
-                try (PDPageContentStream cs = new PDPageContentStream(document, page,
-                        PDPageContentStream.AppendMode.APPEND, true, true)) {
-                    // 使用文字矩阵平移（基线坐标）
-                    float drawX = m.tx;
-                    float drawBaselineY = m.ty;
-
-                    // 计算覆盖矩形：用字体的 ascent/descent 更稳妥
-                    var font = m.font != null ? m.font : PDType1Font.HELVETICA;
-                    float fontSize = m.fontSizeInPt > 0 ? m.fontSizeInPt : DEFAULT_FONT_SIZE;
-                    float ascent = 0f;
-                    float descent = 0f;
-                    if (font.getFontDescriptor() != null) {
-                        ascent = Math.max(0f, font.getFontDescriptor().getAscent() / 1000f * fontSize);
-                        descent = Math.abs(font.getFontDescriptor().getDescent() / 1000f * fontSize);
-                    } else if (font.getBoundingBox() != null) {
-                        ascent = Math.max(0f, font.getBoundingBox().getUpperRightY() / 1000f * fontSize);
-                        descent = Math.abs(font.getBoundingBox().getLowerLeftY() / 1000f * fontSize);
-                    } else {
-                        ascent = m.height;
-                        descent = 0.2f * fontSize;
-                    }
-                    float coverHeight = Math.max(m.height, ascent + descent) + 0.1f * fontSize;
-                    // 仅覆盖原匹配区域（避免遮住后续文字）
-                    float pad = 0.05f * fontSize;
-                    float availableWidth = Math.max(0.1f * fontSize, m.width);
-                    float rectY = drawBaselineY - descent - pad;
-                    float coverWidth = availableWidth + 2 * pad;
-
-                    // 遮盖原文字区域（白底）
-                    cs.addRect(drawX - 0.05f * fontSize, rectY, coverWidth, coverHeight);
-                    cs.setNonStrokingColor(java.awt.Color.WHITE);
-                    cs.fill();
-
-                    // 写入新文字：保持字号，稍后右移后续文本
-                    cs.beginText();
-                    cs.setNonStrokingColor(java.awt.Color.BLACK);
-                    float newTextWidth;
-                    try {
-                        newTextWidth = Math.abs(font.getStringWidth(newText)) / 1000f * fontSize;
-                    } catch (Exception e) {
-                        newTextWidth = availableWidth;
-                    }
-                    cs.setFont(font, fontSize);
-                    cs.newLineAtOffset(drawX, drawBaselineY);
-                    cs.showText(newText);
-                    cs.endText();
-
-                    // 右移并重绘“同一内容块内”的后续文本
-                    float delta = newTextWidth - availableWidth; // >0 说明更长
-                    if (delta > 0 && m.rest != null && !m.rest.isEmpty()) {
-                        // 覆盖后续原文本区域
-                        float restWidth = 0f;
-                        try {
-                            restWidth = Math.abs(font.getStringWidth(m.rest)) / 1000f * fontSize;
-                        } catch (Exception ignored) {}
-                        float restX = m.endX;
-                        float restRectY = drawBaselineY - descent - pad;
-                        cs.addRect(restX - pad, restRectY, restWidth + 2 * pad, coverHeight);
-                        cs.setNonStrokingColor(java.awt.Color.WHITE);
-                        cs.fill();
-
-                        // 在新位置绘制 rest（整体右移 delta）
-                        cs.beginText();
-                        cs.setNonStrokingColor(java.awt.Color.BLACK);
-                        cs.setFont(font, fontSize);
-                        cs.newLineAtOffset(restX + delta, drawBaselineY);
-                        cs.showText(m.rest);
-                        cs.endText();
-                    }
+                if (overlapsAny(applied, m)) continue;
+                ReplaceRule r = rules.get(m.needleIndex);
+                ContentStreamRewriter.Outcome outcome = rewriteMatch(rewriter, m, r.newText == null ? "" : r.newText);
+                if (outcome == ContentStreamRewriter.Outcome.SKIPPED) continue;
+                if (outcome == ContentStreamRewriter.Outcome.REWRITTEN) {
+                    result.rewrote(m.pageIndex);
+                } else {
+                    overlays.add(m);
                 }
+                applied.add(m);
+                report.get(m.needleIndex).applied++;
             }
-
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                document.save(baos);
-                return baos.toByteArray();
+            rewriter.apply();
+            OverlayWriter overlay = new OverlayWriter();
+            for (TextSearcher.Match m : overlays) {
+                ReplaceRule r = rules.get(m.needleIndex);
+                String newText = r.newText == null ? "" : r.newText;
+                float shift = addInplaceOverlay(overlay, fonts, m, newText);
+                result.touched.add(m.pageIndex);
+                result.drawn.add(new Drawn(m, null, newText, shift));
             }
+            overlay.write(document);
         }
+        return result;
     }
 
-    public byte[] editWholeLine(String oldText, String newText, boolean ignoreCase,
-                                Integer pageIndexOpt, String lineTextOpt) throws IOException {
-        if (oldText == null || oldText.isEmpty()) {
-            return getSamplePdf();
+    private static ContentStreamRewriter.Outcome rewriteMatch(ContentStreamRewriter rewriter, TextSearcher.Match m,
+                                                              String newText) throws IOException {
+        return rewriter.replace(m.pageIndex, m.segment, m.start, m.start + m.matched.length(), newText);
+    }
+
+    private static ContentStreamRewriter.Outcome rewriteLine(ContentStreamRewriter rewriter, TextSearcher.LineInfo line,
+                                                             String replaced) throws IOException {
+        return rewriter.replace(line.pageIndex, line.segment, 0, Integer.MAX_VALUE, replaced);
+    }
+
+    /** 无法改写内容流的行：白底覆盖后整行重绘（按页批量写出） */
+    private void drawLineOverlays(PDDocument document, FontMetrics.Cache fonts,
+                                  Map<TextSearcher.LineInfo, String> overlays, EditResult result) throws IOException {
+        OverlayWriter overlay = new OverlayWriter();
+        for (Map.Entry<TextSearcher.LineInfo, String> e : overlays.entrySet()) {
+            TextSearcher.LineInfo line = e.getKey();
+            addLineOverlay(overlay, fonts, line, e.getValue());
+            result.touched.add(line.pageIndex);
+            result.drawn.add(new Drawn(null, line, e.getValue(), 0f));
         }
+        overlay.write(document);
+    }
 
-        try (PDDocument document = PDDocument.load(getExamplePdfPath().toFile())) {
-            TextSearcher searcher = new TextSearcher(oldText, ignoreCase);
-            List<TextSearcher.Match> matches = searcher.find(document);
-            List<TextSearcher.LineInfo> lines = searcher.getLines();
+    public static class ReplaceRule {
+        public String oldText;
+        public String newText;
+    }
 
-            for (TextSearcher.Match m : matches) {
-                // 找到包含该 match 的行（同页且 y 基线接近）
-                TextSearcher.LineInfo line = null;
-                for (TextSearcher.LineInfo li : lines) {
-                    if (li.pageIndex != m.pageIndex) continue;
-                    if (Math.abs(li.yBaseline - m.ty) < Math.max(0.5f, m.height)) {
-                        line = li;
-                        break;
-                    }
-                }
-                if (line == null) continue;
-                if (pageIndexOpt != null && !pageIndexOpt.equals(line.pageIndex)) continue;
-                if (lineTextOpt != null && !line.text.contains(lineTextOpt)) continue;
-
-                var page = document.getPage(m.pageIndex);
-                try (PDPageContentStream cs = new PDPageContentStream(document, page,
-                        PDPageContentStream.AppendMode.APPEND, true, true)) {
-                    // 字体信息
-                    var font = line.font != null ? line.font : PDType1Font.HELVETICA;
-                    float fontSize = line.fontSizeInPt > 0 ? line.fontSizeInPt : DEFAULT_FONT_SIZE;
-
-                    // 计算覆盖整个行的矩形
-                    float ascent = 0f, descent = 0f;
-                    if (font.getFontDescriptor() != null) {
-                        ascent = Math.max(0f, font.getFontDescriptor().getAscent() / 1000f * fontSize);
-                        descent = Math.abs(font.getFontDescriptor().getDescent() / 1000f * fontSize);
-                    }
-                    float pad = 0.08f * fontSize;
-                    float rectY = line.yBaseline - descent - pad;
-                    float rectW = line.width + 2 * pad;
-                    float rectH = Math.max(line.height, ascent + descent) + 2 * pad;
-
-                    // 1) 覆盖整行
-                    cs.addRect(line.xStart - pad, rectY, rectW, rectH);
-                    cs.setNonStrokingColor(java.awt.Color.WHITE);
-                    cs.fill();
-
-                    // 2) 生成新行文本：用字符串替换（忽略/不忽略大小写）
-                    String source = line.text;
-                    String replaced;
-                    if (ignoreCase) {
-                        // 简易忽略大小写替换：逐次查找
-                        String lowerSrc = source.toLowerCase();
-                        String lowerOld = oldText.toLowerCase();
-                        StringBuilder sb = new StringBuilder();
-                        int idx = 0; int pos;
-                        while ((pos = lowerSrc.indexOf(lowerOld, idx)) >= 0) {
-                            sb.append(source, idx, pos).append(newText);
-                            idx = pos + oldText.length();
-                        }
-                        sb.append(source.substring(idx));
-                        replaced = sb.toString();
-                    } else {
-                        replaced = source.replace(oldText, newText);
-                    }
+    public static class RuleReport {
+        public int rule;      // 规则下标（与请求顺序一致）
+        public int matches;   // 命中次数
+        public int applied;   // 实际应用次数（重叠命中被跳过时小于 matches）
+    }
 
-                    // 3) 将整行作为一个文本块重新绘制（不移动其它行）
-                    cs.beginText();
-                    cs.setNonStrokingColor(java.awt.Color.BLACK);
-                    cs.setFont(font, fontSize);
-                    cs.newLineAtOffset(line.xStart, line.yBaseline);
-                    cs.showText(replaced);
-                    cs.endText();
-                }
+    /** 在 source 上搜索（页数多时按页分块并行），并顺带预热版式缓存；indexDocument 为其在全文索引中的文档 id */
+    private ParallelTextExtractor.SearchResult search(PdfMetrics.Operation op, Path source, String indexDocument,
+                                                      PDDocument document, List<String> needles,
+                                                      boolean ignoreCase) throws IOException {
+        return op.time("search", () -> {
+            TextMatcher matcher = TextMatcher.of(needles, ignoreCase);
+            ParallelTextExtractor.SearchResult found;
+            // 索引对应当前版本时只抽取可能命中的页（其余页没有匹配，编辑也不会触及）；候选页过多时整本抽取更划算
+            BitSet candidates = textIndex.candidatePages(indexDocument, layoutCache.contentHash(source), needles);
+            if (candidates != null && candidates.cardinality() * 2 < document.getNumberOfPages()) {
+                found = ParallelTextExtractor.search(extractor.extractPages(document, candidates), matcher);
+            } else {
+                found = extractor.search(document, source, matcher);
+                layoutCache.remember(layoutCache.get(source), found);
             }
+            op.matches(found.matches.size());
+            return found;
+        });
+    }
 
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                document.save(baos);
-                return baos.toByteArray();
-            }
+    /** 在内存预算内加载文档（计入 load 阶段，含准入排队时间；记录输入字节与页数） */
+    private PDDocument load(PdfMetrics.Operation op, Path file) throws IOException {
+        return op.time("load", () -> {
+            PDDocument document = loader.load(file);
+            op.bytesIn(Files.size(file)).pages(document.getNumberOfPages());
+            JobProgress.pagesTotal(document.getNumberOfPages());
+            return document;
+        });
+    }
+
+    private interface Edit {
+        PdfOutput run(PdfMetrics.Operation op) throws IOException;
+    }
+
+    /**
+     * 编辑结果缓存（EditResultCache）：同一文档版本上接口与参数都相同的编辑直接输出上次的结果字节，不加载 PDF；
+     * 并发的相同请求只计算一次。未命中时照常编辑（指标仍记在 endpoint 下），输出写入缓存文件后从文件输出；
+     * 每次请求的输出另记在 edit-cache 下。编辑期间源文件被替换时，结果不属于键中的版本，返回 409 且不缓存。
+     */
+    private PdfOutput memoized(String endpoint, Path source, OutputMode output, Object[] params,
+                               Edit edit) throws IOException {
+        if (!editCache.isEnabled()) {
+            return instrumented(endpoint, edit);
         }
+        PdfMetrics.Operation op = metrics.start("edit-cache");
+        try {
+            String hash = layoutCache.contentHash(source);
+            long baseLength = Files.size(source);
+            Object[] parts = new Object[params.length + 3];
+            parts[0] = hash;
+            parts[1] = endpoint;
+            parts[2] = output.name();
+            System.arraycopy(params, 0, parts, 3, params.length);
+            InputStream stored = op.time("cache", () -> editCache.open(EditResultCache.key(parts), out -> {
+                try (PdfOutput computed = instrumented(endpoint, edit)) {
+                    computed.writeTo(out);
+                }
+                if (!hash.equals(layoutCache.contentHash(source))) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                            source.getFileName() + " changed while editing");
+                }
+            }));
+            return PdfOutput.stored(stored, output, baseLength).withMetrics(op);
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            op.finish();
+            throw e;
+        }
+    }
+
+    /** 以 endpoint 为名记录一次编辑：成功时指标随 PdfOutput 在写出并关闭后结束，失败时立即结束 */
+    private PdfOutput instrumented(String endpoint, Edit edit) throws IOException {
+        PdfMetrics.Operation op = metrics.start(endpoint);
+        try {
+            return edit.run(op).withMetrics(op);
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            op.finish();
+            throw e;
+        }
+    }
+
+    private static boolean overlapsAny(List<TextSearcher.Match> applied, TextSearcher.Match m) {
+        for (TextSearcher.Match a : applied) {
+            if (a.pageIndex != m.pageIndex) continue;
+            if (Math.abs(a.ty - m.ty) >= Math.max(0.5f, Math.min(a.height, m.height))) continue;
+            if (m.x < a.x + a.width && a.x < m.x + m.width) return true;
+        }
+        return false;
+    }
+
+    /** 包含该 match 的行：同页、基线差小于 max(0.5, 字高) 的第一行 */
+    private static TextSearcher.LineInfo findLine(LineIndex lines, TextSearcher.Match m) {
+        return lines.findByBaseline(m.pageIndex, m.ty, Math.max(0.5f, m.height));
+    }
+
+    /** 登记一处命中的原位替换（遮盖 + 新文本，必要时右移其后文本）；返回右移的距离（未移动时为 0） */
+    private float addInplaceOverlay(OverlayWriter overlay, FontMetrics.Cache fonts, TextSearcher.Match m,
+                                    String newText) {
+        // 使用文字矩阵平移（基线坐标）
+        float drawX = m.tx;
+        float drawBaselineY = m.ty;
+
+        // 计算覆盖矩形：用字体的 ascent/descent 更稳妥
+        var font = drawingFont(m.font);
+        FontMetrics metrics = fonts.of(font);
+        float fontSize = drawingSize(m.fontSizeInPt);
+        float ascent = 0f;
+        float descent = 0f;
+        if (metrics.hasDescriptor) {
+            ascent = Math.max(0f, metrics.ascent / 1000f * fontSize);
+            descent = Math.abs(metrics.descent / 1000f * fontSize);
+        } else if (metrics.hasBoundingBox) {
+            ascent = Math.max(0f, metrics.boxTop / 1000f * fontSize);
+            descent = Math.abs(metrics.boxBottom / 1000f * fontSize);
+        } else {
+            ascent = m.height;
+            descent = 0.2f * fontSize;
+        }
+        float coverHeight = Math.max(m.height, ascent + descent) + 0.1f * fontSize;
+        // 仅覆盖原匹配区域（避免遮住后续文字）
+        float pad = 0.05f * fontSize;
+        float availableWidth = Math.max(0.1f * fontSize, m.width);
+        float rectY = drawBaselineY - descent - pad;
+        float coverWidth = availableWidth + 2 * pad;
+
+        // 遮盖原文字区域（白底），写入新文字：保持字号，稍后右移后续文本
+        overlay.cover(m.pageIndex, drawX - 0.05f * fontSize, rectY, coverWidth, coverHeight);
+        overlay.text(m.pageIndex, font, fontSize, drawX, drawBaselineY, newText);
+        float newTextWidth = metrics.width(newText);
+        newTextWidth = Float.isNaN(newTextWidth) ? availableWidth : Math.abs(newTextWidth) / 1000f * fontSize;
+
+        // 右移并重绘“同一内容块内”的后续文本
+        float delta = newTextWidth - availableWidth; // >0 说明更长
+        if (delta > 0 && m.rest != null && !m.rest.isEmpty()) {
+            // 覆盖后续原文本区域
+            float restWidth = metrics.width(m.rest);
+            restWidth = Float.isNaN(restWidth) ? 0f : Math.abs(restWidth) / 1000f * fontSize;
+            float restX = m.endX;
+            overlay.cover(m.pageIndex, restX - pad, rectY, restWidth + 2 * pad, coverHeight);
+            // 在新位置绘制 rest（整体右移 delta）
+            overlay.text(m.pageIndex, font, fontSize, restX + delta, drawBaselineY, m.rest);
+            return delta;
+        }
+        return 0f;
+    }
+
+    /** 登记整行替换：覆盖整行后将整行作为一个文本块重新绘制（不移动其它行） */
+    private void addLineOverlay(OverlayWriter overlay, FontMetrics.Cache fonts, TextSearcher.LineInfo line,
+                                String replaced) {
+        // 字体信息
+        var font = drawingFont(line.font);
+        FontMetrics metrics = fonts.of(font);
+        float fontSize = drawingSize(line.fontSizeInPt);
+
+        // 计算覆盖整个行的矩形
+        float ascent = 0f, descent = 0f;
+        if (metrics.hasDescriptor) {
+            ascent = Math.max(0f, metrics.ascent / 1000f * fontSize);
+            descent = Math.abs(metrics.descent / 1000f * fontSize);
+        }
+        float pad = 0.08f * fontSize;
+        float rectY = line.yBaseline - descent - pad;
+        float rectW = line.width + 2 * pad;
+        float rectH = Math.max(line.height, ascent + descent) + 2 * pad;
+
+        overlay.cover(line.pageIndex, line.xStart - pad, rectY, rectW, rectH);
+        overlay.text(line.pageIndex, font, fontSize, line.xStart, line.yBaseline, replaced);
+    }
+
+    /** 重绘使用的字体与字号：抽取不到时回退到 Helvetica / 默认字号 */
+    static PDFont drawingFont(PDFont font) {
+        return font != null ? font : PDType1Font.HELVETICA;
+    }
+
+    static float drawingSize(float fontSizeInPt) {
+        return fontSizeInPt > 0 ? fontSizeInPt : DEFAULT_FONT_SIZE;
+    }
+
+    private static String replaceText(String source, String oldText, String newText, boolean ignoreCase) {
+        if (oldText == null || oldText.isEmpty()) return source;
+        if (!ignoreCase) {
+            return source.replace(oldText, newText);
+        }
+        // 简易忽略大小写替换：逐次查找
+        String lowerSrc = source.toLowerCase();
+        String lowerOld = oldText.toLowerCase();
+        StringBuilder sb = new StringBuilder();
+        int idx = 0; int pos;
+        while ((pos = lowerSrc.indexOf(lowerOld, idx)) >= 0) {
+            sb.append(source, idx, pos).append(newText);
+            idx = pos + oldText.length();
+        }
+        sb.append(source.substring(idx));
+        return sb.toString();
+    }
+
+    /**
+     * 输出方式：
+     * - FULL：完整重写（document.save，所有对象重新序列化）；
+     * - INCREMENTAL：增量更新，原文件字节原样保留，仅追加被修改页面/资源与新内容流作为新修订；
+     * - DELTA：只返回 INCREMENTAL 中追加的那段字节（拼接到原文件末尾即得到完整结果）。
+     */
+    public enum OutputMode {
+        FULL, INCREMENTAL, DELTA;
+
+        public static OutputMode parse(String value) {
+            if ("incremental".equalsIgnoreCase(value)) return INCREMENTAL;
+            if ("delta".equalsIgnoreCase(value)) return DELTA;
+            return FULL;
+        }
+    }
+
+    /** 示例文档当前内容的 SHA-256（DELTA 输出对应的基准版本） */
+    public String getSampleContentHash() throws IOException {
+        return layoutCache.contentHash(getExamplePdfPath());
+    }
+
+    public long getSampleLength() throws IOException {
+        return Files.size(getExamplePdfPath());
     }
 
     public List<TextBoxCollector.Box> collectTextBoxes(String mode) throws IOException {
-        try (PDDocument document = PDDocument.load(getExamplePdfPath().toFile())) {
-            TextBoxCollector.Mode m = "word".equalsIgnoreCase(mode) ? TextBoxCollector.Mode.WORD : TextBoxCollector.Mode.LINE;
-            TextBoxCollector collector = new TextBoxCollector(m);
-            return collector.collect(document);
-        }
-    }
-
-    public byte[] renderAnnotatedTextBoxes(String mode) throws IOException {
-        try (PDDocument document = PDDocument.load(getExamplePdfPath().toFile())) {
-            TextBoxCollector.Mode m = "word".equalsIgnoreCase(mode) ? TextBoxCollector.Mode.WORD : TextBoxCollector.Mode.LINE;
-            TextBoxCollector collector = new TextBoxCollector(m);
-            List<TextBoxCollector.Box> boxes = collector.collect(document);
-
-            for (int p = 0; p < document.getNumberOfPages(); p++) {
-                PDPage page = document.getPage(p);
-                try (PDPageContentStream cs = new PDPageContentStream(
-                        document,
-                        page,
-                        PDPageContentStream.AppendMode.APPEND,
-                        true,
-                        true)) {
-                    cs.setStrokingColor(java.awt.Color.RED);
-                    cs.setLineWidth(0.7f);
-                    cs.setLineDashPattern(new float[]{3f, 2f}, 0);
-                    for (TextBoxCollector.Box b : boxes) {
-                        if (b.pageIndex != p) continue;
-                        float y = b.yTop - b.height;
-                        cs.addRect(b.x, y, b.width, b.height);
-                    }
-                    cs.stroke();
-                    cs.setLineDashPattern(new float[]{}, 0);
+        return collectTextBoxes(getExamplePdfPath(), mode);
+    }
+
+    public List<TextBoxCollector.Box> collectTextBoxes(Path source, String mode) throws IOException {
+        PdfMetrics.Operation op = metrics.start("text-boxes");
+        try {
+            return op.time("layout", () -> {
+                // 命中缓存时不解析 PDF
+                List<TextBoxCollector.Box> boxes = layoutCache.boxes(source, parseMode(mode));
+                int pages = layoutCache.model(source).getPageCount();
+                op.matches(boxes.size()).pages(pages);
+                JobProgress.pagesTotal(pages);
+                return boxes;
+            });
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
+
+    /**
+     * 页范围请求（页号 0-based，含两端）：page 为单页；from/to 为一段（缺 to 时取 span 页）；
+     * cursor 为上一段返回的游标（携带下一段起点与每段页数）。全部为空表示整本文档。
+     */
+    public static class PageRequest {
+        public Integer page;
+        public Integer from;
+        public Integer to;
+        public String cursor;
+        public Integer span;
+
+        public boolean isEmpty() {
+            return page == null && from == null && to == null && cursor == null && span == null;
+        }
+    }
+
+    /** 一段页的文本框：from..to 为实际覆盖的页（已截到末页），nextCursor 指向下一段（到末页时为 null） */
+    public static class TextBoxPage {
+        public int pageCount;
+        public int from;
+        public int to;
+        public String nextCursor;
+        public List<TextBoxCollector.Box> boxes;
+    }
+
+    public TextBoxPage collectTextBoxes(String mode, PageRequest pages) throws IOException {
+        return collectTextBoxes(getExamplePdfPath(), mode, pages);
+    }
+
+    /** 只解析、抽取请求的页（整本版式已缓存时直接切出），首屏耗时与文档页数无关 */
+    public TextBoxPage collectTextBoxes(Path source, String mode, PageRequest pages) throws IOException {
+        PdfMetrics.Operation op = metrics.start("text-boxes");
+        try {
+            return op.time("layout", () -> {
+                String hash = layoutCache.contentHash(source);
+                int[] range = resolvePages(pages, hash);
+                DocumentLayoutCache.PageBoxes slice = layoutCache.boxes(source, parseMode(mode), range[0], range[1]);
+                TextBoxPage result = new TextBoxPage();
+                checkPageRange(range, slice.pageCount);
+                result.pageCount = slice.pageCount;
+                result.from = range[0];
+                result.to = Math.min(range[1], slice.pageCount - 1);
+                result.boxes = slice.boxes;
+                if (result.to + 1 < slice.pageCount) {
+                    result.nextCursor = encodeCursor(hash, result.to + 1, range[2]);
                 }
+                int covered = Math.max(0, result.to - result.from + 1);
+                op.matches(slice.boxes.size()).pages(covered);
+                JobProgress.pagesTotal(covered);
+                return result;
+            });
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
+
+    /** NDJSON 流中的一行：一页的文本框（没有文本的页也输出，boxes 为空） */
+    public static class PageTextBoxes {
+        public int pageIndex;
+        public int pageCount;
+        public List<TextBoxCollector.Box> boxes;
+    }
+
+    @FunctionalInterface
+    public interface PageSink {
+        void accept(PageTextBoxes page) throws IOException;
+    }
+
+    /** 已校验参数、尚未开始抽取的逐页输出；writeTo 在写响应时调用 */
+    @FunctionalInterface
+    public interface TextBoxStream {
+        void writeTo(PageSink sink) throws IOException;
+    }
+
+    public TextBoxStream streamTextBoxes(String mode, PageRequest pages) throws IOException {
+        return streamTextBoxes(getExamplePdfPath(), mode, pages);
+    }
+
+    /**
+     * 逐页输出文本框：页范围与游标在调用时校验（错误仍能以状态码返回），抽取在 writeTo 中按页进行，
+     * 每页聚合完成即交给 sink，不累积整本结果，服务端只保留一页的 Box。
+     * 整本版式已缓存时直接逐页切出；否则单线程顺序抽取（保证页序），结果不写入版式缓存。
+     */
+    public TextBoxStream streamTextBoxes(Path source, String mode, PageRequest pages) throws IOException {
+        TextBoxCollector.Mode boxMode = parseMode(mode);
+        int[] range = pages == null || pages.isEmpty() ? null : resolvePages(pages, layoutCache.contentHash(source));
+        return sink -> {
+            PdfMetrics.Operation op = metrics.start("text-boxes-stream");
+            int[] emitted = new int[2]; // 页数、Box 数
+            try {
+                forEachLayoutPage(op, source, range, (page, pageCount) -> {
+                    PageTextBoxes line = new PageTextBoxes();
+                    line.pageIndex = page.pageIndex;
+                    line.pageCount = pageCount;
+                    line.boxes = DocumentLayout.boxes(page, boxMode);
+                    sink.accept(line);
+                    emitted[0]++;
+                    emitted[1] += line.boxes.size();
+                });
+                op.pages(emitted[0]).matches(emitted[1]);
+            } catch (IOException | RuntimeException e) {
+                op.fail(e);
+                throw e;
+            } finally {
+                op.finish();
             }
+        };
+    }
 
-            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                document.save(baos);
-                return baos.toByteArray();
+    @FunctionalInterface
+    private interface LayoutPageSink {
+        void accept(DocumentLayout.Page page, int pageCount) throws IOException;
+    }
+
+    /**
+     * 按页序逐页交出版式（range 为空时整本）：整本版式已缓存时直接切出；否则单线程顺序抽取，
+     * 每页抽取完即交给 sink，结果不写入版式缓存。返回文档总页数。
+     */
+    private int forEachLayoutPage(PdfMetrics.Operation op, Path source, int[] range,
+                                  LayoutPageSink sink) throws IOException {
+        DocumentLayout cached = layoutCache.cachedModel(source);
+        if (cached != null) {
+            int pageCount = layoutCache.pageCount(source);
+            int from = range == null ? 0 : range[0];
+            int to = range == null ? pageCount - 1 : Math.min(range[1], pageCount - 1);
+            // 按绝对页号取页：模型中没有的页（没有版式）以无文本的空页输出，页序与页号不错位
+            for (int p = from; p <= to; p++) {
+                DocumentLayout.Page page = cached.page(p);
+                if (page == null) {
+                    page = new DocumentLayout.Page();
+                    page.pageIndex = p;
+                }
+                sink.accept(page, pageCount);
             }
+            return pageCount;
+        }
+        try (PDDocument document = load(op, source)) {
+            return op.time("layout", () -> {
+                int pageCount = document.getNumberOfPages();
+                LayoutExtractor extractor = new LayoutExtractor();
+                if (range != null) {
+                    extractor.setStartPage(range[0] + 1);
+                    extractor.setEndPage(range[1] + 1);
+                }
+                extractor.setPageListener(page -> sink.accept(page, pageCount));
+                extractor.extract(document);
+                return pageCount;
+            });
         }
     }
 
-    private List<String> wrapText(String text, PDType1Font font, float fontSize, float maxWidth) throws IOException {
-        List<String> wrapped = new ArrayList<>();
-        if (text == null || text.isEmpty()) {
-            return wrapped;
+    /**
+     * 二进制列式文本框（TextBoxColumns）的缓存文件；页信息同 TextBoxPage（整本请求时 from 为 0、to 为末页）。
+     * version 为文档内容哈希 + 变体，可直接用作 ETag。
+     */
+    public static class TextBoxColumnsFile {
+        public final Resource file;
+        public final String version;
+        public int pageCount;
+        public int from;
+        public int to;
+        public String nextCursor;
+
+        TextBoxColumnsFile(Resource file, String version) {
+            this.file = file;
+            this.version = version;
         }
+    }
 
-        String[] paragraphs = text.split("\r?\n");
-        for (String para : paragraphs) {
-            if (para.isEmpty()) {
-                wrapped.add("");
-                continue;
+    public TextBoxColumnsFile getTextBoxColumns(String mode, PageRequest pages) throws IOException {
+        return getTextBoxColumns(getExamplePdfPath(), mode, pages);
+    }
+
+    /** 每个文档版本、每种模式（及页范围）只编码一次，与标注 PDF 共用落盘缓存；之后直接输出文件 */
+    public TextBoxColumnsFile getTextBoxColumns(Path source, String mode, PageRequest pages) throws IOException {
+        PdfMetrics.Operation op = metrics.start("text-boxes-columns");
+        try {
+            TextBoxCollector.Mode boxMode = parseMode(mode);
+            String hash = layoutCache.contentHash(source);
+            int[] range = pages == null || pages.isEmpty() ? null : resolvePages(pages, hash);
+            String variant = "columns-" + annotatedVariant(boxMode, range);
+            CachedFile file = annotatedCache.get(hash, variant, TextBoxColumns.SUFFIX,
+                    out -> writeTextBoxColumns(op, source, hash, boxMode, range, out));
+            TextBoxColumnsFile result = new TextBoxColumnsFile(file, hash + "-" + variant);
+            result.pageCount = TextBoxColumns.pageCount(file);
+            checkPageRange(range, result.pageCount);
+            result.from = range == null ? 0 : range[0];
+            result.to = range == null ? result.pageCount - 1 : Math.min(range[1], result.pageCount - 1);
+            if (range != null && result.to + 1 < result.pageCount) {
+                result.nextCursor = encodeCursor(hash, result.to + 1, range[2]);
             }
+            // 文件由容器流式输出，这里只记录输出字节
+            op.addBytesOut(file.contentLength());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
 
-            String[] words = para.split(" ");
-            StringBuilder line = new StringBuilder();
-            for (String word : words) {
-                String candidate = line.length() == 0 ? word : line + " " + word;
-                float width = font.getStringWidth(candidate) / 1000 * fontSize;
-                if (width <= maxWidth) {
-                    line.setLength(0);
-                    line.append(candidate);
-                } else {
-                    if (line.length() > 0) {
-                        wrapped.add(line.toString());
-                        line.setLength(0);
-                        line.append(word);
-                    } else {
-                        // 单词本身超长，直接硬切
-                        wrapped.add(candidate);
-                        line.setLength(0);
-                    }
+    private void writeTextBoxColumns(PdfMetrics.Operation op, Path source, String hash, TextBoxCollector.Mode mode,
+                                     int[] range, OutputStream out) throws IOException {
+        TextBoxColumns columns = new TextBoxColumns(out, mode);
+        int pageCount = forEachLayoutPage(op, source, range, (page, count) -> columns.page(page));
+        // 期间文件被替换（如会话提交）时，结果不属于 hash 对应的版本，不能以该键缓存
+        if (!hash.equals(layoutCache.contentHash(source))) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    source.getFileName() + " changed while encoding text boxes");
+        }
+        columns.finish(pageCount);
+        op.pages(columns.pages()).matches(columns.boxes());
+    }
+
+    /** 把分页请求解析为 {from, to, span}；游标属于其它文档版本时返回 409，格式错误返回 400 */
+    private static int[] resolvePages(PageRequest pages, String hash) {
+        int span = pages.span != null ? pages.span : DEFAULT_PAGE_SPAN;
+        int from;
+        int to;
+        if (pages.cursor != null) {
+            int[] cursor = decodeCursor(pages.cursor, hash);
+            from = cursor[0];
+            span = pages.span != null ? span : cursor[1];
+            to = from + span - 1;
+        } else if (pages.page != null) {
+            from = pages.page;
+            to = pages.page;
+        } else {
+            from = pages.from != null ? pages.from : 0;
+            to = pages.to != null ? pages.to : from + span - 1;
+        }
+        if (from < 0 || to < from || span < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid page range");
+        }
+        if (pages.cursor == null && (pages.page != null || pages.to != null)) {
+            span = to - from + 1;
+        }
+        return new int[]{from, to, span};
+    }
+
+    /** 起始页超出文档（页范围会倒置）时拒绝；range 为空（整本）时不检查 */
+    private static void checkPageRange(int[] range, int pageCount) {
+        if (range != null && range[0] >= pageCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "page " + range[0] + " is beyond the last page " + (pageCount - 1));
+        }
+    }
+
+    // 游标：文档版本（哈希前 16 位）: 下一段起点 : 每段页数，base64url 编码，对客户端不透明
+    private static String encodeCursor(String hash, int next, int span) {
+        String raw = hash.substring(0, 16) + ":" + next + ":" + span;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static int[] decodeCursor(String cursor, String hash) {
+        String[] parts;
+        int next;
+        int span;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":", -1);
+            next = Integer.parseInt(parts[1]);
+            span = Integer.parseInt(parts[2]);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed cursor");
+        }
+        if (parts.length != 3 || parts[0].length() != 16) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed cursor");
+        }
+        if (!hash.startsWith(parts[0])) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "document changed since the cursor was issued");
+        }
+        return new int[]{next, span};
+    }
+
+    /**
+     * 标注 PDF 的缓存文件及其版本（文档内容哈希 + 模式，可直接用作 ETag）；
+     * 按页范围请求时另带页信息（同 TextBoxPage），整本请求时 pageCount 为 -1。
+     */
+    public static class AnnotatedPdf {
+        public final Resource file;
+        public final String version;
+        public int pageCount = -1;
+        public int from;
+        public int to;
+        public String nextCursor;
+
+        AnnotatedPdf(Resource file, String version) {
+            this.file = file;
+            this.version = version;
+        }
+    }
+
+    /** 带红框标注的 PDF：每个文档版本、每种模式（及页范围）只生成一次，之后直接输出缓存文件 */
+    public AnnotatedPdf getAnnotatedPdf(String mode, PageRequest pages) throws IOException {
+        return getAnnotatedPdf(getExamplePdfPath(), mode, pages);
+    }
+
+    /** pages 非空时只抽取并标注这些页（其余页原样保留），文档仍是完整的 */
+    public AnnotatedPdf getAnnotatedPdf(Path source, String mode, PageRequest pages) throws IOException {
+        PdfMetrics.Operation op = metrics.start("annotated");
+        try {
+            TextBoxCollector.Mode boxMode = parseMode(mode);
+            String hash = layoutCache.contentHash(source);
+            int[] range = pages == null || pages.isEmpty() ? null : resolvePages(pages, hash);
+            CachedFile file = annotatedFile(op, source, hash, boxMode, range);
+            // 文件由容器流式输出，这里只记录输出字节
+            op.addBytesOut(file.contentLength());
+            AnnotatedPdf result = new AnnotatedPdf(file, hash + "-" + annotatedVariant(boxMode, range));
+            if (range != null) {
+                // 生成时已抽取过这些页，页数通常已知；缓存命中而版式已淘汰时只解析文档结构
+                result.pageCount = layoutCache.pageCount(source);
+                checkPageRange(range, result.pageCount);
+                result.from = range[0];
+                result.to = Math.min(range[1], result.pageCount - 1);
+                if (result.to + 1 < result.pageCount) {
+                    result.nextCursor = encodeCursor(hash, result.to + 1, range[2]);
                 }
             }
-            if (line.length() > 0) {
-                wrapped.add(line.toString());
+            return result;
+        } catch (IOException | RuntimeException e) {
+            op.fail(e);
+            throw e;
+        } finally {
+            op.finish();
+        }
+    }
+
+    /** 异步任务使用：同 getAnnotatedPdf，结果以 PdfOutput 写出 */
+    public PdfOutput renderAnnotatedTextBoxes(String mode) throws IOException {
+        return instrumented("annotated", op -> {
+            CachedFile file = annotatedFile(op, getExamplePdfPath(), getSampleContentHash(), parseMode(mode), null);
+            return PdfOutput.stored(file.getInputStream(), OutputMode.FULL, file.contentLength());
+        });
+    }
+
+    // 缓存以内容哈希为键：内容相同的文件（示例文件与文档库中的同一版本）共用一份标注结果
+    private CachedFile annotatedFile(PdfMetrics.Operation op, Path source, String hash,
+                               TextBoxCollector.Mode mode, int[] range) throws IOException {
+        return annotatedCache.get(hash, annotatedVariant(mode, range),
+                out -> writeAnnotated(op, source, hash, mode, range, out));
+    }
+
+    private static String annotatedVariant(TextBoxCollector.Mode mode, int[] range) {
+        String variant = mode.name().toLowerCase();
+        return range == null ? variant : variant + "-p" + range[0] + "-" + range[1];
+    }
+
+    /**
+     * 生成标注 PDF：Box 按页分组一次，只给有 Box 的页追加一个描边内容流，
+     * 以增量更新写出（原文件字节原样保留，只序列化这些页面），不重新保存整个文档。
+     */
+    private void writeAnnotated(PdfMetrics.Operation op, Path source, String hash, TextBoxCollector.Mode mode,
+                                int[] range, OutputStream out) throws IOException {
+        long baseLength = Files.size(source);
+        try (PDDocument document = load(op, source)) {
+            List<TextBoxCollector.Box> boxes = op.time("layout", () -> range == null
+                    ? layoutCache.boxes(source, mode)
+                    : layoutCache.boxes(source, mode, range[0], range[1]).boxes);
+            // 期间文件被替换（如会话提交）时，结果不属于 hash 对应的版本，不能以该键缓存
+            if (!hash.equals(layoutCache.contentHash(source))) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        source.getFileName() + " changed while annotating");
             }
+            op.matches(boxes.size());
+
+            Map<Integer, List<TextBoxCollector.Box>> byPage = new TreeMap<>();
+            for (TextBoxCollector.Box b : boxes) {
+                if (b.pageIndex >= 0 && b.pageIndex < document.getNumberOfPages()) {
+                    byPage.computeIfAbsent(b.pageIndex, k -> new ArrayList<>()).add(b);
+                }
+            }
+            op.time("draw", () -> {
+                for (Map.Entry<Integer, List<TextBoxCollector.Box>> e : byPage.entrySet()) {
+                    PDPage page = document.getPage(e.getKey());
+                    try (PDPageContentStream cs = new PDPageContentStream(
+                            document,
+                            page,
+                            PDPageContentStream.AppendMode.APPEND,
+                            true,
+                            true)) {
+                        cs.setStrokingColor(java.awt.Color.RED);
+                        cs.setLineWidth(0.7f);
+                        cs.setLineDashPattern(new float[]{3f, 2f}, 0);
+                        for (TextBoxCollector.Box b : e.getValue()) {
+                            cs.addRect(b.x, b.yTop - b.height, b.width, b.height);
+                        }
+                        cs.stroke();
+                        cs.setLineDashPattern(new float[]{}, 0);
+                    }
+                }
+            });
+            op.time("save", () -> PdfOutput.borrowed(document, source, baseLength, byPage.keySet(),
+                    OutputMode.INCREMENTAL).writeTo(out));
         }
-        return wrapped;
     }
-}
 
+    static TextBoxCollector.Mode parseMode(String mode) {
+        if ("word".equalsIgnoreCase(mode)) return TextBoxCollector.Mode.WORD;
+        if ("block".equalsIgnoreCase(mode)) return TextBoxCollector.Mode.BLOCK;
+        return TextBoxCollector.Mode.LINE;
+    }
 
+    /** 贪心断行（与 /edit 的重排相同）：'\n' 分段，空格分词，超过行宽的单词整词单独成行 */
+    static List<String> wrapText(String text, PDType1Font font, float fontSize, float maxWidth) throws IOException {
+        if (text == null || text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return TextReflow.wrap(text, font, fontSize, maxWidth);
+    }
+}
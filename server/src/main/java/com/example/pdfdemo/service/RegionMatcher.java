@@ -0,0 +1,43 @@
+package com.example.pdfdemo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 朴素匹配：逐位置 regionMatches，复杂度 O(文本长度 × needle 长度 × needle 数)。
+ * 保留作对照基线（基准测试/结果比对），业务路径默认使用 AhoCorasickMatcher。
+ */
+public final class RegionMatcher implements TextMatcher {
+
+    private final List<String> needles = new ArrayList<>();
+    private final boolean ignoreCase;
+
+    public RegionMatcher(List<String> needles, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        for (String n : needles) this.needles.add(n == null ? "" : n);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (String n : needles) {
+            if (!n.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void match(CharSequence text, Listener listener) {
+        if (text == null) return;
+        String hay = text.toString();
+        for (int k = 0; k < needles.size(); k++) {
+            String ndl = needles.get(k);
+            int n = ndl.length();
+            if (n == 0) continue;
+            for (int i = 0; i + n <= hay.length(); i++) {
+                if (hay.regionMatches(ignoreCase, i, ndl, 0, n)) {
+                    listener.onMatch(i, n, k);
+                }
+            }
+        }
+    }
+}
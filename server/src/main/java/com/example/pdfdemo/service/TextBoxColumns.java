@@ -0,0 +1,123 @@
+package com.example.pdfdemo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文本框的二进制列式格式（/text-boxes，Accept: application/x-text-box-columns），全部为小端、4 字节对齐：
+ * <pre>
+ * "TBX1"
+ * 逐页：uint32 pageIndex, float32 pageWidth, float32 pageHeight, uint32 n,
+ *       float32 x[n], float32 yTop[n], float32 width[n], float32 height[n], uint32 text[n]（字符串表下标）
+ * 字符串表：uint32 offsets[strings + 1]（相对字节区起点），UTF-8 字节区，补零到 4 字节对齐
+ * 尾部：uint32 pageCount（文档总页数）, pages, boxes, strings, stringTableOffset, stringBytes, "TBX1"
+ * </pre>
+ * 页尺寸每页只写一次，同一文本（词模式下大量重复）在字符串表中只存一份；浏览器可直接在 ArrayBuffer 上建
+ * Float32Array 视图，不经过 JSON 解析。逐页写出，内存中只保留当前页与去重后的字符串表。
+ * 没有文本的页也写出（n 为 0）。非线程安全，一次输出一个实例。
+ */
+final class TextBoxColumns {
+
+    static final String SUFFIX = ".tbx";
+    /** "TBX1" 按小端读出的整数 */
+    static final int MAGIC = 0x31584254;
+    static final int TRAILER_BYTES = 7 * Integer.BYTES;
+
+    private final OutputStream out;
+    private final TextBoxCollector.Mode mode;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+    private int[] stringEnds = new int[256];
+    private long written;
+    private int pages;
+    private int boxes;
+
+    TextBoxColumns(OutputStream out, TextBoxCollector.Mode mode) throws IOException {
+        this.out = out;
+        this.mode = mode;
+        write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC));
+    }
+
+    /** 写出一页的列 */
+    void page(DocumentLayout.Page page) throws IOException {
+        List<TextBoxCollector.Box> list = DocumentLayout.boxes(page, mode);
+        int n = list.size();
+        ByteBuffer buf = ByteBuffer.allocate(4 * Integer.BYTES + n * 5 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(page.pageIndex).putFloat(page.width).putFloat(page.height).putInt(n);
+        for (TextBoxCollector.Box b : list) buf.putFloat(b.x);
+        for (TextBoxCollector.Box b : list) buf.putFloat(b.yTop);
+        for (TextBoxCollector.Box b : list) buf.putFloat(b.width);
+        for (TextBoxCollector.Box b : list) buf.putFloat(b.height);
+        for (TextBoxCollector.Box b : list) buf.putInt(intern(b.text));
+        write(buf);
+        pages++;
+        boxes += n;
+    }
+
+    int pages() {
+        return pages;
+    }
+
+    int boxes() {
+        return boxes;
+    }
+
+    /** 写出字符串表与尾部；pageCount 为文档总页数 */
+    void finish(int pageCount) throws IOException {
+        int count = strings.size();
+        long tableOffset = written;
+        ByteBuffer offsets = ByteBuffer.allocate((count + 1) * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        offsets.putInt(0);
+        for (int i = 0; i < count; i++) offsets.putInt(stringEnds[i]);
+        write(offsets);
+        int length = stringBytes.size();
+        stringBytes.writeTo(out);
+        written += length;
+        int padding = (4 - length % 4) % 4;
+        write(ByteBuffer.allocate(padding));
+        if (written + TRAILER_BYTES > 0xFFFFFFFFL) {
+            throw new IOException("text box columns exceed 4 GiB");
+        }
+        write(ByteBuffer.allocate(TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(pageCount).putInt(pages).putInt(boxes).putInt(count)
+                .putInt((int) tableOffset).putInt(length).putInt(MAGIC));
+    }
+
+    /** 读取已写出文件尾部记录的文档总页数 */
+    static int pageCount(CachedFile file) throws IOException {
+        long size = file.contentLength();
+        if (size < Integer.BYTES + TRAILER_BYTES) throw new IOException("truncated text box columns: " + file.getPath());
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        file.read(trailer, size - TRAILER_BYTES);
+        if (trailer.hasRemaining() || trailer.getInt(TRAILER_BYTES - Integer.BYTES) != MAGIC) {
+            throw new IOException("not a text box columns file: " + file.getPath());
+        }
+        return trailer.getInt(0);
+    }
+
+    private int intern(String text) {
+        String s = text == null ? "" : text;
+        Integer index = strings.get(s);
+        if (index != null) return index;
+        int i = strings.size();
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        stringBytes.write(utf8, 0, utf8.length);
+        if (i == stringEnds.length) stringEnds = Arrays.copyOf(stringEnds, i * 2);
+        stringEnds[i] = stringBytes.size();
+        strings.put(s, i);
+        return i;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        out.write(buf.array(), 0, buf.capacity());
+        written += buf.capacity();
+    }
+}
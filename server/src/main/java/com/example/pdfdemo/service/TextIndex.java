@@ -0,0 +1,646 @@
+package com.example.pdfdemo.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 全文位置索引：规范化词项 -> (文档, 页, 文本段, 段内字形范围, 包围框)，查询时不打开任何 PDF。
+ * - 每个文档版本（内容 SHA-256）一个不可变的索引段文件，读取时内存映射，数据在堆外，索引可超过堆大小；
+ * - 文档新增或修改（会话提交）时只为该文档生成新段并切换，其它文档不受影响；旧段无人引用后删除；
+ * - 词项：连续的字母/数字为一个词，表意文字每字一个词；规范化只做与 TextMatcher 相同的逐 char 小写折叠，
+ *   因此子串搜索命中的页一定含有相应词项，编辑可据此只抽取候选页（candidatePages）；
+ * - 短语查询要求各词在同一文本段内依次相邻（与现有搜索一样不跨段）。
+ * 段文件（大端）：头 | 词项表（按 UTF-8 字节序，每项 16 字节）| 词项字符串池 | 倒排记录（每条 36 字节，词内按位置升序）。
+ */
+@Component
+public class TextIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TextIndex.class);
+
+    private static final int MAGIC = 0x50445849; // "PDXI"
+    // 2：段文字不再截到字形数（旧段启动时丢弃，登记后重建）
+    // 3：词项按 AhoCorasickMatcher.foldCase 折叠（ς/σ、ſ/s 归为同一词项）
+    private static final int FORMAT = 3;
+    private static final int HEADER_BYTES = 32;
+    private static final int TERM_BYTES = 16;
+    private static final int POSTING_BYTES = 36;
+    private static final String MANIFEST = "manifest.properties";
+
+    /** 一处命中：短语在文档中的位置（坐标为 PDF 用户空间点，原点左下，与 /text-boxes 相同） */
+    public static class Hit {
+        public String document;
+        public int pageIndex;
+        public int segment;   // 页内文本段下标
+        public int from;      // 段内文字范围 [from, to)（连字展开时可能超出字形数）
+        public int to;
+        public float x;
+        public float yTop;
+        public float width;
+        public float height;
+    }
+
+    public static class QueryResult {
+        public String query;
+        public List<String> terms;
+        public int total;            // 命中总数（hits 最多 limit 条）
+        public List<Hit> hits;
+        public List<String> pending; // 索引落后于文件、正在后台重建的文档（不参与本次查询）
+        public double tookMs;
+    }
+
+    public static class DocumentStatus {
+        public String document;
+        public String contentHash;
+        public int pages;
+        public int terms;
+        public int postings;
+        public boolean current;      // 索引版本与文件当前内容一致
+    }
+
+    /** 一个文档版本的索引段；只用绝对位置读取，可被多个线程同时查询 */
+    private static final class Segment {
+        final String hash;
+        final Path file;
+        final MappedByteBuffer buf;
+        final int pages;
+        final int terms;
+        final int postings;
+        final int poolAt;
+        final int postingsAt;
+
+        private Segment(String hash, Path file, MappedByteBuffer buf) throws IOException {
+            if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT) {
+                throw new IOException("not an index segment: " + file);
+            }
+            this.hash = hash;
+            this.file = file;
+            this.buf = buf;
+            this.pages = buf.getInt(8);
+            this.terms = buf.getInt(12);
+            this.postings = buf.getInt(16);
+            this.poolAt = HEADER_BYTES + terms * TERM_BYTES;
+            this.postingsAt = poolAt + buf.getInt(20);
+        }
+
+        static Segment open(String hash, Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                // 映射在通道关闭后仍然有效
+                return new Segment(hash, file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            }
+        }
+
+        int termOffset(int t) { return buf.getInt(HEADER_BYTES + t * TERM_BYTES); }
+        int termLength(int t) { return buf.getInt(HEADER_BYTES + t * TERM_BYTES + 4); }
+        int first(int t) { return buf.getInt(HEADER_BYTES + t * TERM_BYTES + 8); }
+        int count(int t) { return buf.getInt(HEADER_BYTES + t * TERM_BYTES + 12); }
+
+        int position(int p) { return buf.getInt(postingsAt + p * POSTING_BYTES); }
+        int page(int p) { return buf.getInt(postingsAt + p * POSTING_BYTES + 4); }
+        int segment(int p) { return buf.getInt(postingsAt + p * POSTING_BYTES + 8); }
+        int from(int p) { return buf.getInt(postingsAt + p * POSTING_BYTES + 12); }
+        int to(int p) { return buf.getInt(postingsAt + p * POSTING_BYTES + 16); }
+        float x(int p) { return buf.getFloat(postingsAt + p * POSTING_BYTES + 20); }
+        float yTop(int p) { return buf.getFloat(postingsAt + p * POSTING_BYTES + 24); }
+        float width(int p) { return buf.getFloat(postingsAt + p * POSTING_BYTES + 28); }
+        float height(int p) { return buf.getFloat(postingsAt + p * POSTING_BYTES + 32); }
+
+        String term(int t) {
+            byte[] bytes = new byte[termLength(t)];
+            buf.get(poolAt + termOffset(t), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** 词项下标；不存在返回 -1 */
+        int find(byte[] term) {
+            int lo = 0;
+            int hi = terms - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, term);
+                if (c == 0) return mid;
+                if (c < 0) lo = mid + 1; else hi = mid - 1;
+            }
+            return -1;
+        }
+
+        private int compare(int t, byte[] term) {
+            int at = poolAt + termOffset(t);
+            int len = termLength(t);
+            int n = Math.min(len, term.length);
+            for (int i = 0; i < n; i++) {
+                int c = Integer.compare(buf.get(at + i) & 0xff, term[i] & 0xff);
+                if (c != 0) return c;
+            }
+            return Integer.compare(len, term.length);
+        }
+
+        /** 词 t 的倒排中位置为 position 的记录；没有返回 -1 */
+        int seek(int t, int position) {
+            int lo = first(t);
+            int hi = lo + count(t) - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int pos = position(mid);
+                if (pos == position) return mid;
+                if (pos < position) lo = mid + 1; else hi = mid - 1;
+            }
+            return -1;
+        }
+    }
+
+    private static final class Entry {
+        final String hash;
+        final Segment segment;
+
+        Entry(String hash, Segment segment) {
+            this.hash = hash;
+            this.segment = segment;
+        }
+    }
+
+    private final DocumentLayoutCache layoutCache;
+    private final Path dir;
+    private final Map<String, Entry> documents = new ConcurrentHashMap<>();
+    private final Map<String, Path> sources = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService indexer;
+
+    public TextIndex(DocumentLayoutCache layoutCache,
+                     @Value("${pdf.index.dir:}") String dir) throws IOException {
+        this.layoutCache = layoutCache;
+        this.dir = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("user.dir"), "data", "index")
+                : Paths.get(dir);
+        Files.createDirectories(this.dir);
+        this.indexer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pdf-indexer");
+            t.setDaemon(true);
+            return t;
+        });
+        loadManifest();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexer.shutdownNow();
+    }
+
+    /** 登记文档来源文件；索引缺失或落后于文件时在后台重建 */
+    public void register(String document, Path source) {
+        sources.put(document, source);
+        refresh(document);
+    }
+
+    /** 索引是否对应文档的 contentHash 版本 */
+    public boolean isCurrent(String document, String contentHash) {
+        Entry e = documents.get(document);
+        return e != null && e.hash.equals(contentHash);
+    }
+
+    /**
+     * 以版式模型为文档的 contentHash 版本建立索引并切换（同一版本已建立时直接返回）。
+     * layout 只读取文本与几何，不需要字体；调用期间不得被修改。
+     */
+    public void update(String document, String contentHash, DocumentLayout layout) throws IOException {
+        if (isCurrent(document, contentHash)) return;
+        Path file = dir.resolve(contentHash + ".idx");
+        if (!Files.exists(file)) {
+            write(layout, file);
+        }
+        Segment segment = Segment.open(contentHash, file);
+        synchronized (this) {
+            Entry old = documents.put(document, new Entry(contentHash, segment));
+            saveManifest();
+            if (old != null && !old.hash.equals(contentHash) && !referenced(old.hash)) {
+                Files.deleteIfExists(old.segment.file);
+            }
+        }
+    }
+
+    public List<DocumentStatus> status() {
+        List<DocumentStatus> out = new ArrayList<>();
+        for (String document : new TreeMap<>(sources).keySet()) {
+            DocumentStatus s = new DocumentStatus();
+            s.document = document;
+            Entry e = documents.get(document);
+            if (e != null) {
+                s.contentHash = e.hash;
+                s.pages = e.segment.pages;
+                s.terms = e.segment.terms;
+                s.postings = e.segment.postings;
+            }
+            s.current = !isStale(document);
+            out.add(s);
+        }
+        return out;
+    }
+
+    /** 短语查询：按文档 id、文档内位置排序，最多返回 limit 条 */
+    public QueryResult search(String query, int limit) {
+        long started = System.nanoTime();
+        List<String> terms = new ArrayList<>();
+        String q = query == null ? "" : query;
+        tokenize(q, (start, end) -> terms.add(fold(q, start, end)));
+        if (terms.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "query has no indexable terms");
+        }
+        byte[][] keys = new byte[terms.size()][];
+        for (int i = 0; i < keys.length; i++) keys[i] = terms.get(i).getBytes(StandardCharsets.UTF_8);
+
+        QueryResult result = new QueryResult();
+        result.query = query;
+        result.terms = terms;
+        result.hits = new ArrayList<>();
+        result.pending = new ArrayList<>();
+        for (String document : new TreeMap<>(sources).keySet()) {
+            Entry e = documents.get(document);
+            // 文件已变化时旧索引的坐标不再可靠：跳过并在后台重建
+            if (e == null || isStale(document)) {
+                refresh(document);
+                result.pending.add(document);
+                continue;
+            }
+            result.total += phrase(document, e.segment, keys, result.hits, Math.max(0, limit));
+        }
+        result.tookMs = (System.nanoTime() - started) / 1e6;
+        return result;
+    }
+
+    /**
+     * 可能包含任一 needle（子串匹配，忽略大小写与否均可）的页（0-based）。
+     * 索引不对应 contentHash 版本、或某个 needle 不含任何词时返回 null，调用方须全量扫描。
+     */
+    public BitSet candidatePages(String document, String contentHash, List<String> needles) {
+        Entry e = documents.get(document);
+        if (e == null || !e.hash.equals(contentHash)) return null;
+        Segment seg = e.segment;
+        BitSet pages = new BitSet();
+        for (String needle : needles) {
+            if (needle == null || needle.isEmpty()) continue; // 空 needle 不会命中
+            List<int[]> spans = new ArrayList<>();
+            tokenize(needle, (start, end) -> spans.add(new int[]{start, end}));
+            if (spans.isEmpty()) return null;
+            BitSet needlePages = null;
+            for (int[] span : spans) {
+                // needle 首尾的词可能只是文档中某个词的后缀/前缀；表意文字总是独立成词
+                boolean ideograph = Character.isIdeographic(needle.charAt(span[0]));
+                boolean openLeft = span[0] == 0 && !ideograph;
+                boolean openRight = span[1] == needle.length() && !ideograph;
+                BitSet tokenPages = termPages(seg, fold(needle, span[0], span[1]), openLeft, openRight);
+                if (needlePages == null) needlePages = tokenPages; else needlePages.and(tokenPages);
+                if (needlePages.isEmpty()) break;
+            }
+            pages.or(needlePages);
+        }
+        return pages;
+    }
+
+    // ---------------- 分词 ----------------
+
+    interface TokenSink {
+        void token(int start, int end);
+    }
+
+    /** 连续的字母/数字为一个词，表意文字每字一个词，其余字符为分隔 */
+    static void tokenize(CharSequence text, TokenSink sink) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isIdeographic(c)) {
+                sink.token(i, ++i);
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i)) && !Character.isIdeographic(text.charAt(i))) i++;
+            sink.token(start, i);
+        }
+    }
+
+    /** 与 AhoCorasickMatcher 忽略大小写时相同的逐 char 折叠 */
+    static String fold(CharSequence text, int start, int end) {
+        char[] out = new char[end - start];
+        for (int i = start; i < end; i++) out[i - start] = AhoCorasickMatcher.foldCase(text.charAt(i));
+        return new String(out);
+    }
+
+    // ---------------- 查询 ----------------
+
+    private static int phrase(String document, Segment seg, byte[][] keys, List<Hit> hits, int limit) {
+        int k = keys.length;
+        int[] terms = new int[k];
+        int driver = 0;
+        for (int j = 0; j < k; j++) {
+            terms[j] = seg.find(keys[j]);
+            if (terms[j] < 0) return 0;
+            if (seg.count(terms[j]) < seg.count(terms[driver])) driver = j;
+        }
+        // 以最少的词驱动，其余词按位置二分确认相邻且同段
+        int total = 0;
+        int[] found = new int[k];
+        int first = seg.first(terms[driver]);
+        for (int p = first; p < first + seg.count(terms[driver]); p++) {
+            int start = seg.position(p) - driver;
+            int page = seg.page(p);
+            int segment = seg.segment(p);
+            boolean ok = true;
+            for (int j = 0; j < k && ok; j++) {
+                found[j] = j == driver ? p : seg.seek(terms[j], start + j);
+                ok = found[j] >= 0 && seg.page(found[j]) == page && seg.segment(found[j]) == segment;
+            }
+            if (!ok) continue;
+            total++;
+            if (hits.size() >= limit) continue;
+            Hit h = new Hit();
+            h.document = document;
+            h.pageIndex = page;
+            h.segment = segment;
+            h.from = seg.from(found[0]);
+            h.to = seg.to(found[k - 1]);
+            float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, top = -Float.MAX_VALUE, bottom = Float.MAX_VALUE;
+            for (int q : found) {
+                minX = Math.min(minX, seg.x(q));
+                maxX = Math.max(maxX, seg.x(q) + seg.width(q));
+                top = Math.max(top, seg.yTop(q));
+                bottom = Math.min(bottom, seg.yTop(q) - seg.height(q));
+            }
+            h.x = minX;
+            h.yTop = top;
+            h.width = maxX - minX;
+            h.height = top - bottom;
+            hits.add(h);
+        }
+        return total;
+    }
+
+    /** 与 token 匹配的词项（openLeft/openRight 表示 token 可以是词项的后缀/前缀）出现过的页 */
+    private static BitSet termPages(Segment seg, String token, boolean openLeft, boolean openRight) {
+        BitSet pages = new BitSet();
+        if (!openLeft && !openRight) {
+            int t = seg.find(token.getBytes(StandardCharsets.UTF_8));
+            if (t >= 0) addPages(seg, t, pages);
+            return pages;
+        }
+        for (int t = 0; t < seg.terms; t++) {
+            String term = seg.term(t);
+            boolean match = openLeft && openRight ? term.contains(token)
+                    : openLeft ? term.endsWith(token) : term.startsWith(token);
+            if (match) addPages(seg, t, pages);
+        }
+        return pages;
+    }
+
+    private static void addPages(Segment seg, int t, BitSet pages) {
+        int first = seg.first(t);
+        for (int p = first; p < first + seg.count(t); p++) pages.set(seg.page(p));
+    }
+
+    // ---------------- 构建 ----------------
+
+    /** 构建期间的倒排（堆上，构建完即写出） */
+    private static final class Postings {
+        int size;
+        int[] ints = new int[5 * 64];     // position, page, segment, from, to
+        float[] floats = new float[4 * 64]; // x, yTop, width, height
+
+        int add(int position, int page, int segment, int from, int to, float x, float yTop, float width, float height) {
+            if ((size + 1) * 5 > ints.length) {
+                ints = Arrays.copyOf(ints, ints.length * 2);
+                floats = Arrays.copyOf(floats, floats.length * 2);
+            }
+            int i = size * 5;
+            ints[i] = position; ints[i + 1] = page; ints[i + 2] = segment; ints[i + 3] = from; ints[i + 4] = to;
+            int f = size * 4;
+            floats[f] = x; floats[f + 1] = yTop; floats[f + 2] = width; floats[f + 3] = height;
+            return size++;
+        }
+    }
+
+    private static final class IntList {
+        int size;
+        int[] items = new int[4];
+
+        void add(int v) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = v;
+        }
+    }
+
+    private void write(DocumentLayout layout, Path file) throws IOException {
+        Postings postings = new Postings();
+        Map<String, IntList> byTerm = new HashMap<>();
+        int[] position = {0};
+        for (DocumentLayout.Page page : layout.getPages()) {
+            for (int si = 0; si < page.segments.size(); si++) {
+                DocumentLayout.Segment s = page.segments.get(si);
+                if (s.text == null || s.text.isEmpty()) continue;
+                // 整段文字都建索引：连字展开等会使文字比字形多，截断会让段尾的词缺失、候选页漏掉该页；
+                // 取框时与 DocumentLayout.toMatch 一样把字形下标截到末字形
+                String text = s.text;
+                int segment = si;
+                tokenize(text, (start, end) -> {
+                    float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, top = -Float.MAX_VALUE, bottom = Float.MAX_VALUE;
+                    int last = s.glyphs.length - 1;
+                    for (int g = Math.min(start, last); g <= Math.min(end - 1, last); g++) {
+                        DocumentLayout.Glyph glyph = s.glyphs[g];
+                        minX = Math.min(minX, glyph.x);
+                        maxX = Math.max(maxX, glyph.x + glyph.width);
+                        top = Math.max(top, glyph.baseline + glyph.ascent);
+                        bottom = Math.min(bottom, glyph.baseline - glyph.descent);
+                    }
+                    if (last < 0) {
+                        // 没有字形（只有文字）时仍登记词项，框退化为原点
+                        minX = maxX = top = bottom = 0f;
+                    }
+                    int id = postings.add(position[0]++, page.pageIndex, segment, start, end,
+                            minX, top, Math.max(0.1f, maxX - minX), Math.max(0.1f, top - bottom));
+                    byTerm.computeIfAbsent(fold(text, start, end), k -> new IntList()).add(id);
+                });
+            }
+        }
+
+        List<byte[]> keys = new ArrayList<>(byTerm.size());
+        Map<byte[], IntList> lists = new HashMap<>();
+        for (Map.Entry<String, IntList> e : byTerm.entrySet()) {
+            byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            lists.put(key, e.getValue());
+        }
+        keys.sort(Arrays::compareUnsigned);
+        int poolBytes = 0;
+        for (byte[] key : keys) poolBytes += key.length;
+
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(layout.getPages().size());
+                out.writeInt(keys.size());
+                out.writeInt(postings.size);
+                out.writeInt(poolBytes);
+                out.writeLong(0L); // 保留
+                int offset = 0;
+                int first = 0;
+                for (byte[] key : keys) {
+                    int count = lists.get(key).size;
+                    out.writeInt(offset);
+                    out.writeInt(key.length);
+                    out.writeInt(first);
+                    out.writeInt(count);
+                    offset += key.length;
+                    first += count;
+                }
+                for (byte[] key : keys) out.write(key);
+                // 倒排按词项顺序连续存放；同一词内按构建顺序即位置升序
+                for (byte[] key : keys) {
+                    IntList ids = lists.get(key);
+                    for (int n = 0; n < ids.size; n++) {
+                        int i = ids.items[n] * 5;
+                        int f = ids.items[n] * 4;
+                        for (int c = 0; c < 5; c++) out.writeInt(postings.ints[i + c]);
+                        for (int c = 0; c < 4; c++) out.writeFloat(postings.floats[f + c]);
+                    }
+                }
+            }
+            move(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // ---------------- 维护 ----------------
+
+    /** 文件当前内容与已索引版本不一致（无法读取文件时也视为不一致） */
+    private boolean isStale(String document) {
+        Path source = sources.get(document);
+        if (source == null) return false;
+        try {
+            return !isCurrent(document, layoutCache.contentHash(source));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /** 在后台把文档的索引更新到文件当前版本（已在进行中则忽略） */
+    private void refresh(String document) {
+        Path source = sources.get(document);
+        if (source == null || !pending.add(document)) return;
+        try {
+            indexer.execute(() -> {
+                try {
+                    // 抽取期间文件再次变化时以新版本重来，避免把新内容登记在旧哈希下
+                    String hash = layoutCache.contentHash(source);
+                    while (!isCurrent(document, hash)) {
+                        DocumentLayout model = layoutCache.model(source);
+                        String after = layoutCache.contentHash(source);
+                        if (after.equals(hash)) update(document, hash, model);
+                        hash = after;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("indexing {} failed", document, e);
+                } finally {
+                    pending.remove(document);
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.remove(document);
+            throw e;
+        }
+    }
+
+    private boolean referenced(String hash) {
+        for (Entry e : documents.values()) {
+            if (e.hash.equals(hash)) return true;
+        }
+        return false;
+    }
+
+    private void loadManifest() throws IOException {
+        Properties manifest = new Properties();
+        Path file = dir.resolve(MANIFEST);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                manifest.load(in);
+            }
+        }
+        for (String document : manifest.stringPropertyNames()) {
+            String hash = manifest.getProperty(document);
+            Path segment = dir.resolve(hash + ".idx");
+            try {
+                if (Files.exists(segment)) documents.put(document, new Entry(hash, Segment.open(hash, segment)));
+            } catch (IOException e) {
+                log.warn("dropping unreadable index segment {}", segment, e);
+            }
+        }
+        // 清理未被清单引用的段与中断的临时文件
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{idx,tmp}")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp") || !referenced(name.substring(0, name.length() - ".idx".length()))) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        Properties manifest = new Properties();
+        for (Map.Entry<String, Entry> e : documents.entrySet()) manifest.setProperty(e.getKey(), e.getValue().hash);
+        Path tmp = Files.createTempFile(dir, MANIFEST, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                manifest.store(out, "document id -> indexed content SHA-256");
+            }
+            move(tmp, dir.resolve(MANIFEST));
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
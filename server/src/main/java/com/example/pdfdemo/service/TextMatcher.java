@@ -0,0 +1,25 @@
+package com.example.pdfdemo.service;
+
+import java.util.List;
+
+/**
+ * 多模式文本匹配引擎（供 TextSearcher 使用）。
+ * 实现需在构造时完成预处理（含大小写折叠），match 时对输入只做一次线性扫描，
+ * 报告全部（含重叠的）命中，位置以 text 的 char 下标计。
+ */
+public interface TextMatcher {
+
+    interface Listener {
+        void onMatch(int start, int length, int needleIndex);
+    }
+
+    void match(CharSequence text, Listener listener);
+
+    /** 没有任何可匹配的 needle（全部为空）时返回 true，调用方可直接跳过扫描。 */
+    boolean isEmpty();
+
+    /** 默认引擎：Aho-Corasick 自动机。 */
+    static TextMatcher of(List<String> needles, boolean ignoreCase) {
+        return new AhoCorasickMatcher(needles, ignoreCase);
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * /edit 的流式重排：PDFTextStripper 逐页写出的文字依次经过
+ * 替换（流式 KMP 匹配，结果与 String.replace 相同）→ 贪心断行 → 按页写出，排满一页即开始新页。
+ * - 不拼接全文：内存中只有当前页的抽取状态、未决的部分匹配、当前词与当前行；
+ * - 每个字符只测量一次（FontMetrics 的宽度表），词宽与行宽随输入累加，断行为线性时间；
+ * - 超过行宽的单词整词单独成行；字体无法编码的字符替换为 '?'，制表符按空格处理。
+ * 非线程安全，一次重排一个实例。
+ */
+final class TextReflow {
+
+    /** 断行结果的接收方 */
+    interface LineSink {
+        void line(String text) throws IOException;
+    }
+
+    private final PageWriter pages;
+    private final LineBreaker breaker;
+    private final Replacer replacer;
+
+    /** 重排到 target 的新页面上；oldText 为空或 newText 为 null 时不替换 */
+    TextReflow(PDDocument target, PDFont font, float fontSize, float leading, float margin, PDRectangle pageSize,
+               String oldText, String newText) {
+        this.pages = new PageWriter(target, font, fontSize, leading, margin, pageSize);
+        this.breaker = new LineBreaker(new FontMetrics(font), fontSize, pageSize.getWidth() - 2 * margin, pages);
+        this.replacer = new Replacer(oldText == null || oldText.isEmpty() || newText == null ? null : oldText,
+                newText, breaker);
+    }
+
+    /** 抽取 source 全部页面的文字并追加重排（每抽取完一页计入任务进度） */
+    void append(PDDocument source) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void endPage(PDPage page) throws IOException {
+                super.endPage(page);
+                JobProgress.pageDone();
+            }
+        };
+        stripper.writeText(source, new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                for (int i = off; i < off + len; i++) replacer.accept(cbuf[i]);
+            }
+
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                for (int i = off; i < off + len; i++) replacer.accept(str.charAt(i));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    /** 写出剩余内容并结束最后一页；没有任何文字时输出一个空白页 */
+    void finish() throws IOException {
+        replacer.finish();
+        breaker.finish();
+        pages.finish();
+    }
+
+    /** 供 PdfService.wrapText：把 text 断成不超过 maxWidth 的行 */
+    static List<String> wrap(String text, PDFont font, float fontSize, float maxWidth) throws IOException {
+        List<String> lines = new ArrayList<>();
+        LineBreaker breaker = new LineBreaker(new FontMetrics(font), fontSize, maxWidth, lines::add);
+        for (int i = 0; i < text.length(); i++) breaker.accept(text.charAt(i));
+        breaker.finish();
+        return lines;
+    }
+
+    /**
+     * 流式字符串替换：needle 的已匹配前缀就是未决的字符，失配时按 KMP 失配函数回退并把不再可能匹配的前缀放行；
+     * 完整匹配后输出替换文本并从头开始（不重叠、从左到右，与 String.replace 一致）。
+     */
+    private static final class Replacer {
+        private final String needle;
+        private final String replacement;
+        private final int[] fail;
+        private final LineBreaker out;
+        private int matched;
+
+        Replacer(String needle, String replacement, LineBreaker out) {
+            this.needle = needle;
+            this.replacement = replacement;
+            this.out = out;
+            this.fail = needle == null ? null : failure(needle);
+        }
+
+        void accept(char c) throws IOException {
+            if (needle == null) {
+                out.accept(c);
+                return;
+            }
+            while (matched > 0 && needle.charAt(matched) != c) {
+                int next = fail[matched - 1];
+                emit(needle, matched - next);
+                matched = next;
+            }
+            if (needle.charAt(matched) == c) {
+                if (++matched == needle.length()) {
+                    emit(replacement, replacement.length());
+                    matched = 0;
+                }
+            } else {
+                out.accept(c);
+            }
+        }
+
+        void finish() throws IOException {
+            if (needle != null) emit(needle, matched);
+            matched = 0;
+        }
+
+        private void emit(String s, int count) throws IOException {
+            for (int i = 0; i < count; i++) out.accept(s.charAt(i));
+        }
+
+        /** fail[i]：needle[0..i] 的最长真前缀兼后缀的长度 */
+        private static int[] failure(String needle) {
+            int[] fail = new int[needle.length()];
+            for (int i = 1, k = 0; i < needle.length(); i++) {
+                while (k > 0 && needle.charAt(i) != needle.charAt(k)) k = fail[k - 1];
+                if (needle.charAt(i) == needle.charAt(k)) k++;
+                fail[i] = k;
+            }
+            return fail;
+        }
+    }
+
+    /**
+     * 贪心断行：'\n' 结束段落（空段落输出空行），空格分词；行首的空格丢弃，词间的连续空格保留。
+     * 放得下就接在当前行后，放不下就换行；单个词比行宽还宽时整词单独占一行（不切开，超出右边距）。
+     */
+    private static final class LineBreaker {
+        private final FontMetrics metrics;
+        private final float fontSize;
+        private final float maxWidth;
+        private final float spaceUnits;
+        private final float fallbackUnits;
+        private final LineSink sink;
+        private final StringBuilder line = new StringBuilder();
+        private final StringBuilder word = new StringBuilder();
+        private float lineUnits;
+        private float wordUnits;
+        private int pendingSpaces;
+
+        LineBreaker(FontMetrics metrics, float fontSize, float maxWidth, LineSink sink) {
+            this.metrics = metrics;
+            this.fontSize = fontSize;
+            this.maxWidth = maxWidth;
+            this.sink = sink;
+            this.spaceUnits = units(' ');
+            this.fallbackUnits = units('?');
+        }
+
+        void accept(char c) throws IOException {
+            switch (c) {
+                case '\r':
+                    return;
+                case '\n':
+                    endParagraph();
+                    return;
+                case ' ':
+                case '\t':
+                    if (word.length() > 0) placeWord();
+                    pendingSpaces++;
+                    return;
+                default:
+                    float w = metrics.advance(c);
+                    if (Float.isNaN(w)) {
+                        c = '?';
+                        w = fallbackUnits;
+                    }
+                    word.append(c);
+                    wordUnits += w;
+            }
+        }
+
+        void finish() throws IOException {
+            if (word.length() > 0) placeWord();
+            if (line.length() > 0) emitLine();
+            pendingSpaces = 0;
+        }
+
+        private void endParagraph() throws IOException {
+            if (word.length() > 0) placeWord();
+            emitLine();
+            pendingSpaces = 0;
+        }
+
+        private void placeWord() throws IOException {
+            if (line.length() > 0) {
+                float candidate = lineUnits + pendingSpaces * spaceUnits + wordUnits;
+                if (fits(candidate)) {
+                    for (int i = 0; i < pendingSpaces; i++) line.append(' ');
+                    line.append(word);
+                    lineUnits = candidate;
+                    clearWord();
+                    return;
+                }
+                emitLine();
+            }
+            // 超长的词也整个放在空行上：下一个词放不下，会把它单独留成一行
+            line.append(word);
+            lineUnits = wordUnits;
+            clearWord();
+        }
+
+        private boolean fits(float units) {
+            return units / 1000 * fontSize <= maxWidth;
+        }
+
+        private float units(char c) {
+            float w = metrics.advance(c);
+            return Float.isNaN(w) ? 0f : w;
+        }
+
+        private void emitLine() throws IOException {
+            sink.line(line.toString());
+            line.setLength(0);
+            lineUnits = 0f;
+        }
+
+        private void clearWord() {
+            word.setLength(0);
+            wordUnits = 0f;
+            pendingSpaces = 0;
+        }
+    }
+
+    /** 逐行写入输出文档：一页排满（下一行的基线低于下边距）时关闭内容流并新建一页 */
+    private static final class PageWriter implements LineSink {
+        private final PDDocument target;
+        private final PDFont font;
+        private final float fontSize;
+        private final float leading;
+        private final float margin;
+        private final PDRectangle pageSize;
+        private final int linesPerPage;
+        private PDPageContentStream content;
+        private int lines;
+
+        PageWriter(PDDocument target, PDFont font, float fontSize, float leading, float margin,
+                   PDRectangle pageSize) {
+            this.target = target;
+            this.font = font;
+            this.fontSize = fontSize;
+            this.leading = leading;
+            this.margin = margin;
+            this.pageSize = pageSize;
+            this.linesPerPage = Math.max(1, (int) ((pageSize.getHeight() - 2 * margin) / leading) + 1);
+        }
+
+        @Override
+        public void line(String text) throws IOException {
+            if (content == null || lines == linesPerPage) newPage();
+            content.showText(text);
+            content.newLine();
+            lines++;
+        }
+
+        void finish() throws IOException {
+            if (content == null) newPage();
+            closePage();
+        }
+
+        private void newPage() throws IOException {
+            closePage();
+            PDPage page = new PDPage(pageSize);
+            target.addPage(page);
+            content = new PDPageContentStream(target, page);
+            content.setFont(font, fontSize);
+            content.beginText();
+            content.newLineAtOffset(margin, pageSize.getHeight() - margin);
+            content.setLeading(leading);
+            lines = 0;
+        }
+
+        private void closePage() throws IOException {
+            if (content == null) return;
+            PDPageContentStream cs = content;
+            content = null;
+            try {
+                cs.endText();
+            } finally {
+                cs.close();
+            }
+        }
+    }
+}
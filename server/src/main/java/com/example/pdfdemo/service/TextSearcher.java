@@ -1,18 +1,18 @@
 package com.example.pdfdemo.service;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.pdfbox.text.TextPosition;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * 简易字符级搜索器：在每个内容块内匹配 oldText 并记录匹配的字符范围坐标。
+ * 支持一次传入多个 needle（批量替换），每个 Match 通过 needleIndex 标明命中的是哪一个。
+ * 匹配由 TextMatcher 完成（默认 Aho-Corasick，单次线性扫描，大小写折叠在构造时完成）。
+ * 抽取由 LayoutExtractor 单次完成，匹配、行与字符坐标都从同一份 DocumentLayout 派生。
  * 注意：该实现只在单个内容块内匹配，无法跨块匹配，能覆盖多数常见文本。
  */
-public class TextSearcher extends PDFTextStripper {
+public class TextSearcher extends LayoutExtractor {
 
     public static class Match {
         public int pageIndex;
@@ -27,92 +27,43 @@ public class TextSearcher extends PDFTextStripper {
         public float ty; // text matrix translateY (user space, baseline)
         public float endX; // 匹配末尾的 x 位置（右侧）
         public String rest; // 同一内容块内，匹配后的剩余文本
+        public int needleIndex; // 命中的 needle 下标（单 needle 时恒为 0）
+        int segment = -1; // 所在文本段在页内的下标（编辑会话据此更新版式模型）
+        int start; // 匹配在段内的起始字形下标
     }
 
-    private final String needle;
-    private final boolean ignoreCase;
-    private final List<Match> matches = new ArrayList<>();
-    private final List<LineInfo> lines = new ArrayList<>();
+    private final TextMatcher matcher;
+    private DocumentLayout layout = new DocumentLayout();
 
     public TextSearcher(String needle, boolean ignoreCase) throws IOException {
-        this.needle = needle == null ? "" : needle;
-        this.ignoreCase = ignoreCase;
-        // 确保逐页处理
-        setSortByPosition(true);
+        this(java.util.Collections.singletonList(needle), ignoreCase);
     }
 
-    public List<Match> find(PDDocument document) throws IOException {
-        matches.clear();
-        lines.clear();
-        super.writeText(document, new java.io.OutputStreamWriter(java.io.OutputStream.nullOutputStream()));
-        return new ArrayList<>(matches);
+    public TextSearcher(List<String> needles, boolean ignoreCase) throws IOException {
+        this(TextMatcher.of(needles == null ? java.util.Collections.emptyList() : needles, ignoreCase));
     }
 
-    public List<LineInfo> getLines() {
-        return new ArrayList<>(lines);
+    /** 指定匹配引擎（自动机每次查询只构建一次，可在多个 TextSearcher 间复用） */
+    public TextSearcher(TextMatcher matcher) throws IOException {
+        this.matcher = matcher;
     }
 
-    @Override
-    protected void writeString(String string, List<TextPosition> textPositions) throws IOException {
-        if (needle.isEmpty() || string == null || string.isEmpty() || textPositions == null || textPositions.isEmpty()) {
-            // 仍然记录行，便于行级渲染
-            if (string != null && textPositions != null && !textPositions.isEmpty()) {
-                recordLine(string, textPositions);
-            }
-            return;
-        }
-
-        String hay = string;
-        String ndl = needle;
-        if (ignoreCase) {
-            hay = hay.toLowerCase();
-            ndl = ndl.toLowerCase();
-        }
-
-        int n = ndl.length();
-        for (int i = 0; i + n <= hay.length(); i++) {
-            if (hay.regionMatches(i, ndl, 0, n)) {
-                // 收集 i..i+n-1 范围内的 TextPosition
-                int endIdx = Math.min(i + n - 1, textPositions.size() - 1);
-                TextPosition start = safeGet(textPositions, i);
-                TextPosition end = safeGet(textPositions, endIdx);
-                if (start == null || end == null) continue;
-
-                float x0 = start.getXDirAdj();
-                float y0 = start.getYDirAdj();
-                // 宽度估算：以末字符的 (x + width) - x0
-                float endRight = end.getXDirAdj() + end.getWidthDirAdj();
-                float width = Math.max(0.1f, endRight - x0);
-                float height = Math.max(start.getHeightDir(), end.getHeightDir());
+    public List<Match> find(PDDocument document) throws IOException {
+        layout = extract(document);
+        return layout.match(matcher);
+    }
 
-                Match m = new Match();
-                m.pageIndex = getCurrentPageNo() - 1; // 0-based
-                m.x = x0;
-                m.y = y0;
-                m.width = width;
-                m.height = height;
-                m.font = start.getFont();
-                m.fontSizeInPt = start.getFontSizeInPt();
-                m.matched = string.substring(i, Math.min(i + n, string.length()));
-                m.tx = start.getTextMatrix().getTranslateX();
-                m.ty = start.getTextMatrix().getTranslateY();
-                m.endX = endRight;
-                if (i + n <= string.length()) {
-                    m.rest = string.substring(i + n);
-                } else {
-                    m.rest = "";
-                }
-                matches.add(m);
-            }
-        }
+    /** 最近一次 find 的版式模型 */
+    public DocumentLayout getLayout() {
+        return layout;
+    }
 
-        // 记录当前内容块为一行（粗略）
-        recordLine(string, textPositions);
+    public List<LineInfo> getLines() {
+        return layout.lineInfos();
     }
 
-    private TextPosition safeGet(List<TextPosition> list, int index) {
-        if (index < 0 || index >= list.size()) return null;
-        return list.get(index);
+    public List<CharInfo> getChars() {
+        return layout.charInfos();
     }
 
     public static class LineInfo {
@@ -124,33 +75,17 @@ public class TextSearcher extends PDFTextStripper {
         public float height;
         public org.apache.pdfbox.pdmodel.font.PDFont font;
         public float fontSizeInPt;
+        int segment = -1; // 对应文本段在页内的下标
     }
 
-    private void recordLine(String string, List<TextPosition> textPositions) {
-        if (string == null || textPositions == null || textPositions.isEmpty()) return;
-        TextPosition first = textPositions.get(0);
-        TextPosition last = textPositions.get(textPositions.size() - 1);
-        float minX = first.getXDirAdj();
-        for (TextPosition tp : textPositions) {
-            if (tp.getXDirAdj() < minX) minX = tp.getXDirAdj();
-        }
-        float endRight = last.getXDirAdj() + last.getWidthDirAdj();
-        float width = Math.max(0.1f, endRight - minX);
-        float height = 0f;
-        for (TextPosition tp : textPositions) {
-            height = Math.max(height, tp.getHeightDir());
-        }
-        LineInfo line = new LineInfo();
-        line.pageIndex = getCurrentPageNo() - 1;
-        line.text = string;
-        line.xStart = first.getTextMatrix().getTranslateX();
-        line.yBaseline = first.getTextMatrix().getTranslateY();
-        line.width = width;
-        line.height = height;
-        line.font = first.getFont();
-        line.fontSizeInPt = first.getFontSizeInPt();
-        lines.add(line);
+    /** 单字符坐标（用户空间，基线取文字矩阵平移），不持有文档对象。 */
+    public static class CharInfo {
+        public int pageIndex;
+        public String unicode;
+        public float x;
+        public float yBaseline;
+        public float width;
+        public float height;
+        public float fontSizeInPt;
     }
 }
-
-
@@ -0,0 +1,131 @@
+package com.example.pdfdemo.controller;
+
+import com.example.pdfdemo.service.TestPdfs;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** 按页范围请求的游标与分页响应头（/text-boxes 与 /annotated 一致）；示例文件为 5 页、第 1 页空白 */
+class PdfControllerTest {
+
+    @TempDir
+    Path dir;
+
+    private String previousUserDir;
+    private TestPdfs.Workspace workspace;
+    private PdfController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // PdfService 的示例文件位于 ${user.dir}/data
+        previousUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", dir.toString());
+        Files.createDirectories(dir.resolve("data"));
+        TestPdfs.write(dir.resolve("data").resolve("example.pdf"), "page zero", null, "page two", "page three", "page four");
+        workspace = new TestPdfs.Workspace(dir.resolve("work"));
+        controller = new PdfController(workspace.service, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspace.close();
+        System.setProperty("user.dir", previousUserDir);
+    }
+
+    @Test
+    void cursorWalksTextBoxesToTheLastPage() throws Exception {
+        assertEquals(List.of("5 0-1", "5 2-3", "5 4-4"), walk(false));
+    }
+
+    @Test
+    void annotatedPagesLikeTextBoxes() throws Exception {
+        assertEquals(walk(false), walk(true));
+        ResponseEntity<?> whole = controller.getAnnotated("word", null, null, null, null, null);
+        assertNull(whole.getHeaders().getFirst(PdfController.PAGE_COUNT_HEADER));
+    }
+
+    /** 整本版式已缓存时页数仍是文档页数（空白页不影响） */
+    @Test
+    void pageCountComesFromTheDocumentOnCachedModel() throws Exception {
+        workspace.layoutCache.model(dir.resolve("data").resolve("example.pdf"));
+        assertEquals(List.of("5 0-1", "5 2-3", "5 4-4"), walk(false));
+        assertEquals("5 1-1", paging(controller.getTextBoxes("word", 1, null, null, null, null)));
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() {
+        assertStatus(HttpStatus.BAD_REQUEST, "not a cursor!");
+        assertStatus(HttpStatus.BAD_REQUEST, encode(":2:2"));
+        assertStatus(HttpStatus.BAD_REQUEST, encode("0123456789abcdef:x:2"));
+    }
+
+    @Test
+    void cursorOfAnotherVersionIsConflict() {
+        assertStatus(HttpStatus.CONFLICT, encode("0000000000000000:2:2"));
+    }
+
+    @Test
+    void cursorBeyondTheLastPageIsBadRequest() throws Exception {
+        String cursor = next(controller.getTextBoxes("word", null, 0, 1, null, null));
+        String[] parts = decode(cursor).split(":");
+        assertStatus(HttpStatus.BAD_REQUEST, encode(parts[0] + ":5:" + parts[2]));
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> controller.getAnnotated("word", 9, null, null, null, null));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    /** 从 0-1 页开始逐段跟随游标，返回每段的 "页数 页范围" */
+    private List<String> walk(boolean annotated) throws Exception {
+        List<String> pages = new ArrayList<>();
+        ResponseEntity<?> response = annotated
+                ? controller.getAnnotated("word", null, 0, 1, null, null)
+                : controller.getTextBoxes("word", null, 0, 1, null, null);
+        while (true) {
+            pages.add(paging(response));
+            String cursor = next(response);
+            if (cursor == null) return pages;
+            response = annotated
+                    ? controller.getAnnotated("word", null, null, null, cursor, null)
+                    : controller.getTextBoxes("word", null, null, null, cursor, null);
+        }
+    }
+
+    private void assertStatus(HttpStatus status, String cursor) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> controller.getTextBoxes("word", null, null, null, cursor, null));
+        assertEquals(status, e.getStatusCode());
+    }
+
+    private static String paging(ResponseEntity<?> response) {
+        return response.getHeaders().getFirst(PdfController.PAGE_COUNT_HEADER) + " "
+                + response.getHeaders().getFirst(PdfController.PAGE_RANGE_HEADER);
+    }
+
+    private static String next(ResponseEntity<?> response) {
+        return response.getHeaders().getFirst(PdfController.NEXT_CURSOR_HEADER);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** AhoCorasickMatcher 与朴素的 RegionMatcher 对照：命中集合（起点、长度、needle 下标）必须完全相同 */
+class AhoCorasickMatcherTest {
+
+    @TempDir
+    Path dir;
+
+    /** 重叠、嵌套、互为前后缀的 needle 全部报告 */
+    @Test
+    void overlappingNeedles() {
+        assertSame(List.of("he", "she", "his", "hers"), false, "ushers ahishers");
+        assertSame(List.of("a", "aa", "aaa"), false, "aaaa baaab");
+        assertSame(List.of("abab", "bab", "ab"), false, "abababab");
+        assertEquals(List.of("0:2:0", "1:2:0", "2:2:0"), matches(new AhoCorasickMatcher(List.of("aa"), false), "aaaa"));
+    }
+
+    @Test
+    void ignoreCase() {
+        assertSame(List.of("Hello", "WORLD", "lo w"), true, "hello World, HELLO world");
+        assertSame(List.of("Hello"), false, "hello HELLO Hello");
+        assertSame(List.of("straße", "ÄÖÜ", "σοφία"), true, "STRAßE äöü ΣΟΦΊΑ Σοφία");
+        // 大小写映射不对称的字符：按 String.regionMatches 的规则相等（ς/σ/Σ、ſ/s、K/k）
+        assertSame(List.of("σ", "s", "k"), true, "ςσΣ ſsS Kkk");
+    }
+
+    /** 空 needle 不产生命中，其余 needle 的下标保持原位 */
+    @Test
+    void emptyNeedlesKeepIndices() {
+        assertSame(Arrays.asList("", "b", null, "ab"), false, "abab");
+        assertTrue(new AhoCorasickMatcher(Arrays.asList("", null), true).isEmpty());
+    }
+
+    @Test
+    void randomTextsAndNeedles() {
+        Random random = new Random(7);
+        String alphabet = "abAB éÉ";
+        for (int n = 0; n < 500; n++) {
+            List<String> needles = new ArrayList<>();
+            for (int k = 1 + random.nextInt(6); k > 0; k--) {
+                needles.add(random(random, alphabet, 1 + random.nextInt(4)));
+            }
+            String text = random(random, alphabet, random.nextInt(60));
+            assertSame(needles, random.nextBoolean(), text);
+        }
+    }
+
+    /** 版式上逐段搜索：两种引擎结果相同；跨两个段（两行）的文本都不命中，段内的命中带正确的段下标 */
+    @Test
+    void layoutSearchAcrossSegments() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("segments.pdf"), "alpha beta\ngamma delta", "Beta gamma");
+        List<String> needles = List.of("beta", "beta gamma", "a", "gamma");
+        try (PDDocument document = TestPdfs.loader().load(pdf)) {
+            DocumentLayout layout = new LayoutExtractor().extract(document);
+            for (boolean ignoreCase : new boolean[]{false, true}) {
+                List<String> expected = describe(layout.match(new RegionMatcher(needles, ignoreCase)));
+                List<String> actual = describe(layout.match(new AhoCorasickMatcher(needles, ignoreCase)));
+                assertEquals(expected, actual);
+                // 第 0 页的 “beta gamma” 分在两段；第 1 页同一段内的只在忽略大小写时命中
+                List<String> spanning = actual.stream().filter(m -> m.contains(":1:beta gamma@")
+                        || m.contains(":1:Beta gamma@")).toList();
+                assertEquals(ignoreCase ? List.of("1:0:1:Beta gamma@0") : List.of(), spanning);
+                assertTrue(actual.contains("0:1:3:gamma@0"), actual::toString);
+            }
+        }
+    }
+
+    private static void assertSame(List<String> needles, boolean ignoreCase, String text) {
+        assertEquals(matches(new RegionMatcher(needles, ignoreCase), text),
+                matches(new AhoCorasickMatcher(needles, ignoreCase), text),
+                () -> needles + " ignoreCase=" + ignoreCase + " in \"" + text + "\"");
+    }
+
+    private static List<String> matches(TextMatcher matcher, String text) {
+        List<String> out = new ArrayList<>();
+        matcher.match(text, (start, length, needleIndex) -> out.add(start + ":" + length + ":" + needleIndex));
+        Collections.sort(out);
+        return out;
+    }
+
+    private static List<String> describe(List<TextSearcher.Match> matches) {
+        List<String> out = new ArrayList<>();
+        for (TextSearcher.Match m : matches) {
+            out.add(m.pageIndex + ":" + m.segment + ":" + m.needleIndex + ":" + m.matched + "@" + m.start);
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static String random(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class AnnotatedPdfCacheTest {
+
+    @TempDir
+    Path dir;
+
+    /** 条目在交给调用方之后被淘汰（文件已删除），已返回的句柄仍能完整输出 */
+    @Test
+    void evictedFileStaysReadable() throws Exception {
+        AnnotatedPdfCache cache = new AnnotatedPdfCache(dir.toString(), 1);
+        byte[] content = "first version".getBytes(StandardCharsets.US_ASCII);
+        CachedFile first = cache.get("hash", "a", out -> out.write(content));
+        cache.get("hash", "b", out -> out.write(1));
+
+        assertFalse(Files.exists(first.getPath()));
+        assertEquals(content.length, first.contentLength());
+        try (InputStream in = first.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    /** 同一键并发请求只生成一次 */
+    @Test
+    void concurrentRequestsBuildOnce() throws Exception {
+        AnnotatedPdfCache cache = new AnnotatedPdfCache(dir.toString(), 4);
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] results = new Future<?>[4];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = pool.submit(() -> cache.get("hash", "a", out -> {
+                    builds.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    out.write(7);
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> f : results) assertEquals(1, ((CachedFile) f.get()).contentLength());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, builds.get());
+    }
+}
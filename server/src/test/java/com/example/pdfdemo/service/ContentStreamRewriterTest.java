@@ -0,0 +1,99 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentStreamRewriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rewritesTjOperand() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("tj.pdf"), "hello world");
+        byte[] out = rewrite(file, 0, "world", "WORLD", ContentStreamRewriter.Outcome.REWRITTEN);
+        assertEquals("hello WORLD", TestPdfs.text(out, 0));
+    }
+
+    /** 替换范围跨 TJ 的多个字符串元素：元素间的字距调整一并删除 */
+    @Test
+    void rewritesAcrossTjElements() throws Exception {
+        Path file = dir.resolve("tj-array.pdf");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                cs.beginText();
+                cs.setFont(PDType1Font.HELVETICA, 12);
+                cs.newLineAtOffset(72, 700);
+                cs.showTextWithPositioning(new Object[]{"hello wo", -30f, "rld gamma"});
+                cs.endText();
+            }
+            document.save(file.toFile());
+        }
+        byte[] out = rewrite(file, 0, "world", "there", ContentStreamRewriter.Outcome.REWRITTEN);
+        assertEquals("hello there gamma", TestPdfs.text(out, 0));
+    }
+
+    /** 原字体编码不了的替换文本：不改写，由调用方退回覆盖绘制 */
+    @Test
+    void unencodableTextIsUnsupported() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("tj.pdf"), "hello world");
+        rewrite(file, 0, "world", "世界", ContentStreamRewriter.Outcome.UNSUPPORTED);
+    }
+
+    /** 前面有无内容的空白页时按页号找到正确的页，原字形被替换而不是叠加 */
+    @Test
+    void rewritesPageAfterBlankPage() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("blank.pdf"), "hello world", null, "world gamma");
+        byte[] out = rewrite(file, 2, "world", "WORLD", ContentStreamRewriter.Outcome.REWRITTEN);
+        assertEquals("WORLD gamma", TestPdfs.text(out, 2));
+        assertEquals("hello world", TestPdfs.text(out, 0));
+    }
+
+    /** 模型中没有该页：命中与模型不一致，不能静默退回覆盖绘制 */
+    @Test
+    void missingLayoutPageFailsLoudly() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("blank.pdf"), "hello world", null, "world gamma");
+        try (PDDocument document = PDDocument.load(file.toFile())) {
+            ContentStreamRewriter rewriter = new ContentStreamRewriter(document, new DocumentLayout());
+            assertThrows(IllegalStateException.class, () -> rewriter.replace(2, 0, 0, 5, "WORLD"));
+        }
+    }
+
+    /** 在 pageIndex 页上把第一处 needle 改写为 text，断言登记结果并返回保存后的文档 */
+    private static byte[] rewrite(Path file, int pageIndex, String needle, String text,
+                                  ContentStreamRewriter.Outcome expected) throws IOException {
+        try (PDDocument document = PDDocument.load(file.toFile())) {
+            DocumentLayout layout = new LayoutExtractor().extract(document);
+            DocumentLayout.Page page = layout.page(pageIndex);
+            int segment = -1;
+            int start = -1;
+            for (int i = 0; i < page.segments.size() && start < 0; i++) {
+                start = page.segments.get(i).text.indexOf(needle);
+                segment = i;
+            }
+            assertTrue(start >= 0, "needle not found on page " + pageIndex);
+            ContentStreamRewriter rewriter = new ContentStreamRewriter(document, layout);
+            assertEquals(expected, rewriter.replace(pageIndex, segment, start, start + needle.length(), text));
+            rewriter.apply();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            assertTrue(out.size() < Files.size(file) * 2);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DocumentLayoutCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private TestPdfs.Workspace workspace;
+    private DocumentLayoutCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspace = new TestPdfs.Workspace(dir);
+        cache = workspace.layoutCache;
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspace.close();
+    }
+
+    /** 同一内容只抽取一次：重复请求与内容相同的另一路径都取到同一模型 */
+    @Test
+    void modelIsSharedByContent() throws Exception {
+        Path a = TestPdfs.write(dir.resolve("a.pdf"), "hello alpha");
+        Path b = dir.resolve("b.pdf");
+        Files.copy(a, b);
+
+        assertNull(cache.cachedModel(a));
+        DocumentLayout model = cache.model(a);
+        assertSame(model, cache.model(a));
+        assertSame(model, cache.cachedModel(b));
+        assertEquals(cache.contentHash(a), cache.contentHash(b));
+    }
+
+    /** 文件内容变化后按新版本重新抽取，旧模型不再返回 */
+    @Test
+    void changedFileIsExtractedAgain() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("doc.pdf"), "hello alpha");
+        String before = cache.contentHash(file);
+        DocumentLayout old = cache.model(file);
+        assertEquals("hello", cache.boxes(file, TextBoxCollector.Mode.WORD).get(0).text);
+
+        TestPdfs.write(file, "world gamma");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        assertNotEquals(before, cache.contentHash(file));
+        assertNull(cache.cachedModel(file));
+        assertEquals("world", cache.boxes(file, TextBoxCollector.Mode.WORD).get(0).text);
+        assertNotSame(old, cache.model(file));
+    }
+
+    /** 页范围的 Box 与整本 Box 中对应页的部分一致（未缓存时按页抽取，缓存后从整本模型切出） */
+    @Test
+    void pageSliceMatchesWholeDocument() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("pages.pdf"), "one\ntwo", null, "three", "four five");
+        DocumentLayoutCache.PageBoxes lazy = cache.boxes(file, TextBoxCollector.Mode.WORD, 1, 2);
+        assertEquals(4, lazy.pageCount);
+
+        List<TextBoxCollector.Box> whole = cache.boxes(file, TextBoxCollector.Mode.WORD);
+        DocumentLayoutCache.PageBoxes sliced = cache.boxes(file, TextBoxCollector.Mode.WORD, 1, 2);
+        List<String> expected = whole.stream().filter(b -> b.pageIndex >= 1 && b.pageIndex <= 2)
+                .map(b -> b.pageIndex + ":" + b.text).toList();
+        assertEquals(List.of("2:three"), expected);
+        assertEquals(expected, lazy.boxes.stream().map(b -> b.pageIndex + ":" + b.text).toList());
+        assertEquals(expected, sliced.boxes.stream().map(b -> b.pageIndex + ":" + b.text).toList());
+        assertEquals(4, sliced.pageCount);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DocumentLayoutTest {
+
+    /** 只含部分页的模型按页号取页、替换页，列表位置与页号无关 */
+    @Test
+    void pagesAreAddressedByPageIndex() {
+        DocumentLayout layout = new DocumentLayout();
+        DocumentLayout.Page three = page(3);
+        DocumentLayout.Page five = page(5);
+        layout.addPage(three);
+        layout.addPage(five);
+
+        assertSame(five, layout.page(5));
+        assertNull(layout.page(1));
+        assertNull(layout.page(4));
+
+        DocumentLayout.Page replacement = page(5);
+        assertSame(five, layout.setPage(replacement));
+        assertSame(replacement, layout.page(5));
+        assertSame(three, layout.page(3));
+        assertThrows(IllegalStateException.class, () -> layout.setPage(page(1)));
+    }
+
+    @Test
+    void pageCountIsTheDocumentsNotTheModels() {
+        DocumentLayout layout = new DocumentLayout();
+        layout.addPage(page(0));
+        assertEquals(1, layout.getPageCount());
+        layout.setPageCount(7);
+        DocumentLayout merged = new DocumentLayout();
+        merged.addPages(layout);
+        assertEquals(7, merged.getPageCount());
+    }
+
+    /** 基线相差不超过 1pt 的段并入最早建立的行；跨分桶边界的相邻基线同样合并 */
+    @Test
+    void linesGroupSegmentsByBaseline() {
+        DocumentLayout.Page page = page(0);
+        page.segments.add(segment("a", 10f, 700.0f));
+        page.segments.add(segment("b", 50f, 700.9f));
+        page.segments.add(segment("c", 10f, 684.0f));
+        page.segments.add(segment("d", 90f, 699.5f));
+        page.segments.add(segment("e", 10f, 685.0f));
+        page.segments.add(segment("f", 10f, 686.1f));
+        DocumentLayout.buildLines(page);
+
+        assertEquals(List.of("abd", "ce", "f"), page.lines.stream().map(l -> l.text).toList());
+        assertEquals(List.of(0, 1, 3), page.lines.get(0).segments);
+        assertEquals(10f, page.lines.get(0).minX);
+        assertEquals(100f, page.lines.get(0).maxX);
+    }
+
+    /** 分桶查找与逐行线性扫描（取最早满足容差的行）分组结果一致 */
+    @Test
+    void bucketedLinesMatchLinearScan() {
+        Random random = new Random(3);
+        for (int n = 0; n < 200; n++) {
+            DocumentLayout.Page page = page(0);
+            for (int i = random.nextInt(80); i > 0; i--) {
+                page.segments.add(segment("s" + i, random.nextInt(500), 600f + random.nextInt(40) * 0.25f));
+            }
+            DocumentLayout.buildLines(page);
+            List<List<Integer>> actual = new ArrayList<>();
+            for (DocumentLayout.Line l : page.lines) actual.add(l.segments);
+            assertEquals(linearScan(page.segments), actual);
+        }
+    }
+
+    private static List<List<Integer>> linearScan(List<DocumentLayout.Segment> segments) {
+        List<Float> baselines = new ArrayList<>();
+        List<List<Integer>> lines = new ArrayList<>();
+        for (int si = 0; si < segments.size(); si++) {
+            float y = segments.get(si).glyphs[0].baseline;
+            int target = -1;
+            for (int li = 0; li < baselines.size() && target < 0; li++) {
+                if (Math.abs(baselines.get(li) - y) <= DocumentLayout.LINE_EPSILON) target = li;
+            }
+            if (target < 0) {
+                target = lines.size();
+                baselines.add(y);
+                lines.add(new ArrayList<>());
+            }
+            lines.get(target).add(si);
+        }
+        return lines;
+    }
+
+    private static DocumentLayout.Segment segment(String text, float x, float baseline) {
+        DocumentLayout.Glyph glyph = new DocumentLayout.Glyph();
+        glyph.x = x;
+        glyph.baseline = baseline;
+        glyph.width = 10f;
+        DocumentLayout.Segment s = new DocumentLayout.Segment();
+        s.text = text;
+        s.glyphs = new DocumentLayout.Glyph[]{glyph};
+        s.minX = x;
+        s.maxX = x + 10f;
+        return s;
+    }
+
+    private static DocumentLayout.Page page(int pageIndex) {
+        DocumentLayout.Page page = new DocumentLayout.Page();
+        page.pageIndex = pageIndex;
+        return page;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // 预算 100000 字节，单个文档至多 50000；每个文档固定开销 1000，完整占用 4 倍文件大小，解析占用 1 倍
+    private final DocumentLoader loader = new DocumentLoader(registry, DataSize.ofBytes(100_000),
+            DataSize.ofBytes(1000), 4.0, 1.0, 0.5, DataSize.ofBytes(1000), "", Duration.ofMillis(100), true);
+
+    /** 放得下时全内存；超过单文档上限时混合模式；余量不够最小占用时 tryAdmit 不预留 */
+    @Test
+    void settingFollowsHeadroom() {
+        DocumentLoader.Lease small = loader.tryAdmit(5000);
+        assertEquals(DocumentLoader.Setting.MAIN, small.setting);
+        assertEquals(21_000, small.reserved);
+
+        DocumentLoader.Lease large = loader.tryAdmit(20_000);
+        assertEquals(DocumentLoader.Setting.MIXED, large.setting);
+        assertEquals(50_000, large.reserved);
+        assertEquals(71_000, loader.getUsed());
+
+        assertNull(loader.tryAdmit(50_000));
+        assertEquals(71_000, loader.getUsed());
+
+        small.close();
+        small.close();
+        large.close();
+        assertEquals(0, loader.getUsed());
+        assertEquals(1, registry.get("pdf.memory.admissions").tag("setting", "main").counter().count());
+        assertEquals(1, registry.get("pdf.memory.admissions").tag("setting", "mixed").counter().count());
+    }
+
+    /** 超过整个预算的文档在没有其他占用时独占加载；期间其他加载排队，超时返回 503 并通知释放常驻文档 */
+    @Test
+    void oversizedDocumentRunsAloneAndOthersTimeOut() {
+        AtomicInteger pressure = new AtomicInteger();
+        loader.onPressure(pressure::incrementAndGet);
+
+        DocumentLoader.Lease huge = loader.tryAdmit(200_000);
+        assertEquals(DocumentLoader.Setting.TEMP_FILE, huge.setting);
+        assertEquals(201_000, loader.getUsed());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> loader.admit(1));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        assertEquals(1, pressure.get());
+        assertEquals(0, loader.getWaiting());
+
+        huge.close();
+        assertEquals(DocumentLoader.Setting.MAIN, loader.tryAdmit(1).setting);
+    }
+
+    /** 预留随文档关闭归还；解析失败时立即归还 */
+    @Test
+    void leaseIsReturnedWhenDocumentCloses() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("a.pdf"), "hello");
+        try (PDDocument document = loader.load(pdf)) {
+            assertEquals(1, document.getNumberOfPages());
+            assertTrue(loader.getUsed() > 0);
+        }
+        assertEquals(0, loader.getUsed());
+
+        Path broken = Files.write(dir.resolve("broken.pdf"), "not a pdf".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> loader.load(broken));
+        assertEquals(0, loader.getUsed());
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private TestPdfs.Workspace workspace;
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspace = new TestPdfs.Workspace(dir);
+        root = dir.resolve("store");
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspace.close();
+    }
+
+    /** 内容以 SHA-256 寻址：相同内容的两个文档共用一个 blob，各自有独立的 id */
+    @Test
+    void uploadsAreContentAddressed() throws Exception {
+        DocumentStore store = store(DataSize.ofMegabytes(1));
+        byte[] pdf = Files.readAllBytes(TestPdfs.write(dir.resolve("a.pdf"), "hello alpha"));
+
+        DocumentStore.Document first = store.upload("../x/a.pdf", new ByteArrayInputStream(pdf));
+        DocumentStore.Document second = store.upload(null, new ByteArrayInputStream(pdf));
+        assertEquals("a.pdf", first.name);
+        assertEquals(second.id + ".pdf", second.name);
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(pdf)), first.sha256);
+        assertEquals(first.sha256, second.sha256);
+        assertNotEquals(first.id, second.id);
+        assertEquals(pdf.length, first.size);
+        assertEquals(1, first.version);
+        assertArrayEquals(pdf, Files.readAllBytes(store.content(first)));
+        assertEquals(List.of(store.content(first)), files(root.resolve("blobs")));
+        assertEquals(Set.of(first.id, second.id), store.list().stream().map(d -> d.id).collect(Collectors.toSet()));
+
+        ResponseStatusException missing = assertThrows(ResponseStatusException.class, () -> store.get("nope"));
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+    }
+
+    /** 不是 PDF、空请求体为 400，超过上限为 413；被拒的上传不留下 blob 或临时文件 */
+    @Test
+    void rejectedUploadsLeaveNothingBehind() throws Exception {
+        DocumentStore store = store(DataSize.ofBytes(100));
+        assertStatus(HttpStatus.BAD_REQUEST, store, "GIF89a".getBytes(StandardCharsets.US_ASCII));
+        assertStatus(HttpStatus.BAD_REQUEST, store, new byte[0]);
+        byte[] large = new byte[200];
+        System.arraycopy("%PDF-".getBytes(StandardCharsets.US_ASCII), 0, large, 0, 5);
+        assertStatus(HttpStatus.PAYLOAD_TOO_LARGE, store, large);
+        assertEquals(List.of(), files(root.resolve("blobs")));
+        assertEquals(List.of(), store.list());
+    }
+
+    /** 有命中的编辑产生新版本并切换引用，旧 blob 保留；没有命中时不产生版本；重启后按记录恢复 */
+    @Test
+    void editsCreateVersionsThatSurviveRestart() throws Exception {
+        DocumentStore store = store(DataSize.ofMegabytes(1));
+        DocumentStore.Document uploaded = store.upload("doc.pdf",
+                new ByteArrayInputStream(Files.readAllBytes(TestPdfs.write(dir.resolve("doc.pdf"), "hello alpha"))));
+
+        DocumentStore.Revision miss = store.edit(uploaded.id, (source, document) -> workspace.service
+                .editPdfReplaceInplace(source, document, "absent", "x", false, PdfService.OutputMode.FULL));
+        assertFalse(miss.changed);
+        assertEquals(1, miss.document.version);
+
+        DocumentStore.Revision hit = store.edit(uploaded.id, (source, document) -> workspace.service
+                .editPdfReplaceInplace(source, document, "alpha", "omega", false, PdfService.OutputMode.FULL));
+        assertTrue(hit.changed);
+        assertEquals(2, hit.document.version);
+        assertEquals(uploaded.createdAt, hit.document.createdAt);
+        assertTrue(Files.exists(store.content(uploaded)));
+        assertTrue(TestPdfs.text(Files.readAllBytes(store.content(hit.document)), 0).contains("hello omega"));
+
+        DocumentStore reopened = store(DataSize.ofMegabytes(1));
+        DocumentStore.Document restored = reopened.get(uploaded.id);
+        assertEquals(2, restored.version);
+        assertEquals(hit.document.sha256, restored.sha256);
+        assertEquals("doc.pdf", restored.name);
+    }
+
+    private DocumentStore store(DataSize maxUpload) throws IOException {
+        return new DocumentStore(workspace.metrics, workspace.textIndex, root.toString(), maxUpload);
+    }
+
+    private static void assertStatus(HttpStatus expected, DocumentStore store, byte[] body) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> store.upload("x.pdf", new ByteArrayInputStream(body)));
+        assertEquals(expected, e.getStatusCode());
+    }
+
+    private static List<Path> files(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).toList();
+        }
+    }
+}
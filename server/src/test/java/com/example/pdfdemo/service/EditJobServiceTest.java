@@ -0,0 +1,128 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditJobServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private EditJobService jobs;
+
+    @AfterEach
+    void tearDown() {
+        if (jobs != null) jobs.shutdown();
+    }
+
+    /** 任务在后台完成，进度来自任务线程上的 JobProgress，结果可下载；失败时记录错误 */
+    @Test
+    void jobsRunInTheBackground() throws Exception {
+        jobs = new EditJobService(store(DataSize.ofMegabytes(1)), 2, 8, Duration.ofMinutes(5));
+        EditJobService.Status submitted = jobs.submit("test", () -> {
+            JobProgress.pagesTotal(2);
+            JobProgress.pageDone();
+            JobProgress.pageDone();
+            return EditJobService.Output.bytes("text/plain", Map.of("X-Test", "1"), bytes("done"));
+        });
+        EditJobService.Status done = await(submitted.id, EditJobService.State.DONE);
+        assertEquals(2, done.pagesDone);
+        assertEquals(2, done.pagesTotal);
+        assertEquals("text/plain", done.contentType);
+        assertEquals(4L, done.size);
+        JobResultStore.Entry result = jobs.result(submitted.id);
+        assertEquals("1", result.headers.get("X-Test"));
+        try (InputStream in = result.open()) {
+            assertArrayEquals(bytes("done"), in.readAllBytes());
+        }
+
+        String failed = jobs.submit("test", () -> {
+            throw new IOException("broken");
+        }).id;
+        assertEquals("broken", await(failed, EditJobService.State.FAILED).error);
+        assertNull(jobs.result(failed));
+    }
+
+    /** 并发数用满后新任务排队；排队数超过上限时 429；删除运行中的任务会取消它 */
+    @Test
+    void queueLimitAndCancellation() throws Exception {
+        jobs = new EditJobService(store(DataSize.ofMegabytes(1)), 1, 1, Duration.ofMinutes(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EditJobService.Work blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return EditJobService.Output.bytes("text/plain", Map.of(), bytes("x"));
+        };
+        String running = jobs.submit("test", blocking).id;
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        String queued = jobs.submit("test", blocking).id;
+        assertEquals(EditJobService.State.QUEUED, jobs.get(queued).state);
+        ResponseStatusException full = assertThrows(ResponseStatusException.class,
+                () -> jobs.submit("test", blocking));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, full.getStatusCode());
+
+        assertTrue(jobs.delete(running));
+        assertNull(jobs.get(running));
+        assertFalse(jobs.delete(running));
+        release.countDown();
+        await(queued, EditJobService.State.DONE);
+    }
+
+    /** 超过单条阈值的结果落盘，小结果留在内存 */
+    @Test
+    void largeResultsSpillToDisk() throws Exception {
+        JobResultStore store = store(DataSize.ofBytes(8));
+        assertFalse(store.put("small", "a", null, out -> out.write(bytes("tiny"))).isSpilled());
+        JobResultStore.Entry large = store.put("large", "a", null, out -> out.write(new byte[64]));
+        assertTrue(large.isSpilled());
+        assertEquals(64, large.size);
+        assertEquals(4, store.getMemoryUsed());
+        store.remove("small");
+        assertEquals(0, store.getMemoryUsed());
+    }
+
+    private JobResultStore store(DataSize spillThreshold) throws IOException {
+        return new JobResultStore(dir.toString(), spillThreshold, DataSize.ofMegabytes(1));
+    }
+
+    private EditJobService.Status await(String id, EditJobService.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        EditJobService.Status status = jobs.get(id);
+        while (status.state != state && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = jobs.get(id);
+        }
+        assertEquals(state, status.state);
+        return status;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
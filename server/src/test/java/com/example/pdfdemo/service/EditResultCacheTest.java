@@ -0,0 +1,62 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class EditResultCacheTest {
+
+    @TempDir
+    Path dir;
+
+    /** 总字节超过 max-size 时淘汰最久未用的结果；单个超限的结果照常返回但不保留 */
+    @Test
+    void evictsByTotalBytes() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EditResultCache cache = new EditResultCache(registry, dir.toString(), DataSize.ofBytes(10));
+        AtomicInteger builds = new AtomicInteger();
+
+        assertEquals(6, read(cache, "a", 6, builds));
+        assertEquals(6, read(cache, "a", 6, builds));
+        assertEquals(1, builds.get());
+        assertEquals(6, cache.getSize());
+
+        assertEquals(6, read(cache, "b", 6, builds));
+        assertEquals(6, cache.getSize());
+        assertEquals(6, read(cache, "a", 6, builds));
+        assertEquals(3, builds.get());
+
+        assertEquals(20, read(cache, "big", 20, builds));
+        assertEquals(0, cache.getSize());
+        assertEquals(20, read(cache, "big", 20, builds));
+        assertEquals(5, builds.get());
+
+        assertEquals(1.0, registry.get("pdf.edit-cache.requests").tag("result", "hit").counter().count());
+        assertEquals(5.0, registry.get("pdf.edit-cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void zeroSizeDisablesTheCache() throws Exception {
+        EditResultCache cache = new EditResultCache(new SimpleMeterRegistry(), dir.resolve("off").toString(),
+                DataSize.ofBytes(0));
+        assertFalse(cache.isEnabled());
+        assertFalse(dir.resolve("off").toFile().exists());
+    }
+
+    private static int read(EditResultCache cache, String key, int length, AtomicInteger builds) throws Exception {
+        try (InputStream in = cache.open(EditResultCache.key(key), out -> {
+            builds.incrementAndGet();
+            out.write(new byte[length]);
+        })) {
+            return in.readAllBytes().length;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** 示例文件第 1 页空白：会话编辑后的版式按页号更新，撤销后复原 */
+class EditSessionServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private String previousUserDir;
+    private TestPdfs.Workspace workspace;
+    private EditSessionService sessions;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // PdfService 的示例文件位于 ${user.dir}/data
+        previousUserDir = System.getProperty("user.dir");
+        System.setProperty("user.dir", dir.toString());
+        Files.createDirectories(dir.resolve("data"));
+        TestPdfs.write(dir.resolve("data").resolve("example.pdf"), "hello alpha", null, "world gamma");
+        workspace = new TestPdfs.Workspace(dir.resolve("work"));
+        sessions = new EditSessionService(workspace.service, workspace.loader, workspace.layoutCache,
+                workspace.extractor, workspace.metrics, workspace.textIndex, workspace.registry,
+                dir.resolve("sessions").toString(), Duration.ofMinutes(30), 4, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.shutdown();
+        workspace.close();
+        System.setProperty("user.dir", previousUserDir);
+    }
+
+    @Test
+    void inplaceEditUpdatesTheEditedPage() throws Exception {
+        String id = sessions.open().id;
+        assertEquals(List.of(2), sessions.editInplace(id, "world", "WORLD", false).touchedPages);
+        assertEquals("0:hello 0:alpha 2:WORLD 2:gamma", words(id));
+        sessions.undo(id);
+        assertEquals("0:hello 0:alpha 2:world 2:gamma", words(id));
+    }
+
+    @Test
+    void lineEditUpdatesTheEditedPage() throws Exception {
+        String id = sessions.open().id;
+        sessions.editLine(id, "gamma", "delta", false, null, null);
+        assertEquals("0:hello 0:alpha 2:world 2:delta", words(id));
+        sessions.undo(id);
+        assertEquals("0:hello 0:alpha 2:world 2:gamma", words(id));
+    }
+
+    /** 会话当前版式中的词，按 "页号:文字" 列出 */
+    private String words(String id) {
+        return sessions.textBoxes(id, "word").stream()
+                .map(b -> b.pageIndex + ":" + b.text)
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FontMetricsTest {
+
+    /** 逐码位宽度之和与 PDFont.getStringWidth 一致；描述符度量与字体一致 */
+    @Test
+    void widthsMatchFont() throws Exception {
+        for (PDFont font : List.of(PDType1Font.HELVETICA, PDType1Font.TIMES_BOLD, PDType1Font.COURIER)) {
+            FontMetrics metrics = new FontMetrics(font);
+            for (String s : List.of("", "hello world", "The quick brown fox, 1234!", "éàü ÿ")) {
+                assertEquals(font.getStringWidth(s), metrics.stringWidth(s), 1e-3f, s);
+                assertEquals(font.getStringWidth(s), metrics.width(s), 1e-3f, s);
+            }
+            assertEquals(font.getSpaceWidth(), metrics.spaceWidth);
+            assertEquals(font.getFontDescriptor().getAscent(), metrics.ascent);
+            assertEquals(font.getFontDescriptor().getDescent(), metrics.descent);
+            assertSame(font, metrics.font());
+        }
+    }
+
+    /** 不可编码的字符宽度为 NaN；stringWidth 抛出与 PDFont 相同的异常 */
+    @Test
+    void unencodableTextIsNaN() {
+        FontMetrics metrics = new FontMetrics(PDType1Font.HELVETICA);
+        assertTrue(Float.isNaN(metrics.advance('世')));
+        assertTrue(Float.isNaN(metrics.width("a世b")));
+        assertTrue(Float.isNaN(metrics.advance(0x1F600)));
+        assertThrows(IllegalArgumentException.class, () -> PDType1Font.HELVETICA.getStringWidth("a世b"));
+        assertThrows(IllegalArgumentException.class, () -> metrics.stringWidth("a世b"));
+    }
+
+    /** Cache 按字体复用同一个度量对象；并发查询得到相同结果 */
+    @Test
+    void cacheSharesMetricsAcrossThreads() throws Exception {
+        FontMetrics.Cache cache = new FontMetrics.Cache();
+        FontMetrics helvetica = cache.of(PDType1Font.HELVETICA);
+        assertSame(helvetica, cache.of(PDType1Font.HELVETICA));
+        assertNotSame(helvetica, cache.of(PDType1Font.COURIER));
+
+        String text = "concurrent width lookups 0123456789";
+        float expected = PDType1Font.HELVETICA.getStringWidth(text);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Float>> widths = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                widths.add(pool.submit(() -> cache.of(PDType1Font.HELVETICA).stringWidth(text)));
+            }
+            for (Future<Float> w : widths) assertEquals(expected, w.get(), 1e-3f);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
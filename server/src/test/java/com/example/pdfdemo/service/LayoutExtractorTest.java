@@ -0,0 +1,77 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    private ParallelTextExtractor extractor;
+
+    @AfterEach
+    void tearDown() {
+        if (extractor != null) extractor.shutdown();
+    }
+
+    /** 没有 /Contents 的页也占一个位置：第 i 个页仍是第 i 页 */
+    @Test
+    void blankPageKeepsItsPlace() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("blank.pdf"), "hello alpha", null, "world gamma");
+        try (PDDocument document = PDDocument.load(file.toFile())) {
+            DocumentLayout layout = new LayoutExtractor().extract(document);
+            assertEquals(List.of(0, 1, 2), pageIndexes(layout));
+            assertTrue(layout.getPages().get(1).segments.isEmpty());
+            assertEquals(612f, layout.getPages().get(1).width);
+            assertTrue(text(layout.getPages().get(2)).contains("gamma"));
+        }
+    }
+
+    @Test
+    void rangeExtractionKeepsBlankPages() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("blank.pdf"), "hello alpha", null, null, "world gamma");
+        try (PDDocument document = PDDocument.load(file.toFile())) {
+            LayoutExtractor range = new LayoutExtractor();
+            range.setStartPage(2);
+            range.setEndPage(4);
+            DocumentLayout layout = range.extract(document);
+            assertEquals(List.of(1, 2, 3), pageIndexes(layout));
+            assertTrue(text(layout.getPages().get(2)).contains("gamma"));
+        }
+    }
+
+    /** 按块并行抽取（每块 1 页）拼接后同样包含空白页 */
+    @Test
+    void chunkedExtractionKeepsBlankPages() throws Exception {
+        Path file = TestPdfs.write(dir.resolve("blank.pdf"), "hello alpha", null, "world gamma");
+        extractor = new ParallelTextExtractor(TestPdfs.loader(), 2, 1);
+        DocumentLayout layout = extractor.extract(file);
+        assertEquals(List.of(0, 1, 2), pageIndexes(layout));
+        assertTrue(text(layout.page(2)).contains("gamma"));
+        ParallelTextExtractor.PageSlice slice = extractor.extractRange(file, 1, 2);
+        assertEquals(3, slice.pageCount);
+        assertEquals(List.of(1, 2), pageIndexes(slice.layout));
+    }
+
+    private static List<Integer> pageIndexes(DocumentLayout layout) {
+        List<Integer> indexes = new ArrayList<>();
+        for (DocumentLayout.Page p : layout.getPages()) indexes.add(p.pageIndex);
+        return indexes;
+    }
+
+    private static String text(DocumentLayout.Page page) {
+        StringBuilder sb = new StringBuilder();
+        for (DocumentLayout.Segment s : page.segments) sb.append(s.text).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LineIndexTest {
+
+    /** 相邻页上基线相同的行：只返回所查页的行，不因原顺序靠前而取到别页的行；没有行的页返回 null */
+    @Test
+    void lookupStaysOnRequestedPage() {
+        List<TextSearcher.LineInfo> lines = List.of(
+                line(0, 700f), line(0, 684f),
+                line(2, 700f), line(2, 684f),
+                line(3, 700f));
+        LineIndex index = new LineIndex(lines);
+
+        assertSame(lines.get(0), index.findByBaseline(0, 700.5f, 2f));
+        assertSame(lines.get(2), index.findByBaseline(2, 700.5f, 2f));
+        assertSame(lines.get(3), index.findByBaseline(2, 684f, 2f));
+        assertSame(lines.get(4), index.findByBaseline(3, 699f, 2f));
+        assertNull(index.findByBaseline(1, 700f, 2f));
+        assertNull(index.findByBaseline(4, 700f, 2f));
+        assertNull(index.findByBaseline(3, 684f, 2f));
+    }
+
+    /** 容差是开区间：|基线 - y| 恰好等于 tolerance 时不算命中；同一基线上多行时取原顺序第一行 */
+    @Test
+    void toleranceBoundaryAndFirstInOrder() {
+        List<TextSearcher.LineInfo> lines = List.of(line(0, 500f), line(0, 400f), line(0, 400f), line(0, Float.NaN));
+        LineIndex index = new LineIndex(lines);
+
+        assertNull(index.findByBaseline(0, 402f, 2f));
+        assertNull(index.findByBaseline(0, 398f, 2f));
+        assertSame(lines.get(1), index.findByBaseline(0, 401.9f, 2f));
+        assertSame(lines.get(1), index.findByBaseline(0, 400f, 2f));
+        assertNull(index.findByBaseline(0, Float.NaN, 2f));
+    }
+
+    /** 与逐行线性扫描（PdfService 原先的做法）结果完全一致 */
+    @Test
+    void matchesLinearScan() {
+        Random random = new Random(11);
+        for (int n = 0; n < 100; n++) {
+            List<TextSearcher.LineInfo> lines = new ArrayList<>();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                // 基线取整数网格，制造大量相同与相邻的基线
+                float y = random.nextInt(20) == 0 ? Float.NaN : 100f + random.nextInt(30) * 2f;
+                lines.add(line(random.nextInt(4), y));
+            }
+            LineIndex index = new LineIndex(lines);
+            for (int q = 0; q < 50; q++) {
+                int page = random.nextInt(5);
+                float y = 98f + random.nextInt(130) * 0.5f;
+                float tolerance = 0.5f + random.nextInt(4) * 0.5f;
+                assertSame(scan(lines, page, y, tolerance), index.findByBaseline(page, y, tolerance),
+                        "page " + page + " y " + y + " tolerance " + tolerance);
+            }
+        }
+    }
+
+    private static TextSearcher.LineInfo scan(List<TextSearcher.LineInfo> lines, int page, float y, float tolerance) {
+        for (TextSearcher.LineInfo l : lines) {
+            if (l.pageIndex == page && Math.abs(l.yBaseline - y) < tolerance) return l;
+        }
+        return null;
+    }
+
+    private static TextSearcher.LineInfo line(int pageIndex, float yBaseline) {
+        TextSearcher.LineInfo line = new TextSearcher.LineInfo();
+        line.pageIndex = pageIndex;
+        line.yBaseline = yBaseline;
+        line.text = "p" + pageIndex + "@" + yBaseline;
+        return line;
+    }
+}
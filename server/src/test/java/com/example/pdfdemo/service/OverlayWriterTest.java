@@ -0,0 +1,90 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OverlayWriterTest {
+
+    @TempDir
+    Path dir;
+
+    /** 同一行带上相交或相接的矩形合并；有间隙或不同行带的保持分开 */
+    @Test
+    void mergesCoversOnTheSameBand() {
+        List<OverlayWriter.Rect> merged = OverlayWriter.merge(List.of(
+                new OverlayWriter.Rect(25, 100, 10, 12),
+                new OverlayWriter.Rect(10, 100, 10, 12),
+                new OverlayWriter.Rect(20, 100, 5, 12),
+                new OverlayWriter.Rect(60, 100, 10, 12),
+                new OverlayWriter.Rect(15, 105, 10, 12)));
+        assertEquals(List.of("10,100,25,12", "60,100,10,12", "15,105,10,12"),
+                merged.stream().map(OverlayWriterTest::describe).toList());
+    }
+
+    /** 每页只追加一个内容流：遮盖一次填充且先于文本，全部文本在一个 BT/ET 内，字体不变时不重复设置 */
+    @Test
+    void writesOneStreamPerPage() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("a.pdf"), "original text", null);
+        try (PDDocument document = PDDocument.load(pdf.toFile())) {
+            OverlayWriter overlay = new OverlayWriter();
+            overlay.cover(0, 72, 500, 40, 14);
+            overlay.text(0, PDType1Font.HELVETICA, 12, 72, 503, "one");
+            overlay.cover(0, 112, 500, 40, 14);
+            overlay.text(0, PDType1Font.HELVETICA, 12, 112, 503, "two");
+            overlay.cover(0, 72, 400, 40, 14);
+            overlay.text(0, PDType1Font.HELVETICA_BOLD, 12, 72, 403, "three");
+            overlay.text(1, PDType1Font.HELVETICA, 12, 72, 403, "blank");
+            assertEquals(List.of(0, 1), new ArrayList<>(overlay.pages()));
+            overlay.write(document);
+            assertTrue(overlay.pages().isEmpty());
+
+            List<List<String>> drawing = new ArrayList<>();
+            for (Iterator<PDStream> it = document.getPage(0).getContentStreams(); it.hasNext(); ) {
+                List<String> ops = operators(it.next());
+                if (ops.contains("re")) drawing.add(ops);
+            }
+            assertEquals(1, drawing.size());
+            List<String> ops = drawing.get(0);
+            assertEquals(List.of("re", "re", "f", "BT", "Tf", "Tm", "Tj", "Tm", "Tj", "Tf", "Tm", "Tj", "ET"),
+                    ops.stream().filter(List.of("re", "f", "BT", "ET", "Tf", "Tm", "Tj")::contains).toList());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            String page0 = TestPdfs.text(out.toByteArray(), 0);
+            assertTrue(page0.contains("original text"));
+            assertTrue(page0.contains("one"));
+            assertTrue(page0.contains("two"));
+            assertTrue(page0.contains("three"));
+            assertEquals("blank", TestPdfs.text(out.toByteArray(), 1));
+        }
+    }
+
+    private static List<String> operators(PDStream stream) throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(stream.toByteArray());
+        parser.parse();
+        List<String> ops = new ArrayList<>();
+        for (Object token : parser.getTokens()) {
+            if (token instanceof Operator) ops.add(((Operator) token).getName());
+        }
+        return ops;
+    }
+
+    private static String describe(OverlayWriter.Rect r) {
+        return (int) r.x + "," + (int) r.y + "," + (int) r.width + "," + (int) r.height;
+    }
+}
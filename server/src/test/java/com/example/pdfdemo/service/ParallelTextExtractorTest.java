@@ -0,0 +1,77 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ParallelTextExtractorTest {
+
+    @TempDir
+    Path dir;
+
+    // 每块 2 页，9 页文档分成 5 块并行抽取
+    private final ParallelTextExtractor extractor = new ParallelTextExtractor(TestPdfs.loader(), 4, 2);
+
+    @AfterEach
+    void tearDown() {
+        extractor.shutdown();
+    }
+
+    /** 分块并行抽取按页序拼接，与单线程整本抽取逐页一致（含块内、块尾的空白页） */
+    @Test
+    void chunkedExtractionMatchesSequential() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("chunks.pdf"),
+                "p0 alpha", "p1 beta\nsecond line", null, "p3 gamma", "p4 alpha", null, "p6 delta", "p7 alpha", null);
+        try (PDDocument document = TestPdfs.loader().load(pdf)) {
+            DocumentLayout sequential = new LayoutExtractor().extract(document);
+            DocumentLayout parallel = extractor.extractBound(document, pdf);
+            assertEquals(9, parallel.getPageCount());
+            assertEquals(describe(sequential), describe(parallel));
+
+            ParallelTextExtractor.SearchResult found = extractor.search(document, pdf,
+                    TextMatcher.of(List.of("alpha"), false));
+            assertEquals(List.of(0, 4, 7), found.matches.stream().map(m -> m.pageIndex).toList());
+            // 字体重新绑定到调用方文档，可直接在 document 上绘制
+            for (TextSearcher.Match m : found.matches) {
+                assertSame(document.getPage(m.pageIndex).getResources().getFont(COSName.getPDFName("F1")), m.font);
+            }
+        }
+    }
+
+    /** 只抽取指定页：其余页为空页占位，页号与整本抽取一致 */
+    @Test
+    void selectedPagesKeepAbsoluteIndices() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("pages.pdf"), "zero", "one", "two", "three", "four");
+        BitSet pages = new BitSet();
+        pages.set(1);
+        pages.set(3, 5);
+        try (PDDocument document = TestPdfs.loader().load(pdf)) {
+            DocumentLayout layout = extractor.extractPages(document, pages);
+            assertEquals(List.of("0:", "1:one", "2:", "3:three", "4:four"), describe(layout));
+            assertEquals(5, layout.getPageCount());
+        }
+    }
+
+    private static List<String> describe(DocumentLayout layout) {
+        List<String> out = new ArrayList<>();
+        for (DocumentLayout.Page p : layout.getPages()) {
+            StringBuilder sb = new StringBuilder().append(p.pageIndex).append(':');
+            for (DocumentLayout.Segment s : p.segments) {
+                if (sb.charAt(sb.length() - 1) != ':') sb.append('|');
+                sb.append(s.text);
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PdfMetricsTest {
+
+    /** time 返回 body 的结果；body 抛出异常时阶段照常结束并计时，当前阶段恢复 */
+    @Test
+    void timeRecordsPhaseAndRestoresCurrent() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfMetrics metrics = new PdfMetrics(registry, true, false, new double[0], false);
+        PdfMetrics.Operation op = metrics.start("test");
+
+        PdfMetrics.Phase[] inner = new PdfMetrics.Phase[1];
+        assertEquals("x", op.time("load", () -> {
+            inner[0] = PdfMetrics.currentPhase();
+            return "x";
+        }));
+        IOException failure = new IOException("boom");
+        assertSame(failure, assertThrows(IOException.class, () -> op.time("draw", () -> {
+            throw failure;
+        })));
+        op.finish();
+
+        assertNull(PdfMetrics.currentPhase());
+        assertEquals(1, registry.get("pdf.phase").tag("phase", "load").timer().count());
+        assertEquals(1, registry.get("pdf.phase").tag("phase", "draw").timer().count());
+        assertEquals(1, registry.get("pdf.operation").tag("endpoint", "test").timer().count());
+        assertNotNull(inner[0]);
+    }
+}
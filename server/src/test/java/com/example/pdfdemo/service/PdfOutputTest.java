@@ -0,0 +1,84 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfOutputTest {
+
+    @TempDir
+    Path dir;
+
+    /** 未修改的文档按原文件输出；DELTA 没有追加内容，输出为空 */
+    @Test
+    void unchangedStreamsTheSourceFile() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("a.pdf"), "hello");
+        byte[] original = Files.readAllBytes(pdf);
+        assertArrayEquals(original, TestPdfs.bytes(PdfOutput.unchanged(pdf, PdfService.OutputMode.FULL)));
+        assertArrayEquals(original, TestPdfs.bytes(PdfOutput.unchanged(pdf, PdfService.OutputMode.INCREMENTAL)));
+        assertEquals(0, TestPdfs.bytes(PdfOutput.unchanged(pdf, PdfService.OutputMode.DELTA)).length);
+    }
+
+    /** writeTo 不关闭响应流（PDFBox 保存结束时会关闭传入的流）；输出字节计入操作指标，close 时结束操作 */
+    @Test
+    void writeToKeepsTargetOpenAndCountsBytes() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("b.pdf"), "hello");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PdfMetrics metrics = new PdfMetrics(registry, true, false, new double[0], false);
+        AtomicBoolean closed = new AtomicBoolean();
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        try (PdfOutput output = PdfOutput.created(TestPdfs.loader().load(pdf)).withMetrics(metrics.start("out"))) {
+            output.writeTo(target);
+        }
+        assertFalse(closed.get());
+        assertTrue(target.size() > 0);
+        assertEquals(target.size(), registry.get("pdf.bytes.out").summary().totalAmount());
+        assertEquals(1, registry.get("pdf.phase").tag("phase", "save").timer().count());
+    }
+
+    /** 自有的文档随输出关闭；借用的文档（编辑会话）保持打开；已保存的字节流在 close 时关闭 */
+    @Test
+    void closeReleasesOnlyWhatItOwns() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("c.pdf"), "hello");
+        try (PDDocument borrowed = TestPdfs.loader().load(pdf)) {
+            TestPdfs.bytes(PdfOutput.borrowed(borrowed, pdf, Files.size(pdf), Set.of(0),
+                    PdfService.OutputMode.INCREMENTAL));
+            assertEquals(1, borrowed.getNumberOfPages());
+            assertFalse(borrowed.getDocument().isClosed());
+        }
+
+        PDDocument owned = TestPdfs.loader().load(pdf);
+        TestPdfs.bytes(PdfOutput.edited(owned, pdf, Files.size(pdf), Set.of(0), PdfService.OutputMode.FULL, List.of()));
+        assertTrue(owned.getDocument().isClosed());
+
+        AtomicBoolean storedClosed = new AtomicBoolean();
+        ByteArrayInputStream stored = new ByteArrayInputStream(new byte[]{1, 2, 3}) {
+            @Override
+            public void close() {
+                storedClosed.set(true);
+            }
+        };
+        assertArrayEquals(new byte[]{1, 2, 3},
+                TestPdfs.bytes(PdfOutput.stored(stored, PdfService.OutputMode.FULL, 0)));
+        assertTrue(storedClosed.get());
+    }
+}
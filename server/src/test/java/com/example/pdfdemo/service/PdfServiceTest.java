@@ -0,0 +1,119 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PdfServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private TestPdfs.Workspace workspace;
+    private PdfService service;
+    private Path blank;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspace = new TestPdfs.Workspace(dir);
+        service = workspace.service;
+        blank = TestPdfs.write(dir.resolve("blank.pdf"), "hello alpha", null, "world gamma");
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspace.close();
+    }
+
+    /** 空白页之后的页原位改写：旧字形被替换而不是叠加覆盖层，输出大小不翻倍 */
+    @Test
+    void inplaceEditAfterBlankPageRewritesTheRightPage() throws Exception {
+        byte[] out = TestPdfs.bytes(service.editPdfReplaceInplace(blank, "blank", "world", "WORLD", false,
+                PdfService.OutputMode.FULL));
+        assertEquals("WORLD gamma", TestPdfs.text(out, 2));
+        assertEquals("hello alpha", TestPdfs.text(out, 0));
+        assertTrue(out.length < Files.size(blank) * 3 / 2, "output grew to " + out.length + " bytes");
+    }
+
+    /** 增量输出以原文件字节开头、只追加一个修订；DELTA 只有追加的修订，拼回原文件后同样是编辑后的文档 */
+    @Test
+    void incrementalAndDeltaOutputsAppendToTheOriginal() throws Exception {
+        byte[] original = Files.readAllBytes(blank);
+        byte[] incremental = TestPdfs.bytes(service.editWholeLine(blank, "blank", "world", "WORLD", false, null, null,
+                PdfService.OutputMode.INCREMENTAL));
+        byte[] delta = TestPdfs.bytes(service.editWholeLine(blank, "blank", "world", "WORLD", false, null, null,
+                PdfService.OutputMode.DELTA));
+
+        assertArrayEquals(original, Arrays.copyOf(incremental, original.length));
+        assertEquals("WORLD gamma", TestPdfs.text(incremental, 2));
+        assertEquals("hello alpha", TestPdfs.text(incremental, 0));
+
+        // 各次保存的修订只差 /ID 等细节，长度相同
+        assertEquals(incremental.length - original.length, delta.length);
+        byte[] joined = Arrays.copyOf(original, original.length + delta.length);
+        System.arraycopy(delta, 0, joined, original.length, delta.length);
+        assertEquals("WORLD gamma", TestPdfs.text(joined, 2));
+        assertEquals("hello alpha", TestPdfs.text(joined, 0));
+    }
+
+    /** NDJSON 逐页输出按绝对页号：整本版式已缓存时 page=1 是空白页本身，空白页也输出一行 */
+    @Test
+    void streamedTextBoxesFollowPageIndexOnCachedModel() throws Exception {
+        for (boolean cached : new boolean[]{false, true}) {
+            if (cached) workspace.layoutCache.model(blank);
+            List<PdfService.PageTextBoxes> all = stream(null);
+            assertEquals(List.of(0, 1, 2), all.stream().map(p -> p.pageIndex).toList());
+            assertTrue(all.get(1).boxes.isEmpty());
+            assertTrue(all.stream().allMatch(p -> p.pageCount == 3));
+
+            List<PdfService.PageTextBoxes> one = stream(1);
+            assertEquals(1, one.size());
+            assertEquals(1, one.get(0).pageIndex);
+            assertTrue(one.get(0).boxes.isEmpty(), "cached=" + cached);
+            assertEquals("world", stream(2).get(0).boxes.get(0).text);
+        }
+    }
+
+    /** 批量替换按规则顺序应用，但不重排调用方的匹配列表（搜索结果可能还会被缓存复用） */
+    @Test
+    void batchKeepsFoundMatchesInDocumentOrder() throws Exception {
+        try (PDDocument document = workspace.loader.load(blank)) {
+            ParallelTextExtractor.SearchResult found = workspace.extractor.search(document, blank,
+                    TextMatcher.of(List.of("world", "hello"), false));
+            List<Integer> before = found.matches.stream().map(m -> m.pageIndex).toList();
+            assertEquals(List.of(0, 2), before);
+
+            PdfService.EditResult result = service.applyBatch(document, new FontMetrics.Cache(), found,
+                    List.of(rule("world", "WORLD"), rule("hello", "HELLO")), false, false);
+            assertEquals(before, found.matches.stream().map(m -> m.pageIndex).toList());
+            assertEquals(List.of(1, 1), result.report.stream().map(r -> r.applied).toList());
+        }
+    }
+
+    private static PdfService.ReplaceRule rule(String oldText, String newText) {
+        PdfService.ReplaceRule rule = new PdfService.ReplaceRule();
+        rule.oldText = oldText;
+        rule.newText = newText;
+        return rule;
+    }
+
+    private List<PdfService.PageTextBoxes> stream(Integer page) throws Exception {
+        PdfService.PageRequest request = new PdfService.PageRequest();
+        request.page = page;
+        List<PdfService.PageTextBoxes> pages = new ArrayList<>();
+        service.streamTextBoxes(blank, "word", request).writeTo(pages::add);
+        return pages;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.pdfdemo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/** 测试用的小 PDF 与按生产默认值装配的服务 */
+public final class TestPdfs {
+
+    /** 按 application.yml 默认值手工装配的 PdfService（编辑结果缓存关闭，每次都实际编辑），缓存目录在 dir 下 */
+    public static final class Workspace implements AutoCloseable {
+        public final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        public final DocumentLoader loader = loader();
+        public final PdfMetrics metrics = new PdfMetrics(registry, true, false, new double[]{0.5}, false);
+        public final ParallelTextExtractor extractor;
+        public final DocumentLayoutCache layoutCache;
+        public final TextIndex textIndex;
+        public final PdfService service;
+
+        public Workspace(Path dir) throws IOException {
+            extractor = new ParallelTextExtractor(loader, 0, 32);
+            layoutCache = new DocumentLayoutCache(extractor, 32, Duration.ofMinutes(10));
+            textIndex = new TextIndex(layoutCache, dir.resolve("index").toString());
+            service = new PdfService(layoutCache, extractor,
+                    metrics, loader,
+                    new AnnotatedPdfCache(dir.resolve("annotated").toString(), 16), textIndex,
+                    new EditResultCache(registry, dir.resolve("edits").toString(), DataSize.ofBytes(0)));
+        }
+
+        @Override
+        public void close() {
+            textIndex.shutdown();
+            extractor.shutdown();
+        }
+    }
+
+    private TestPdfs() {
+    }
+
+    /** 每个元素一页：文字逐行写在页面左上；null 为没有 /Contents 的空白页 */
+    public static Path write(Path file, String... pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (String text : pages) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (text == null) continue;
+                try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                    cs.beginText();
+                    cs.setFont(PDType1Font.HELVETICA, 12);
+                    cs.setLeading(16);
+                    cs.newLineAtOffset(72, 700);
+                    for (String line : text.split("\n")) {
+                        cs.showText(line);
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    /** 输出的全部字节 */
+    public static byte[] bytes(PdfOutput output) throws IOException {
+        try (PdfOutput o = output) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            o.writeTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    /** 第 page 页（0-based）抽取出的文字 */
+    public static String text(byte[] pdf, int page) throws IOException {
+        try (PDDocument document = PDDocument.load(pdf)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stripper.setStartPage(page + 1);
+            stripper.setEndPage(page + 1);
+            return stripper.getText(document).trim();
+        }
+    }
+
+    /** 与 application.yml 默认值一致的加载器 */
+    static DocumentLoader loader() {
+        return new DocumentLoader(new SimpleMeterRegistry(), DataSize.ofBytes(0), DataSize.ofMegabytes(2), 4.0, 1.0,
+                0.5, DataSize.ofMegabytes(4), "", Duration.ofMinutes(2), true);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TextBoxColumnsTest {
+
+    @TempDir
+    Path dir;
+
+    private TestPdfs.Workspace workspace;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspace = new TestPdfs.Workspace(dir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspace.close();
+    }
+
+    /** 解码后的列与 JSON 接口的 Box 逐个一致；空白页也写出；重复的文本在字符串表中只存一份 */
+    @Test
+    void columnsMatchJsonBoxes() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("a.pdf"), "alpha beta alpha\nbeta", null, "gamma alpha");
+        PdfService.PageRequest all = new PdfService.PageRequest();
+        PdfService.TextBoxColumnsFile file = workspace.service.getTextBoxColumns(pdf, "word", all);
+        Decoded decoded = decode(file);
+        assertEquals(3, file.pageCount);
+        assertEquals(0, file.from);
+        assertEquals(2, file.to);
+        assertNull(file.nextCursor);
+        assertEquals(3, decoded.pageCount);
+        assertEquals(List.of(0, 1, 2), decoded.pages);
+        assertEquals(List.of("alpha", "beta", "gamma"), decoded.strings);
+
+        List<String> expected = new ArrayList<>();
+        for (TextBoxCollector.Box b : workspace.service.collectTextBoxes(pdf, "word", all).boxes) {
+            expected.add(describe(b.pageIndex, b.pageWidth, b.pageHeight, b.x, b.yTop, b.width, b.height, b.text));
+        }
+        assertEquals(expected, decoded.boxes);
+    }
+
+    /** 页范围请求只编码请求的页，尾部仍记录文档总页数 */
+    @Test
+    void pageRangeKeepsDocumentPageCount() throws Exception {
+        Path pdf = TestPdfs.write(dir.resolve("b.pdf"), "zero", "one", "two");
+        PdfService.PageRequest pages = new PdfService.PageRequest();
+        pages.page = 1;
+        PdfService.TextBoxColumnsFile file = workspace.service.getTextBoxColumns(pdf, "line", pages);
+        Decoded decoded = decode(file);
+        assertEquals(3, file.pageCount);
+        assertEquals(1, file.from);
+        assertEquals(1, file.to);
+        assertNotNull(file.nextCursor);
+        assertEquals(3, decoded.pageCount);
+        assertEquals(List.of(1), decoded.pages);
+        assertEquals(List.of("one"), decoded.strings);
+    }
+
+    @Test
+    void rejectsOtherFiles() throws Exception {
+        Path junk = Files.write(dir.resolve("junk.tbx"), new byte[64]);
+        assertThrows(IOException.class, () -> TextBoxColumns.pageCount(new CachedFile(junk)));
+        Path empty = Files.write(dir.resolve("empty.tbx"), new byte[4]);
+        assertThrows(IOException.class, () -> TextBoxColumns.pageCount(new CachedFile(empty)));
+    }
+
+    private static final class Decoded {
+        int pageCount;
+        final List<Integer> pages = new ArrayList<>();
+        final List<String> strings = new ArrayList<>();
+        final List<String> boxes = new ArrayList<>();
+    }
+
+    /** 按 TextBoxColumns 文档中的格式解码：先读尾部与字符串表，再顺序读各页的列 */
+    private static Decoded decode(PdfService.TextBoxColumnsFile file) throws IOException {
+        byte[] bytes;
+        try (InputStream in = file.file.getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        assertEquals(0, bytes.length % 4);
+        ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(TextBoxColumns.MAGIC, buf.getInt(0));
+        int trailer = bytes.length - TextBoxColumns.TRAILER_BYTES;
+        assertEquals(TextBoxColumns.MAGIC, buf.getInt(trailer + 24));
+        Decoded d = new Decoded();
+        d.pageCount = buf.getInt(trailer);
+        int pageRecords = buf.getInt(trailer + 4);
+        int boxCount = buf.getInt(trailer + 8);
+        int stringCount = buf.getInt(trailer + 12);
+        int tableOffset = buf.getInt(trailer + 16);
+        int stringBytes = buf.getInt(trailer + 20);
+        int dataStart = tableOffset + (stringCount + 1) * Integer.BYTES;
+        for (int i = 0; i < stringCount; i++) {
+            int from = buf.getInt(tableOffset + i * Integer.BYTES);
+            int to = buf.getInt(tableOffset + (i + 1) * Integer.BYTES);
+            d.strings.add(new String(bytes, dataStart + from, to - from, StandardCharsets.UTF_8));
+        }
+        assertEquals(stringBytes, buf.getInt(tableOffset + stringCount * Integer.BYTES));
+
+        buf.position(Integer.BYTES);
+        for (int p = 0; p < pageRecords; p++) {
+            int pageIndex = buf.getInt();
+            float pageWidth = buf.getFloat();
+            float pageHeight = buf.getFloat();
+            int n = buf.getInt();
+            float[][] columns = new float[4][n];
+            for (float[] column : columns) {
+                for (int i = 0; i < n; i++) column[i] = buf.getFloat();
+            }
+            for (int i = 0; i < n; i++) {
+                d.boxes.add(describe(pageIndex, pageWidth, pageHeight,
+                        columns[0][i], columns[1][i], columns[2][i], columns[3][i], d.strings.get(buf.getInt())));
+            }
+            d.pages.add(pageIndex);
+        }
+        assertEquals(tableOffset, buf.position());
+        assertEquals(boxCount, d.boxes.size());
+        return d;
+    }
+
+    private static String describe(int page, float pageWidth, float pageHeight,
+                                   float x, float yTop, float width, float height, String text) {
+        return page + "/" + pageWidth + "x" + pageHeight
+                + ":" + x + "," + yTop + "," + width + "," + height + ":" + text;
+    }
+}
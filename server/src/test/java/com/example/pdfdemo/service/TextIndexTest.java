@@ -0,0 +1,66 @@
+package com.example.pdfdemo.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class TextIndexTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * PDFTextStripper 把连字 "ﬁ" 展开为 "fi"：第 0 页 "The oﬁce building" 的文字为 18 个字符、字形只有 17 个。
+     * 段尾的词必须完整入索引，否则候选页漏掉该页，编辑静默失败。
+     */
+    @Test
+    void indexesWholeSegmentWhenLigatureExpandsText() throws Exception {
+        DocumentLayout layout = new DocumentLayout();
+        layout.addPage(page(0, "The office building", 17));
+        for (int p = 1; p < 4; p++) layout.addPage(page(p, "Nothing to see on page " + p, 26));
+
+        TextIndex index = new TextIndex(null, dir.toString());
+        try {
+            index.update("doc", "hash", layout);
+
+            BitSet pages = index.candidatePages("doc", "hash", List.of("building"));
+            assertNotNull(pages);
+            assertEquals(0, pages.nextSetBit(0), "page 0 must be a candidate for 'building'");
+            assertEquals(-1, pages.nextSetBit(1));
+        } finally {
+            index.shutdown();
+        }
+    }
+
+    /** 一段文字，前 glyphCount 个字符各有一个宽 6pt 的字形（模拟字形少于文字） */
+    private static DocumentLayout.Page page(int pageIndex, String text, int glyphCount) {
+        DocumentLayout.Page page = new DocumentLayout.Page();
+        page.pageIndex = pageIndex;
+        page.width = 612;
+        page.height = 792;
+        DocumentLayout.Segment segment = new DocumentLayout.Segment();
+        segment.text = text;
+        segment.glyphs = new DocumentLayout.Glyph[glyphCount];
+        for (int i = 0; i < glyphCount; i++) {
+            DocumentLayout.Glyph g = new DocumentLayout.Glyph();
+            g.x = i * 6f;
+            g.width = 6f;
+            g.height = 10f;
+            g.baseline = 700f;
+            g.ascent = 8f;
+            g.descent = 2f;
+            g.fontSizeInPt = 10f;
+            segment.glyphs[i] = g;
+        }
+        segment.minX = 0f;
+        segment.maxX = glyphCount * 6f;
+        page.segments.add(segment);
+        return page;
+    }
+}
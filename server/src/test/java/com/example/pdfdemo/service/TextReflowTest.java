@@ -0,0 +1,85 @@
+package com.example.pdfdemo.service;
+
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextReflowTest {
+
+    private static final PDType1Font FONT = PDType1Font.HELVETICA;
+    private static final float SIZE = 12f;
+    private static final float WIDTH = 100f;
+
+    /** 超过行宽的单词不切开，整词单独占一行 */
+    @Test
+    void overlongWordKeepsItsOwnLine() throws Exception {
+        String longWord = "Supercalifragilisticexpialidocious";
+        assertEquals(List.of("a b", longWord, "c d"),
+                PdfService.wrapText("a b " + longWord + " c d", FONT, SIZE, WIDTH));
+        assertEquals(List.of(longWord), PdfService.wrapText(longWord, FONT, SIZE, WIDTH));
+    }
+
+    /** 与原先逐词拼接测宽的实现排出的行一致（段落、空行、连续空格、超长词）；行尾不可见的空格不比较 */
+    @Test
+    void matchesWordByWordReference() throws Exception {
+        List<String> samples = new ArrayList<>(List.of(
+                "", "hello", "hello world\n\nsecond  paragraph", "  leading and trailing  ",
+                "line\r\nbreaks\n", "Supercalifragilisticexpialidocious word Pneumonoultramicroscopic"));
+        Random random = new Random(42);
+        String[] words = {"a", "pdf", "text", "reflow", "streaming", "Supercalifragilisticexpialidocious"};
+        for (int n = 0; n < 200; n++) {
+            StringBuilder sb = new StringBuilder("start");
+            for (int i = random.nextInt(40); i > 0; i--) {
+                int sep = random.nextInt(10);
+                sb.append(sep == 0 ? "\n" : sep == 1 ? "  " : " ").append(words[random.nextInt(words.length)]);
+            }
+            samples.add(sb.toString());
+        }
+        for (String text : samples) {
+            assertEquals(stripTrailing(reference(text)), stripTrailing(PdfService.wrapText(text, FONT, SIZE, WIDTH)),
+                    text);
+        }
+    }
+
+    private static List<String> stripTrailing(List<String> lines) {
+        return lines.stream().map(String::stripTrailing).toList();
+    }
+
+    /** 重写前的 PdfService.wrapText */
+    private static List<String> reference(String text) throws IOException {
+        List<String> wrapped = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return wrapped;
+        }
+        for (String para : text.split("\r?\n")) {
+            if (para.isEmpty()) {
+                wrapped.add("");
+                continue;
+            }
+            StringBuilder line = new StringBuilder();
+            for (String word : para.split(" ")) {
+                String candidate = line.length() == 0 ? word : line + " " + word;
+                if (FONT.getStringWidth(candidate) / 1000 * SIZE <= WIDTH) {
+                    line.setLength(0);
+                    line.append(candidate);
+                } else if (line.length() > 0) {
+                    wrapped.add(line.toString());
+                    line.setLength(0);
+                    line.append(word);
+                } else {
+                    wrapped.add(candidate);
+                }
+            }
+            if (line.length() > 0) {
+                wrapped.add(line.toString());
+            }
+        }
+        return wrapped;
+    }
+}